@@ -0,0 +1,82 @@
+package edu.ucsb.cs156.frontiers.config;
+
+import edu.ucsb.cs156.frontiers.services.GithubConditionalRequestCache;
+import edu.ucsb.cs156.frontiers.services.GithubRateLimitTracker;
+import edu.ucsb.cs156.frontiers.services.GithubRequestMetrics;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+
+/**
+ * The `GithubClientConfig` class provides the single RestTemplate that every service uses to talk to the
+ * GitHub API.
+ * <p>
+ * The template sits on a pooled Apache HttpClient, so connections to api.github.com are kept alive and reused
+ * across services and threads instead of being opened per request. Conditional GET caching, rate-limit
+ * pacing and request metrics are installed once here rather than in each service.
+ * </p>
+ */
+@Configuration
+public class GithubClientConfig {
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager githubConnectionManager(
+            @Value("${app.github.http.max-connections:20}") int maxConnections,
+            @Value("${app.github.http.max-connections-per-route:10}") int maxConnectionsPerRoute,
+            @Value("${app.github.http.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${app.github.http.read-timeout:30s}") Duration readTimeout) {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout.toMillis()))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeout.toMillis()))
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient githubHttpClient(PoolingHttpClientConnectionManager githubConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(githubConnectionManager)
+                .setConnectionManagerShared(true)
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+    }
+
+    /**
+     * Publishes the pool's leased, available, pending and max connection gauges as {@code httpcomponents.httpclient.pool.*}
+     * with tag {@code httpclient=github}.
+     */
+    @Bean
+    public MeterBinder githubConnectionPoolMetrics(PoolingHttpClientConnectionManager githubConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(githubConnectionManager, "github");
+    }
+
+    @Bean
+    public RestTemplate githubRestTemplate(RestTemplateBuilder restTemplateBuilder,
+                                           CloseableHttpClient githubHttpClient,
+                                           GithubConditionalRequestCache conditionalRequestCache,
+                                           GithubRateLimitTracker rateLimitTracker,
+                                           GithubRequestMetrics requestMetrics) {
+        return restTemplateBuilder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(githubHttpClient))
+                .additionalInterceptors(conditionalRequestCache, rateLimitTracker, requestMetrics)
+                .build();
+    }
+}
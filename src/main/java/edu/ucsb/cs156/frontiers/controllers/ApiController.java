@@ -11,7 +11,10 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 import edu.ucsb.cs156.frontiers.errors.EntityNotFoundException;
+import edu.ucsb.cs156.frontiers.errors.JobAlreadyRunningException;
+import edu.ucsb.cs156.frontiers.errors.JobQueueFullException;
 import edu.ucsb.cs156.frontiers.models.CurrentUser;
+import edu.ucsb.cs156.frontiers.models.FrontiersPrincipal;
 import edu.ucsb.cs156.frontiers.services.CurrentUserService;
 
 import java.util.Map;
@@ -33,6 +36,15 @@ public abstract class ApiController {
     return currentUserService.getCurrentUser();
   }
 
+  /**
+   * This method returns the principal of the current user, for checks that only need the user's
+   * id, email or GitHub account and so do not need to load the user.
+   * @return the current principal
+   */
+  protected FrontiersPrincipal getPrincipal() {
+    return currentUserService.getPrincipal();
+  }
+
   /**
    * This method returns a generic message.
    * @param message the message
@@ -70,6 +82,34 @@ public abstract class ApiController {
     );
   }
 
+  /**
+   * This method handles the JobQueueFullException.
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({ JobQueueFullException.class })
+  @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+  public Object handleJobQueueFullException(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
+
+  /**
+   * This method handles the JobAlreadyRunningException.
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({ JobAlreadyRunningException.class })
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Object handleJobAlreadyRunningException(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
+
   @ExceptionHandler(UnsupportedOperationException.class)
     @ResponseStatus(HttpStatus.FORBIDDEN)
     public Map<String, String> handleUnsupportedOperation(UnsupportedOperationException ex) {
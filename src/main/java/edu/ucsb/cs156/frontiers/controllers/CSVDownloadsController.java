@@ -4,9 +4,7 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
 
-import com.opencsv.bean.StatefulBeanToCsv;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -17,13 +15,8 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import com.opencsv.bean.StatefulBeanToCsvBuilder;
-import com.opencsv.exceptions.CsvDataTypeMismatchException;
-import com.opencsv.exceptions.CsvRequiredFieldEmptyException;
-
 import edu.ucsb.cs156.frontiers.entities.Course;
 import edu.ucsb.cs156.frontiers.errors.EntityNotFoundException;
-import edu.ucsb.cs156.frontiers.models.RosterStudentDTO;
 import edu.ucsb.cs156.frontiers.repositories.CourseRepository;
 import edu.ucsb.cs156.frontiers.services.RosterStudentDTOService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -57,16 +50,8 @@ public class CSVDownloadsController extends ApiController {
     Course course = courseRepository.findById(courseId)
         .orElseThrow(() -> new EntityNotFoundException(Course.class, courseId));
     StreamingResponseBody stream = (outputStream) -> {
-
-      List<RosterStudentDTO> list = rosterStudentDTOService.getRosterStudentDTOs(courseId);
       try (Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
-        try {
-          StatefulBeanToCsv<RosterStudentDTO> beanToCsvWriter = rosterStudentDTOService.getStatefulBeanToCSV(writer);
-          beanToCsvWriter.write(list);
-        } catch (CsvDataTypeMismatchException | CsvRequiredFieldEmptyException e) {
-          log.error("Error writing CSV file", e);
-          throw new IOException("Error writing CSV file: " + e.getMessage());
-        }
+        rosterStudentDTOService.writeRosterStudentsCsv(courseId, writer);
       }
     };
 
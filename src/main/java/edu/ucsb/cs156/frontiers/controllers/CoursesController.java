@@ -5,9 +5,6 @@ import java.security.spec.InvalidKeySpecException;
 import java.util.Map;
 import java.util.Optional;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
-import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -40,7 +37,6 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import edu.ucsb.cs156.frontiers.enums.OrgStatus;
 
@@ -143,7 +139,7 @@ public class CoursesController extends ApiController {
             return ResponseEntity.status(HttpStatus.MOVED_PERMANENTLY).header(HttpHeaders.LOCATION, "/courses/nopermissions").build();
         }else {
             Course course = courseRepository.findById(state).orElseThrow(() -> new EntityNotFoundException(Course.class, state));
-            if(!(course.getCreator().getId() ==getCurrentUser().getUser().getId())) {
+            if(!(course.getCreator().getId() == getPrincipal().getUserId())) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
             }else{
                 String orgName = linkerService.getOrgName(installation_id.get());
@@ -168,11 +164,7 @@ public class CoursesController extends ApiController {
     public List<RosterStudentDTO> getRosterForCourse(
             @Parameter(name = "courseId") @RequestParam Long courseId
     ) {
-        Iterable<RosterStudent> studentsIterable = rosterStudentRepository.findByCourseId(courseId);
-        List<RosterStudent> students = StreamSupport.stream(studentsIterable.spliterator(), false).collect(Collectors.toList());
-        return students.stream()
-                .map(RosterStudentDTO::from)
-                .collect(Collectors.toList());
+        return rosterStudentRepository.findRosterStudentDTOsByCourseId(courseId);
     }
 
     /**
@@ -206,7 +198,7 @@ public class CoursesController extends ApiController {
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/student")
     public ResponseEntity<List<StudentCourseView>> getCoursesForStudent() {
-        String email = getCurrentUser().getUser().getEmail();
+        String email = getPrincipal().getEmail();
 
         List<StudentCourseView> results = courseRepository
                 .findAllByRosterStudents_Email(email)
@@ -16,14 +16,17 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Tag(name = "Jobs")
 @RequestMapping("/api/jobs")
@@ -93,9 +96,25 @@ public class JobsController extends ApiController {
   @Operation(summary = "Get long job logs")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @GetMapping("/logs/{id}")
-  public String getJobLogs(@Parameter(name = "id", description = "Job ID") @PathVariable Long id) {
+  public String getJobLogs(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @Parameter(name = "offset", description = "Number of log lines to skip") @RequestParam(defaultValue = "0") int offset,
+      @Parameter(name = "limit", description = "Maximum number of log lines to return (default: all)") @RequestParam(required = false) Integer limit) {
 
-    return jobService.getJobLogs(id);
+    return jobService.getJobLogs(id, offset, limit);
+  }
+
+  @Operation(summary = "Stream a job's log lines and status changes as Server-Sent Events")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping(value = "/stream/{id}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamJob(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @Parameter(name = "Last-Event-ID", description = "Seq of the last log line already received; sent by EventSource on reconnect")
+          @RequestHeader(value = "Last-Event-ID", required = false) Integer lastEventId) {
+
+    Job job =
+        jobsRepository.findById(id).orElseThrow(() -> new EntityNotFoundException(Job.class, id));
+    return jobService.streamJob(job, lastEventId);
   }
 
   @Operation(summary = "Launch UpdateAll job")
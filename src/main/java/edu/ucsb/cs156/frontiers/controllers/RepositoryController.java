@@ -11,6 +11,7 @@ import edu.ucsb.cs156.frontiers.services.RepositoryService;
 import edu.ucsb.cs156.frontiers.services.jobs.JobService;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -35,6 +36,9 @@ public class RepositoryController extends ApiController {
     @Autowired
     CourseRepository courseRepository;
 
+    @Value("${app.github.repo-creation.concurrency:4}")
+    int repoCreationConcurrency;
+
 
     /**
     * Fires a job that creates a repo for every RosterStudent with a linked user with a GitHub account.
@@ -47,8 +51,8 @@ public class RepositoryController extends ApiController {
     @PostMapping("/createRepos")
     @PreAuthorize("hasRole('ROLE_PROFESSOR')")
     public Job createRepos(@RequestParam Long courseId, @RequestParam String repoPrefix, @RequestParam Optional<Boolean> isPrivate) {
-        Course course = courseRepository.findById(courseId).orElseThrow(() -> new EntityNotFoundException(Course.class, courseId));
-        if (getCurrentUser().getUser().getId() == course.getCreator().getId()) {
+        Course course = courseRepository.findWithRosterStudentsById(courseId).orElseThrow(() -> new EntityNotFoundException(Course.class, courseId));
+        if (getPrincipal().getUserId() == course.getCreator().getId()) {
             if (course.getOrgName() == null || course.getInstallationId() == null) {
                 throw new NoLinkedOrganizationException(course.getCourseName());
             } else {
@@ -57,8 +61,9 @@ public class RepositoryController extends ApiController {
                         .isPrivate(isPrivate.orElse(false))
                         .repositoryService(repositoryService)
                         .course(course)
+                        .maxConcurrency(repoCreationConcurrency)
                         .build();
-                return jobService.runAsJob(job);
+                return jobService.runAsJob(job, course.getId());
             }
         } else {
             throw new AccessDeniedException("You do not have permission to create student repositories on this course");
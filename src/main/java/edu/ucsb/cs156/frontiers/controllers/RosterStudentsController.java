@@ -3,17 +3,19 @@ package edu.ucsb.cs156.frontiers.controllers;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import edu.ucsb.cs156.frontiers.entities.Job;
 import edu.ucsb.cs156.frontiers.entities.User;
 import edu.ucsb.cs156.frontiers.errors.NoLinkedOrganizationException;
+import edu.ucsb.cs156.frontiers.jobs.RosterImportJob;
 import edu.ucsb.cs156.frontiers.jobs.UpdateOrgMembershipJob;
+import edu.ucsb.cs156.frontiers.models.FrontiersPrincipal;
 import edu.ucsb.cs156.frontiers.repositories.UserRepository;
 import edu.ucsb.cs156.frontiers.services.*;
 import edu.ucsb.cs156.frontiers.services.jobs.JobService;
@@ -40,9 +42,6 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvException;
-
 @Tag(name = "RosterStudents")
 @RequestMapping("/api/rosterstudents")
 @RestController
@@ -54,10 +53,6 @@ public class RosterStudentsController extends ApiController {
     @Autowired
     private OrganizationMemberService organizationMemberService;
 
-    public enum InsertStatus {
-        INSERTED, UPDATED
-    };
-
     @Autowired
     private RosterStudentRepository rosterStudentRepository;
 
@@ -65,7 +60,7 @@ public class RosterStudentsController extends ApiController {
     private CourseRepository courseRepository;
 
     @Autowired
-    private UpdateUserService updateUserService;
+    private RosterImportService rosterImportService;
 
     @Autowired
     private CurrentUserService currentUserService;
@@ -85,13 +80,18 @@ public class RosterStudentsController extends ApiController {
             @Parameter(name = "firstName") @RequestParam String firstName,
             @Parameter(name = "lastName") @RequestParam String lastName,
             @Parameter(name = "email") @RequestParam String email,
-            @Parameter(name = "courseId") @RequestParam Long courseId) throws EntityNotFoundException {
+            @Parameter(name = "courseId") @RequestParam Long courseId) throws EntityNotFoundException, BadRequestException {
 
         // Get Course or else throw an error
 
         Course course = courseRepository.findById(courseId)
                 .orElseThrow(() -> new EntityNotFoundException(Course.class, courseId));
 
+        if (rosterStudentRepository.findByCourseIdAndStudentId(courseId, studentId).isPresent()) {
+            throw new BadRequestException(
+                String.format("Student number '%s' is already used in course %d", studentId, courseId));
+        }
+
         RosterStudent rosterStudent = RosterStudent.builder()
                 .studentId(studentId)
                 .firstName(firstName)
@@ -124,66 +124,55 @@ public class RosterStudentsController extends ApiController {
     @Operation(summary = "Upload Roster students for Course in UCSB Egrades Format")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PostMapping(value = "/upload/egrades", consumes = { "multipart/form-data" })
-    public Map<String, String> uploadRosterStudents(
+    public Map<String, Object> uploadRosterStudents(
             @Parameter(name = "courseId") @RequestParam Long courseId,
             @Parameter(name = "file") @RequestParam("file") MultipartFile file)
-            throws JsonProcessingException, IOException, CsvException {
+            throws IOException {
 
         Course course = courseRepository.findById(courseId)
                 .orElseThrow(() -> new EntityNotFoundException(Course.class, courseId.toString()));
 
-        int counts[] = { 0, 0 };
-
-        try (InputStream inputStream = new BufferedInputStream(file.getInputStream());
-                InputStreamReader reader = new InputStreamReader(inputStream);
-                CSVReader csvReader = new CSVReader(reader);) {
-            csvReader.skip(2);
-            List<String[]> myEntries = csvReader.readAll();
-            for (String[] row : myEntries) {
-                RosterStudent rosterStudent = fromEgradesCSVRow(row);
-                InsertStatus s = upsertStudent(rosterStudent, course);
-                counts[s.ordinal()]++;
-            }
+        RosterImportService.ImportResult result;
+        try (InputStream inputStream = new BufferedInputStream(file.getInputStream())) {
+            result = rosterImportService.importEgrades(course, inputStream);
+        }
+        String message = String.format("Inserted %d new students, Updated %d students",
+                result.inserted(), result.updated());
+        if (result.rejected() > 0) {
+            message += String.format(", Skipped %d invalid rows", result.rejected());
         }
         return Map.of(
                 "filename", file.getOriginalFilename(),
-                "message", String.format("Inserted %d new students, Updated %d students",
-                        counts[InsertStatus.INSERTED.ordinal()], counts[InsertStatus.UPDATED.ordinal()]));
+                "message", message,
+                "errors", result.errors());
 
     }
 
-    public RosterStudent fromEgradesCSVRow(String[] row) {
-        return RosterStudent.builder()
-                .firstName(row[5])
-                .lastName(row[4])
-                .studentId(row[1])
-                .email(row[10])
-                .build();
-    }
+    @Operation(summary = "Upload Roster students for Course in UCSB Egrades Format and import them in a background job")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/upload/egrades/async", consumes = { "multipart/form-data" })
+    public Job uploadRosterStudentsAsJob(
+            @Parameter(name = "courseId") @RequestParam Long courseId,
+            @Parameter(name = "file") @RequestParam("file") MultipartFile file)
+            throws IOException {
 
-    public InsertStatus upsertStudent(RosterStudent student, Course course) {
-        Optional<RosterStudent> existingStudent = rosterStudentRepository.findByCourseIdAndStudentId(course.getId(),
-                student.getStudentId());
-        String convertedEmail = student.getEmail().replace("@umail.ucsb.edu","@ucsb.edu");
-        if (existingStudent.isPresent()) {
-            RosterStudent existingStudentObj = existingStudent.get();
-            existingStudentObj.setRosterStatus(RosterStatus.ROSTER);
-            existingStudentObj.setFirstName(student.getFirstName());
-            existingStudentObj.setLastName(student.getLastName());
-            if (!existingStudentObj.getEmail().equals(convertedEmail)) {
-                existingStudentObj.setEmail(convertedEmail);
-            }
-            existingStudentObj = rosterStudentRepository.save(existingStudentObj);
-            updateUserService.attachUserToRosterStudent(existingStudentObj);
-            return InsertStatus.UPDATED;
-        } else {
-            student.setCourse(course);
-            student.setEmail(convertedEmail);
-            student.setRosterStatus(RosterStatus.ROSTER);
-            student.setOrgStatus(OrgStatus.NONE);
-            student = rosterStudentRepository.save(student);
-            updateUserService.attachUserToRosterStudent(student);
-            return InsertStatus.INSERTED;
+        Course course = courseRepository.findById(courseId)
+                .orElseThrow(() -> new EntityNotFoundException(Course.class, courseId.toString()));
+
+        // the multipart file is gone once this request returns, so the job reads its own copy
+        Path egradesFile = Files.createTempFile("egrades-", ".csv");
+        try {
+            file.transferTo(egradesFile);
+            RosterImportJob job = RosterImportJob.builder()
+                    .course(course)
+                    .rosterImportService(rosterImportService)
+                    .egradesFile(egradesFile)
+                    .build();
+            // a second upload must not be merged into an import that is already running, so it is refused
+            return jobService.runAsNewJob(job, course.getId());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(egradesFile);
+            throw e;
         }
     }
 
@@ -200,7 +189,7 @@ public class RosterStudentsController extends ApiController {
                     .course(course)
                     .build();
 
-            return jobService.runAsJob(job);
+            return jobService.runAsJob(job, course.getId());
         }
     }
     
@@ -208,11 +197,11 @@ public class RosterStudentsController extends ApiController {
     @PreAuthorize("hasRole('ROLE_USER')")
     @PutMapping("/linkGitHub")
     public ResponseEntity<String> linkGitHub(@Parameter(name = "rosterStudentId", description = "Roster Student to be linked to") @RequestParam Long rosterStudentId){
-        User currentUser = currentUserService.getUser();
+        FrontiersPrincipal currentUser = currentUserService.getPrincipal();
         RosterStudent rosterStudent = rosterStudentRepository.findById(rosterStudentId)
                 .orElseThrow(() -> new EntityNotFoundException(RosterStudent.class, rosterStudentId));
 
-        if (currentUser.getId() != rosterStudent.getUser().getId()) {
+        if (currentUser.getUserId() != rosterStudent.getUser().getId()) {
             throw new AccessDeniedException("User not authorized to link this roster student");
         }
 
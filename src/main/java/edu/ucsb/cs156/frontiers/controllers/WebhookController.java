@@ -1,23 +1,22 @@
 package edu.ucsb.cs156.frontiers.controllers;
 
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import edu.ucsb.cs156.frontiers.entities.Course;
-import edu.ucsb.cs156.frontiers.entities.RosterStudent;
-import edu.ucsb.cs156.frontiers.entities.User;
-import edu.ucsb.cs156.frontiers.enums.OrgStatus;
-import edu.ucsb.cs156.frontiers.repositories.CourseRepository;
-import edu.ucsb.cs156.frontiers.repositories.RosterStudentRepository;
-import edu.ucsb.cs156.frontiers.repositories.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.frontiers.services.WebhookInboxService;
+import edu.ucsb.cs156.frontiers.services.WebhookSignatureService;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.Optional;
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
 
 @Tag(name = "Webhooks Controller")
 @RestController
@@ -25,39 +24,47 @@ import java.util.Optional;
 public class WebhookController {
 
 
-    private final CourseRepository courseRepository;
-    private final RosterStudentRepository rosterStudentRepository;
+    private final WebhookInboxService webhookInboxService;
+    private final WebhookSignatureService webhookSignatureService;
+    private final ObjectMapper objectMapper;
 
-    public WebhookController(CourseRepository courseRepository, RosterStudentRepository rosterStudentRepository) {
-        this.courseRepository = courseRepository;
-        this.rosterStudentRepository = rosterStudentRepository;
+    public WebhookController(WebhookInboxService webhookInboxService, WebhookSignatureService webhookSignatureService,
+            ObjectMapper objectMapper) {
+        this.webhookInboxService = webhookInboxService;
+        this.webhookSignatureService = webhookSignatureService;
+        this.objectMapper = objectMapper;
     }
 
     /**
     * Accepts webhooks from GitHub, currently to update the membership status of a RosterStudent.
-    * @param jsonBody body of the webhook. The description of the currently used webhook is available in docs/webhooks.md
+    * The signature is checked against the body as received, before the body is parsed. The delivery is then stored
+    * and handled in the background by {@link WebhookInboxService}, so GitHub gets its answer without waiting for the
+    * roster to be updated.
+    * @param deliveryId unique id GitHub gives each delivery; a redelivered event keeps its id and is only handled once
+    * @param event the type of event, e.g. organization
+    * @param signature HMAC-SHA256 of the body keyed with the webhook secret, see {@link WebhookSignatureService}
+    * @param body body of the webhook. The description of the currently used webhook is available in docs/webhooks.md
     *
-    * @return either the word success so GitHub will not flag the webhook as a failure, or the updated RosterStudent
+    * @return 202 if the delivery was queued, 200 if it had already been received, 401 if the signature is not
+    *     valid, or 400 if the body is not JSON
     */
     @PostMapping("/github")
-    public ResponseEntity<String> createGitHubWebhook(@RequestBody JsonNode jsonBody) throws JsonProcessingException {
-
-        if(jsonBody.has("action")){
-            if(jsonBody.get("action").asText().equals("member_added")){
-                String githubLogin = jsonBody.get("membership").get("user").get("login").asText();
-                String installationId = jsonBody.get("installation").get("id").asText();
-                Optional<Course> course = courseRepository.findByInstallationId(installationId);
-                if(course.isPresent()){
-                    Optional<RosterStudent> student = rosterStudentRepository.findByCourseAndGithubLogin(course.get(), githubLogin);
-                    if(student.isPresent()){
-                        RosterStudent updatedStudent = student.get();
-                        updatedStudent.setOrgStatus(OrgStatus.MEMBER);
-                        rosterStudentRepository.save(updatedStudent);
-                        return ResponseEntity.ok(updatedStudent.toString());
-                    }
-                }
-            }
+    public ResponseEntity<String> createGitHubWebhook(@RequestHeader("X-GitHub-Delivery") String deliveryId,
+            @RequestHeader(value = "X-GitHub-Event", required = false) String event,
+            @RequestHeader(value = "X-Hub-Signature-256", required = false) String signature,
+            @RequestBody byte[] body) throws NoSuchAlgorithmException, InvalidKeyException {
+        if (!webhookSignatureService.isValid(body, signature)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("invalid signature");
         }
-        return  ResponseEntity.ok().body("success");
+        JsonNode jsonBody;
+        try {
+            jsonBody = objectMapper.readTree(body);
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body("invalid JSON");
+        }
+        if (webhookInboxService.receive(deliveryId, event, jsonBody)) {
+            return ResponseEntity.accepted().body("queued");
+        }
+        return ResponseEntity.ok("already received");
     }
 }
@@ -2,8 +2,6 @@ package edu.ucsb.cs156.frontiers.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
-import org.hibernate.annotations.Fetch;
-import org.hibernate.annotations.FetchMode;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -14,7 +12,18 @@ import java.util.List;
 @NoArgsConstructor
 @Builder
 @Entity
+@NamedEntityGraph(name = Course.WITH_ROSTER_STUDENTS,
+        attributeNodes = {
+                @NamedAttributeNode("creator"),
+                @NamedAttributeNode(value = "rosterStudents", subgraph = "rosterStudent") },
+        subgraphs = @NamedSubgraph(name = "rosterStudent", attributeNodes = @NamedAttributeNode("user")))
 public class Course {
+    /**
+     * Entity graph that loads the course's roster students (and their users) in the same query as the course.
+     * The roster and staff are lazy otherwise.
+     */
+    public static final String WITH_ROSTER_STUDENTS = "Course.withRosterStudents";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -36,13 +45,11 @@ public class Course {
     private String school;
 
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "course")
-    @Fetch(FetchMode.JOIN)
     @JsonIgnore
     @ToString.Exclude
     private List<CourseStaff> courseStaff;
 
     @OneToMany(cascade = CascadeType.REMOVE, mappedBy = "course")
-    @Fetch(FetchMode.JOIN)
     @JsonIgnore
     @ToString.Exclude
     private List<RosterStudent> rosterStudents;
@@ -28,8 +28,18 @@ public class Job {
   @CreatedDate private ZonedDateTime createdAt;
   @LastModifiedDate private ZonedDateTime updatedAt;
 
+  // queued -> running -> complete | error
   private String status;
 
+  // Simple class name of the job, e.g. UpdateOrgMembershipJob
+  private String jobType;
+
+  // Set for jobs that work on a single course; at most one job of each type is queued or running per course
+  private Long courseId;
+
+  private ZonedDateTime startedAt;
+
+  // Only set for jobs that ran before log lines were stored in job_log_line (see JobLogLine).
   // 1048576 is 2^20, which is the max size of a mediumtext in MySQL
   @Column(
       columnDefinition = "TEXT",
@@ -0,0 +1,42 @@
+package edu.ucsb.cs156.frontiers.entities;
+
+import jakarta.persistence.*;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.*;
+
+/**
+ * One line of a job's log. Lines are only ever appended; {@code seq} numbers them from 0 within a job.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "job_log_line")
+public class JobLogLine {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "job_log_line_seq")
+  // allocationSize matches the sequence increment, so a batch of 50 lines needs one sequence call
+  @SequenceGenerator(name = "job_log_line_seq", sequenceName = "job_log_line_seq", allocationSize = 50)
+  private Long id;
+
+  private long jobId;
+
+  private int seq;
+
+  private ZonedDateTime loggedAt;
+
+  @Column(name = "log_level")
+  private String level;
+
+  @Column(columnDefinition = "TEXT")
+  private String message;
+
+  /**
+   * Joins the messages of {@code lines} with newlines, the way job logs have always been displayed.
+   */
+  public static String toText(List<JobLogLine> lines) {
+    return lines.stream().map(JobLogLine::getMessage).collect(Collectors.joining("\n"));
+  }
+}
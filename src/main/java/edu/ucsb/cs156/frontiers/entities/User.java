@@ -2,8 +2,6 @@ package edu.ucsb.cs156.frontiers.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
-import org.hibernate.annotations.Fetch;
-import org.hibernate.annotations.FetchMode;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -35,12 +33,11 @@ public class User {
 
   @JsonIgnore
   @OneToMany(mappedBy = "user")
-  @Fetch(FetchMode.JOIN)
   @ToString.Exclude
   private List<RosterStudent> linkedStudents;
 
+  @JsonIgnore
   @OneToMany(mappedBy = "user")
-  @Fetch(FetchMode.JOIN)
   @ToString.Exclude
   private List<CourseStaff> roles;
 }
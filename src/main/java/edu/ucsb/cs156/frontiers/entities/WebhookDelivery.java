@@ -0,0 +1,49 @@
+package edu.ucsb.cs156.frontiers.entities;
+
+import jakarta.persistence.*;
+import java.time.ZonedDateTime;
+import lombok.*;
+
+/**
+ * A GitHub webhook delivery waiting in, or already drained from, the inbox (see WebhookInboxService).
+ * {@code deliveryId} is GitHub's {@code X-GitHub-Delivery} header, which is the same when GitHub redelivers an event.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "webhook_delivery")
+public class WebhookDelivery {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  private String deliveryId;
+
+  // X-GitHub-Event header, e.g. organization
+  private String event;
+
+  private String action;
+
+  private String installationId;
+
+  // login of the user a membership event is about
+  private String githubLogin;
+
+  @Column(columnDefinition = "TEXT")
+  @ToString.Exclude
+  private String payload;
+
+  private ZonedDateTime receivedAt;
+
+  // null until the delivery has been handled, or given up on after too many failed attempts
+  private ZonedDateTime processedAt;
+
+  // failed attempts to handle the delivery
+  @Builder.Default
+  private int attempts = 0;
+
+  // the exception of the latest failed attempt
+  @Column(columnDefinition = "TEXT")
+  private String lastError;
+}
@@ -1,5 +1,21 @@
 package edu.ucsb.cs156.frontiers.enums;
 
 public enum OrgStatus {
-    NONE, INVITED, MEMBER, OWNER, EXPIRED
+    NONE, INVITED, MEMBER, OWNER, EXPIRED;
+
+    /**
+     * @param role a GitHub organization membership role, {@code admin} or {@code member}
+     * @return the status of a roster student who belongs to the organization with that role
+     */
+    public static OrgStatus forRole(String role) {
+        return "admin".equals(role) ? OWNER : MEMBER;
+    }
+
+    /**
+     * @param status a roster student's status, possibly null
+     * @return whether the student belongs to the organization, with either role
+     */
+    public static boolean inOrganization(OrgStatus status) {
+        return status == MEMBER || status == OWNER;
+    }
 }
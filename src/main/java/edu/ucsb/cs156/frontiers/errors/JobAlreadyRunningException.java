@@ -0,0 +1,17 @@
+package edu.ucsb.cs156.frontiers.errors;
+
+/**
+ * Thrown when a job cannot be started because a job of the same type is already queued or running for the course.
+ */
+public class JobAlreadyRunningException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param jobType simple class name of the job that was rejected
+   * @param courseId id of the course the job is for
+   */
+  public JobAlreadyRunningException(String jobType, long courseId) {
+    super("A %s is already queued or running for course %d; please wait for it to finish and try again."
+      .formatted(jobType, courseId));
+  }
+}
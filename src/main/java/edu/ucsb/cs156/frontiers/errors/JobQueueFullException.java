@@ -0,0 +1,16 @@
+package edu.ucsb.cs156.frontiers.errors;
+
+/**
+ * Thrown when a job cannot be started because the job queue is full.
+ */
+public class JobQueueFullException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param jobType simple class name of the job that was rejected
+   */
+  public JobQueueFullException(String jobType) {
+    super("Too many jobs are waiting to run; %s was not started. Please try again later."
+      .formatted(jobType));
+  }
+}
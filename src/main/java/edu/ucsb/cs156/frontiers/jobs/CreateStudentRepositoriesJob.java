@@ -3,26 +3,76 @@ package edu.ucsb.cs156.frontiers.jobs;
 import edu.ucsb.cs156.frontiers.entities.Course;
 import edu.ucsb.cs156.frontiers.entities.RosterStudent;
 import edu.ucsb.cs156.frontiers.enums.OrgStatus;
+import edu.ucsb.cs156.frontiers.services.GithubRateLimitTracker;
 import edu.ucsb.cs156.frontiers.services.RepositoryService;
 import edu.ucsb.cs156.frontiers.services.jobs.JobContext;
 import edu.ucsb.cs156.frontiers.services.jobs.JobContextConsumer;
 import lombok.Builder;
+import org.springframework.web.client.HttpStatusCodeException;
 
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates a repository for every roster student who is a member or owner of the course's GitHub organization.
+ * <p>
+ * Students are processed concurrently on up to {@code maxConcurrency} virtual threads. Pacing against GitHub's
+ * rate limits is handled by the {@link GithubRateLimitTracker} installed on the RepositoryService's client;
+ * a student whose request was rejected by a rate limit is retried once the limit has passed. Only a retry grants the
+ * student access to a repository that already exists, as the failed attempt may have created it.
+ * </p>
+ */
 @Builder
 public class CreateStudentRepositoriesJob implements JobContextConsumer {
+    static final int MAX_ATTEMPTS = 3;
+
     Course course;
     RepositoryService repositoryService;
     String repositoryPrefix;
     Boolean isPrivate;
+    @Builder.Default
+    int maxConcurrency = 4;
 
     @Override
     public void accept(JobContext ctx) throws Exception {
         ctx.log("Processing...");
-        for(RosterStudent student : course.getRosterStudents()){
-            if(student.getGithubLogin() != null && student.getOrgStatus() == OrgStatus.MEMBER){
-                repositoryService.createStudentRepository(course, student, repositoryPrefix, isPrivate);
+        List<RosterStudent> students = course.getRosterStudents().stream()
+                .filter(student -> student.getGithubLogin() != null && OrgStatus.inOrganization(student.getOrgStatus()))
+                .toList();
+        AtomicInteger finished = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        try (ExecutorService executor = Executors.newFixedThreadPool(maxConcurrency, Thread.ofVirtual().factory())) {
+            for (RosterStudent student : students) {
+                executor.submit(() -> {
+                    String outcome = createWithRetry(student);
+                    if (outcome != null) {
+                        failed.incrementAndGet();
+                    }
+                    ctx.log("[%d/%d] %s-%s: %s".formatted(finished.incrementAndGet(), students.size(),
+                            repositoryPrefix, student.getGithubLogin(), outcome == null ? "done" : "failed (" + outcome + ")"));
+                });
+            }
+        }
+        ctx.log("Done: %d succeeded, %d failed".formatted(students.size() - failed.get(), failed.get()));
+    }
+
+    /**
+     * @return null on success, otherwise a description of the failure
+     */
+    private String createWithRetry(RosterStudent student) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                repositoryService.createStudentRepository(course, student, repositoryPrefix, isPrivate, attempt > 1);
+                return null;
+            } catch (HttpStatusCodeException e) {
+                if (attempt >= MAX_ATTEMPTS || !GithubRateLimitTracker.isRateLimited(e)) {
+                    return e.getMessage();
+                }
+            } catch (Exception e) {
+                return e.getMessage();
             }
         }
-        ctx.log("Done");
     }
 }
@@ -0,0 +1,49 @@
+package edu.ucsb.cs156.frontiers.jobs;
+
+import edu.ucsb.cs156.frontiers.entities.Course;
+import edu.ucsb.cs156.frontiers.services.RosterImportService;
+import edu.ucsb.cs156.frontiers.services.jobs.JobContext;
+import edu.ucsb.cs156.frontiers.services.jobs.JobContextConsumer;
+import lombok.Builder;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Imports an uploaded eGrades roster into a course in the background.
+ * <p>
+ * The upload is spooled to {@code egradesFile} by the controller so the request can return right away; the file is
+ * deleted once the import has read it, whether or not the import succeeds. Progress is logged after every chunk
+ * written by {@link RosterImportService}, and rows that were skipped are logged as errors.
+ * </p>
+ */
+@Builder
+public class RosterImportJob implements JobContextConsumer {
+    Course course;
+    RosterImportService rosterImportService;
+    Path egradesFile;
+
+    @Override
+    public void accept(JobContext ctx) throws Exception {
+        ctx.log("Importing roster for %s".formatted(course.getCourseName()));
+        RosterImportService.ImportResult result;
+        try (InputStream egradesCsv = Files.newInputStream(egradesFile)) {
+            result = rosterImportService.importEgrades(course, egradesCsv,
+                    rowsWritten -> ctx.log("Imported %d rows".formatted(rowsWritten)));
+        } finally {
+            Files.deleteIfExists(egradesFile);
+        }
+
+        for (String error : result.errors()) {
+            ctx.error(error);
+        }
+        int unlisted = result.rejected() - result.errors().size();
+        if (unlisted > 0) {
+            ctx.error("%d more invalid rows not listed".formatted(unlisted));
+        }
+        ctx.log("Inserted %d new students, Updated %d students, Skipped %d invalid rows"
+                .formatted(result.inserted(), result.updated(), result.rejected()));
+        ctx.log("Done");
+    }
+}
@@ -14,7 +14,8 @@ public class UpdateAllJob implements JobContextConsumer {
   @Override
   public void accept(JobContext ctx) throws Exception {
     ctx.log("Processing...");
-    updateUserService.attachRosterStudentsAllUsers();
+    int attached = updateUserService.attachRosterStudentsAllUsers();
+    ctx.log("Attached " + attached + " roster students to users");
     ctx.log("Done");
   }
 }
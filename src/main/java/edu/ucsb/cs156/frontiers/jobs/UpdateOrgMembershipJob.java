@@ -2,18 +2,31 @@ package edu.ucsb.cs156.frontiers.jobs;
 
 import edu.ucsb.cs156.frontiers.entities.Course;
 import edu.ucsb.cs156.frontiers.entities.RosterStudent;
-import edu.ucsb.cs156.frontiers.entities.User;
 import edu.ucsb.cs156.frontiers.enums.OrgStatus;
 import edu.ucsb.cs156.frontiers.models.OrgMember;
 import edu.ucsb.cs156.frontiers.repositories.RosterStudentRepository;
-import edu.ucsb.cs156.frontiers.repositories.UserRepository;
-import edu.ucsb.cs156.frontiers.services.OrganizationLinkerService;
 import edu.ucsb.cs156.frontiers.services.OrganizationMemberService;
 import edu.ucsb.cs156.frontiers.services.jobs.JobContext;
 import edu.ucsb.cs156.frontiers.services.jobs.JobContextConsumer;
 import lombok.Builder;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reconciles the org status of a course's roster with the current members of its GitHub organization.
+ * <p>
+ * The roster is loaded once and diffed against the organization's member list page by page as GitHub returns
+ * it; only students whose status actually changes are written back, with one UPDATE per new status. Organization
+ * admins are marked OWNER and other members MEMBER, as the webhook does. Students marked MEMBER or OWNER who are no longer
+ * in the organization are reset to NONE.
+ * </p>
+ */
 @Builder
 public class UpdateOrgMembershipJob implements JobContextConsumer {
     Course course;
@@ -23,15 +36,39 @@ public class UpdateOrgMembershipJob implements JobContextConsumer {
     @Override
     public void accept(JobContext ctx) throws Exception {
         ctx.log("Processing...");
-        Iterable<OrgMember> members = organizationMemberService.getOrganizationMembers(course);
-        for(OrgMember member : members){
-                Optional<RosterStudent> student = rosterStudentRepository.findByCourseAndGithubId(course, member.getGithubId());
-                if(student.isPresent()){
-                    RosterStudent foundStudent = student.get();
-                    foundStudent.setOrgStatus(OrgStatus.MEMBER);
-                    rosterStudentRepository.save(foundStudent);
+        Map<Integer, RosterStudent> studentsByGithubId = new HashMap<>();
+        for (RosterStudent student : rosterStudentRepository.findByCourseId(course.getId())) {
+            if (student.getGithubId() != null) {
+                studentsByGithubId.put(student.getGithubId(), student);
+            }
+        }
+
+        Map<OrgStatus, List<Long>> changedIdsByStatus = new EnumMap<>(OrgStatus.class);
+        Set<Integer> memberIds = new HashSet<>();
+        organizationMemberService.forEachOrganizationMemberPage(course, page -> {
+            for (OrgMember member : page) {
+                memberIds.add(member.getGithubId());
+                RosterStudent student = studentsByGithubId.get(member.getGithubId());
+                OrgStatus status = OrgStatus.forRole(member.getRole());
+                if (student != null && student.getOrgStatus() != status) {
+                    student.setOrgStatus(status);
+                    changedIdsByStatus.computeIfAbsent(status, newStatus -> new ArrayList<>()).add(student.getId());
                 }
+            }
+        });
+        for (RosterStudent student : studentsByGithubId.values()) {
+            if (OrgStatus.inOrganization(student.getOrgStatus()) && !memberIds.contains(student.getGithubId())) {
+                student.setOrgStatus(OrgStatus.NONE);
+                changedIdsByStatus.computeIfAbsent(OrgStatus.NONE, status -> new ArrayList<>()).add(student.getId());
+            }
+        }
+
+        int changed = 0;
+        for (Map.Entry<OrgStatus, List<Long>> entry : changedIdsByStatus.entrySet()) {
+            rosterStudentRepository.updateOrgStatus(entry.getValue(), entry.getKey());
+            changed += entry.getValue().size();
         }
+        ctx.log("Updated org status for %d roster students".formatted(changed));
         ctx.log("Done");
     }
 }
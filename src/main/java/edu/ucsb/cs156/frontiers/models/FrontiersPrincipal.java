@@ -0,0 +1,42 @@
+package edu.ucsb.cs156.frontiers.models;
+
+import java.util.Collection;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.OidcUserInfo;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+
+import edu.ucsb.cs156.frontiers.entities.User;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * This is the principal stored in the security context for a user signed in with Google.
+ * <p>
+ * Besides the ID token and roles, it carries the few fields of the {@link User} that authorization checks need,
+ * copied when the user signs in (and again when they link a GitHub account), so that those checks do not have to
+ * load the user from the database. Anything else about the user should still come from
+ * {@link edu.ucsb.cs156.frontiers.services.CurrentUserService#getUser()}.
+ * </p>
+ */
+@Getter
+@EqualsAndHashCode(callSuper = true)
+public class FrontiersPrincipal extends DefaultOidcUser {
+
+  private static final long serialVersionUID = 1L;
+
+  private final long userId;
+  private final String email;
+  private final int githubId;
+  private final String githubLogin;
+
+  public FrontiersPrincipal(Collection<? extends GrantedAuthority> authorities, OidcIdToken idToken,
+      OidcUserInfo userInfo, User user) {
+    super(authorities, idToken, userInfo);
+    this.userId = user.getId();
+    this.email = user.getEmail();
+    this.githubId = user.getGithubId();
+    this.githubLogin = user.getGithubLogin();
+  }
+}
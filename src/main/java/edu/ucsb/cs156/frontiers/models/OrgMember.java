@@ -1,5 +1,6 @@
 package edu.ucsb.cs156.frontiers.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import edu.ucsb.cs156.frontiers.enums.OrgStatus;
 import lombok.AllArgsConstructor;
@@ -19,4 +20,8 @@ public class OrgMember {
     @JsonProperty("login")
     private String githubLogin;
 
+    /** {@code admin} or {@code member}; not part of GitHub's member list, filled in by OrganizationMemberService. */
+    @JsonIgnore
+    private String role;
+
 }
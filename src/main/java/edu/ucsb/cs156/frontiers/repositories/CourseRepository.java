@@ -1,5 +1,6 @@
 package edu.ucsb.cs156.frontiers.repositories;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import edu.ucsb.cs156.frontiers.entities.Course;
@@ -10,6 +11,20 @@ import java.util.Optional;
 public interface CourseRepository extends JpaRepository<Course,Long>
 {
 
-    Optional<Course> findByInstallationId(String installationId);
+    /**
+     * @param installationId id of a GitHub App installation
+     * @return the courses linked to it; several courses can share one organization
+     */
+    List<Course> findAllByInstallationId(String installationId);
+
+    @EntityGraph(Course.WITH_ROSTER_STUDENTS)
     List<Course> findAllByRosterStudents_Email(String email);
+
+    /**
+     * Like {@link #findById}, but also loads the course's roster students.
+     * @param id id of the course
+     * @return the course, with its roster students loaded
+     */
+    @EntityGraph(Course.WITH_ROSTER_STUDENTS)
+    Optional<Course> findWithRosterStudentsById(Long id);
 }
@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.frontiers.repositories;
+
+import java.util.List;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.frontiers.entities.JobLogLine;
+
+@Repository
+public interface JobLogLineRepository extends JpaRepository<JobLogLine, Long> {
+  /**
+   * Since {@code seq} numbers a job's lines without gaps, {@code fromSeq} is the offset of the first line returned.
+   */
+  List<JobLogLine> findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(long jobId, int fromSeq, Limit limit);
+
+  /**
+   * Saves in a transaction of its own. A job that logs progress from inside a transaction (e.g. the roster import)
+   * would otherwise hold its lines back until that transaction commits, and lose them if it rolls back.
+   */
+  @Override
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  <S extends JobLogLine> List<S> saveAll(Iterable<S> entities);
+}
@@ -1,10 +1,21 @@
 package edu.ucsb.cs156.frontiers.repositories;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import edu.ucsb.cs156.frontiers.entities.Course;
 import edu.ucsb.cs156.frontiers.entities.User;
+import edu.ucsb.cs156.frontiers.enums.OrgStatus;
+import edu.ucsb.cs156.frontiers.models.RosterStudentDTO;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import edu.ucsb.cs156.frontiers.entities.RosterStudent;
 
@@ -20,5 +31,70 @@ public interface RosterStudentRepository extends JpaRepository<RosterStudent, Lo
 
     Optional<RosterStudent> findByCourseAndGithubLogin(Course course, String githubLogin);
 
+    List<RosterStudent> findByCourseIdAndGithubLoginIn(Long courseId, Collection<String> githubLogins);
+
     Iterable<RosterStudent> findAllByUser(User user);
+
+    /**
+     * Sets the org status of the given roster students in one statement, without loading them.
+     * @param ids ids of the roster students
+     * @param orgStatus the org status they get
+     * @return the number of roster students written
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE RosterStudent r SET r.orgStatus = :orgStatus WHERE r.id IN :ids")
+    int updateOrgStatus(@Param("ids") Collection<Long> ids, @Param("orgStatus") OrgStatus orgStatus);
+
+    /**
+     * Selects only the columns of {@link RosterStudentDTO}, so no {@link RosterStudent}, {@link Course} or
+     * {@link User} entities are loaded for a roster.
+     */
+    String ROSTER_STUDENT_DTO_QUERY = """
+            SELECT new edu.ucsb.cs156.frontiers.models.RosterStudentDTO(
+                r.id, r.course.id, r.studentId, r.firstName, r.lastName, r.email,
+                COALESCE(u.id, 0L), r.githubId, r.githubLogin, r.rosterStatus, r.orgStatus)
+            FROM RosterStudent r LEFT JOIN r.user u
+            WHERE r.course.id = :courseId
+            ORDER BY r.id""";
+
+    /**
+     * Returns a course's roster as DTOs, in one query.
+     * @param courseId id of the course
+     * @return the course's roster students in id order
+     */
+    @Query(ROSTER_STUDENT_DTO_QUERY)
+    List<RosterStudentDTO> findRosterStudentDTOsByCourseId(@Param("courseId") Long courseId);
+
+    /**
+     * Streams a course's roster as DTOs, reading rows from a cursor 500 at a time,
+     * so memory use does not grow with the size of the roster.
+     * Must be called inside a transaction, and the stream must be closed.
+     * @param courseId id of the course
+     * @return the course's roster students in id order
+     */
+    @Query(ROSTER_STUDENT_DTO_QUERY)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<RosterStudentDTO> streamRosterStudentDTOsByCourseId(@Param("courseId") Long courseId);
+
+    @Query("SELECT MAX(r.id) FROM RosterStudent r")
+    Long findMaxId();
+
+    /**
+     * Attaches each roster student with an id in {@code (afterId, throughId]} to the user with the same email,
+     * in one statement. Students without a matching user, or already attached to it, are not written.
+     * Users' emails are unique, so the subquery finds at most one user.
+     * @param afterId roster students with an id above this are attached
+     * @param throughId roster students with an id up to and including this are attached
+     * @return the number of roster students attached
+     */
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            UPDATE roster_student r
+            SET user_id = (SELECT u.id FROM users u WHERE u.email = r.email)
+            WHERE r.id > :afterId AND r.id <= :throughId
+              AND EXISTS (SELECT 1 FROM users u WHERE u.email = r.email
+                          AND (r.user_id IS NULL OR r.user_id <> u.id))""")
+    int attachUsersByEmail(@Param("afterId") long afterId, @Param("throughId") long throughId);
 }
@@ -1,11 +1,17 @@
 package edu.ucsb.cs156.frontiers.repositories;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import edu.ucsb.cs156.frontiers.entities.User;
 
 import javax.swing.text.html.Option;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -20,9 +26,41 @@ public interface UserRepository extends CrudRepository<User, Long> {
    */
   Optional<User> findByEmail(String email);
 
+  /**
+   * This method returns the User entities with any of the given emails.
+   * @param emails email addresses to look up
+   * @return the users found; emails without a user are skipped
+   */
+  List<User> findAllByEmailIn(Collection<String> emails);
+
   Optional<User> findByGoogleSub(String googleSub);
 
   Optional<User> findByGithubLogin(String githubLogin);
 
   Optional<User> findByGithubId(int githubId);
+
+  /**
+   * Writes the profile Google sent on sign in, leaving the user's other columns as they are in the database.
+   * @return the number of users updated: 1, or 0 if there is no user with this subject
+   */
+  @Transactional
+  @Modifying
+  @Query("UPDATE users u SET u.fullName = :fullName, u.email = :email, u.givenName = :givenName, u.pictureUrl = :pictureUrl WHERE u.googleSub = :googleSub")
+  int updateProfile(@Param("googleSub") String googleSub, @Param("fullName") String fullName,
+      @Param("email") String email, @Param("givenName") String givenName, @Param("pictureUrl") String pictureUrl);
+
+  @Transactional
+  @Modifying
+  @Query("UPDATE users u SET u.admin = true WHERE u.googleSub = :googleSub")
+  int promoteToAdmin(@Param("googleSub") String googleSub);
+
+  /**
+   * Links a GitHub account to a user, leaving the user's other columns as they are in the database.
+   * @return the number of users updated
+   */
+  @Transactional
+  @Modifying
+  @Query("UPDATE users u SET u.githubId = :githubId, u.githubLogin = :githubLogin WHERE u.id = :id")
+  int updateGithubAccount(@Param("id") long id, @Param("githubId") int githubId,
+      @Param("githubLogin") String githubLogin);
 }
@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.frontiers.repositories;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.frontiers.entities.WebhookDelivery;
+
+@Repository
+public interface WebhookDeliveryRepository extends JpaRepository<WebhookDelivery, Long> {
+  /**
+   * The oldest deliveries after {@code afterId} that have not been handled yet, in the order they were received.
+   */
+  List<WebhookDelivery> findByProcessedAtIsNullAndIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+  @Transactional
+  @Modifying
+  @Query("UPDATE webhook_delivery d SET d.processedAt = :processedAt WHERE d.id IN :ids")
+  int markProcessed(@Param("ids") Collection<Long> ids, @Param("processedAt") ZonedDateTime processedAt);
+
+  @Transactional
+  @Modifying
+  @Query("DELETE FROM webhook_delivery d WHERE d.processedAt < :cutoff")
+  int deleteProcessedBefore(@Param("cutoff") ZonedDateTime cutoff);
+}
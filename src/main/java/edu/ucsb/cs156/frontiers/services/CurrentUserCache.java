@@ -0,0 +1,102 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.auditing.DateTimeProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import edu.ucsb.cs156.frontiers.entities.User;
+
+/**
+ * Remembers the {@link User} behind the signed-in principal so that {@link CurrentUserServiceImpl} looks it up at
+ * most once per request, however many times a controller asks for the current user.
+ * <p>
+ * Optionally, users are also kept across requests for {@code app.current-user.cache-ttl}, keyed by OIDC subject.
+ * This is off by default (a TTL of zero). The GitHub sign-in, {@link PostLoginService} and {@link UpdateUserService}
+ * call {@link #evict} after writing a user, so the next request sees the change; the cache is per instance, so with several instances
+ * another instance can serve the old user for up to the TTL.
+ * </p>
+ * <p>
+ * The same {@link User} object is handed to every caller until it is evicted; code that changes it must save it
+ * and then evict it.
+ * </p>
+ */
+@Service
+public class CurrentUserCache {
+
+    static final String REQUEST_ATTRIBUTE = CurrentUserCache.class.getName() + ".user";
+
+    // remembered for the request when the principal has no user, since request attributes cannot hold null
+    private static final Object NO_USER = new Object();
+
+    private final DateTimeProvider dateTimeProvider;
+
+    private final Duration ttl;
+
+    private record Entry(User user, Instant expiresAt) {
+    }
+
+    private final ConcurrentHashMap<String, Entry> usersBySubject = new ConcurrentHashMap<>();
+
+    public CurrentUserCache(DateTimeProvider dateTimeProvider,
+            @Value("${app.current-user.cache-ttl:0s}") Duration ttl) {
+        this.dateTimeProvider = dateTimeProvider;
+        this.ttl = ttl;
+    }
+
+    /**
+     * @param subject OIDC subject of the signed-in principal
+     * @param load looks the user up in the database
+     * @return the user for this request, or null if the principal has no user
+     */
+    public User get(String subject, Supplier<User> load) {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request == null) {
+            return getShared(subject, load);
+        }
+        Object remembered = request.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (remembered == null) {
+            User user = getShared(subject, load);
+            remembered = user == null ? NO_USER : user;
+            request.setAttribute(REQUEST_ATTRIBUTE, remembered, RequestAttributes.SCOPE_REQUEST);
+        }
+        return remembered == NO_USER ? null : (User) remembered;
+    }
+
+    private User getShared(String subject, Supplier<User> load) {
+        if (ttl.isZero()) {
+            return load.get();
+        }
+        Instant now = Instant.from(dateTimeProvider.getNow().get());
+        Entry entry = usersBySubject.get(subject);
+        if (entry != null && now.isBefore(entry.expiresAt())) {
+            return entry.user();
+        }
+        User user = load.get();
+        if (user != null) {
+            usersBySubject.put(subject, new Entry(user, now.plus(ttl)));
+        }
+        return user;
+    }
+
+    /**
+     * Forgets a user that has just been written, for this request and for later ones.
+     *
+     * @param subject OIDC subject of the user, i.e. {@link User#getGoogleSub()}
+     */
+    public void evict(String subject) {
+        if (subject != null) {
+            usersBySubject.remove(subject);
+        }
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null) {
+            request.removeAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+}
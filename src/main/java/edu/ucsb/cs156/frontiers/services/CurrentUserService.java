@@ -6,6 +6,7 @@ import org.springframework.security.core.GrantedAuthority;
 
 import edu.ucsb.cs156.frontiers.entities.User;
 import edu.ucsb.cs156.frontiers.models.CurrentUser;
+import edu.ucsb.cs156.frontiers.models.FrontiersPrincipal;
 
 /**
  * This is a service that provides information about the current user.
@@ -27,6 +28,13 @@ public abstract class CurrentUserService {
    */
   public abstract CurrentUser getCurrentUser();
 
+  /**
+   * This method returns the principal of the current user, which carries the user's id, email
+   * and GitHub account without loading the user from the database.
+   * @return the current principal, or null if no user is logged in
+   */
+  public abstract FrontiersPrincipal getPrincipal();
+
   /**
    * This method returns the roles of the current user.
    * @return a collection of roles
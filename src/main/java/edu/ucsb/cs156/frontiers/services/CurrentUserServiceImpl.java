@@ -16,6 +16,7 @@ import org.springframework.stereotype.Service;
 
 import edu.ucsb.cs156.frontiers.entities.User;
 import edu.ucsb.cs156.frontiers.models.CurrentUser;
+import edu.ucsb.cs156.frontiers.models.FrontiersPrincipal;
 import edu.ucsb.cs156.frontiers.repositories.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 
@@ -34,6 +35,9 @@ public class CurrentUserServiceImpl extends CurrentUserService {
   @Autowired
   GrantedAuthoritiesService grantedAuthoritiesService;
 
+  @Autowired
+  private CurrentUserCache currentUserCache;
+
   /**
    * This method returns the current user as a User object.
    * @return the current user
@@ -43,7 +47,7 @@ public class CurrentUserServiceImpl extends CurrentUserService {
       .user(this.getUser())
       .roles(this.getRoles())
       .build();
-    log.info("getCurrentUser returns {}",cu);
+    log.debug("getCurrentUser returns {}",cu);
     return cu;
   }
 
@@ -60,23 +64,48 @@ public class CurrentUserServiceImpl extends CurrentUserService {
   
   public User getOAuth2AuthenticatedUser(SecurityContext securityContext, Authentication authentication) {
     OidcUser oAuthUser = (OidcUser) authentication.getPrincipal();
-    User currentUser = userRepository.findByEmail(oAuthUser.getEmail()).orElse(null);
+    // by subject, not email: a changed email is only written to the database after sign in (see PostLoginService)
+    User currentUser = userRepository.findByGoogleSub(oAuthUser.getSubject()).orElse(null);
     return currentUser;
   }
 
   /**
    * This method returns the current user as a User object.
+   * The user is looked up at most once per request, see {@link CurrentUserCache}.
    * @return the current user
    */
   public User getUser() {
     SecurityContext securityContext = SecurityContextHolder.getContext();
     Authentication authentication = securityContext.getAuthentication();
     if (authentication instanceof OAuth2AuthenticationToken) {
-      return getOAuth2AuthenticatedUser(securityContext, authentication);
+      OidcUser oAuthUser = (OidcUser) authentication.getPrincipal();
+      return currentUserCache.get(oAuthUser.getSubject(),
+          () -> getOAuth2AuthenticatedUser(securityContext, authentication));
     }
     return null;
   }
 
+  /**
+   * This method returns the principal stored in the security context at sign in.
+   * Sessions that began before principals carried the user's id fall back to looking the user up.
+   * @return the current principal, or null if no user is logged in
+   */
+  public FrontiersPrincipal getPrincipal() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication == null) {
+      return null;
+    }
+    if (authentication.getPrincipal() instanceof FrontiersPrincipal principal) {
+      return principal;
+    }
+    User user = getUser();
+    if (user == null) {
+      return null;
+    }
+    OidcUser oAuthUser = (OidcUser) authentication.getPrincipal();
+    return new FrontiersPrincipal(oAuthUser.getAuthorities(), oAuthUser.getIdToken(), oAuthUser.getUserInfo(), user);
+  }
+
   /**
    * This method returns the roles of the current user.
    * @return a collection of roles
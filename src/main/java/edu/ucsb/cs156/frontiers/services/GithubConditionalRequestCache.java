@@ -0,0 +1,178 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Makes GitHub GET requests conditional.
+ * <p>
+ * Installed as an interceptor on the shared GitHub RestTemplate (see GithubClientConfig). Successful GET
+ * responses that carry an {@code ETag} or {@code Last-Modified} header are remembered per URL in an LRU bounded by
+ * the total size of the remembered bodies; the next GET for that URL sends {@code If-None-Match}/{@code If-Modified-Since},
+ * and a {@code 304 Not Modified} answer is replaced with the remembered response. GitHub does not count 304 responses
+ * against the primary rate limit.
+ * </p>
+ * <p>
+ * Entries are not tied to a token: installation tokens expire after an hour, so entries keyed by token would seldom be
+ * used again. GitHub checks the token before it compares validators, so a token that may not see a URL gets an error,
+ * never the remembered response.
+ * </p>
+ * <p>
+ * Remembering a response means buffering it, so routes in {@link #STREAMED_ROUTES} are passed through untouched; their
+ * callers make the requests conditional themselves. A response larger than the whole cache is streamed to the caller
+ * without being remembered.
+ * </p>
+ * See <a href="https://docs.github.com/en/rest/using-the-rest-api/best-practices-for-using-the-rest-api#use-conditional-requests-if-appropriate">Use conditional requests</a>.
+ */
+@Component
+public class GithubConditionalRequestCache implements ClientHttpRequestInterceptor {
+
+    /** Routes whose responses are streamed by their callers (see OrganizationMemberService) and are never buffered. */
+    static final Set<String> STREAMED_ROUTES = Set.of("/orgs/{org}/members", "/organizations/{organization_id}/members");
+
+    private final int maxBytes;
+
+    private final LinkedHashMap<URI, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes = 0;
+
+    public GithubConditionalRequestCache(@Value("${app.github.etag-cache.max-bytes:4194304}") int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        if (!HttpMethod.GET.equals(request.getMethod())
+                || STREAMED_ROUTES.contains(GithubRequestMetrics.route(request.getURI().getPath()))) {
+            return execution.execute(request, body);
+        }
+        URI key = request.getURI();
+        CachedResponse cached = get(key);
+        if (cached != null) {
+            String etag = cached.headers().getETag();
+            if (etag != null) {
+                request.getHeaders().setIfNoneMatch(etag);
+            } else {
+                request.getHeaders().set(HttpHeaders.IF_MODIFIED_SINCE, cached.headers().getFirst(HttpHeaders.LAST_MODIFIED));
+            }
+        }
+
+        ClientHttpResponse response = execution.execute(request, body);
+        if (cached != null && response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+            response.close();
+            return cached;
+        }
+        if (!response.getStatusCode().isSameCodeAs(HttpStatus.OK)
+                || (response.getHeaders().getETag() == null && response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED) == null)) {
+            return response;
+        }
+        byte[] start = response.getBody().readNBytes(maxBytes + 1);
+        if (start.length > maxBytes) {
+            return new PartlyReadResponse(response, start);
+        }
+        response.close();
+        CachedResponse fresh = new CachedResponse(response.getStatusCode(),
+                HttpHeaders.readOnlyHttpHeaders(response.getHeaders()), start);
+        put(key, fresh);
+        return fresh;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    private synchronized CachedResponse get(URI key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(URI key, CachedResponse response) {
+        CachedResponse replaced = entries.put(key, response);
+        bytes += response.body().length - (replaced == null ? 0 : replaced.body().length);
+        Iterator<CachedResponse> eldest = entries.values().iterator();
+        while (bytes > maxBytes) {
+            bytes -= eldest.next().body().length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * A response too large to remember: the part already read, followed by the rest of the original body.
+     */
+    record PartlyReadResponse(ClientHttpResponse response, byte[] start) implements ClientHttpResponse {
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return new SequenceInputStream(new ByteArrayInputStream(start), response.getBody());
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+
+    /**
+     * A fully buffered response; can be handed out any number of times.
+     */
+    record CachedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body) implements ClientHttpResponse {
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return status;
+        }
+
+        @Override
+        public String getStatusText() {
+            return HttpStatus.valueOf(status.value()).getReasonPhrase();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
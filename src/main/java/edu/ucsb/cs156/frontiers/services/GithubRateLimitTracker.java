@@ -0,0 +1,204 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.auditing.DateTimeProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps outgoing GitHub requests inside GitHub's rate limits.
+ * <p>
+ * Installed as an interceptor on the shared GitHub RestTemplate (see GithubClientConfig). Every response is inspected for the
+ * {@code X-RateLimit-Remaining}/{@code X-RateLimit-Reset} and {@code Retry-After} headers; once GitHub says we
+ * are out of requests, every later request with the same {@code Authorization} header waits until GitHub says it
+ * may go again. GitHub counts requests per installation token (and per app JWT), so a course whose organization
+ * is throttled does not hold up the others. Content-creating requests
+ * (anything but GET, other than the app's own {@code /app/...} token calls) are additionally spaced out to stay
+ * under GitHub's secondary rate limit on them.
+ * </p>
+ * See <a href="https://docs.github.com/en/rest/using-the-rest-api/rate-limits-for-the-rest-api">Rate limits for the REST API</a>.
+ */
+@Component
+@Slf4j
+public class GithubRateLimitTracker implements ClientHttpRequestInterceptor {
+
+    /** GitHub asks clients that hit a secondary limit without a Retry-After header to wait at least a minute. */
+    static final Duration DEFAULT_BACKOFF = Duration.ofMinutes(1);
+
+    private final DateTimeProvider dateTimeProvider;
+
+    private final Duration contentRequestSpacing;
+
+    /** End of the current pause, by Authorization header; entries are dropped once their pause has passed. */
+    private final Map<String, Instant> pausedUntil = new HashMap<>();
+
+    private Instant nextContentRequest = Instant.EPOCH;
+
+    public GithubRateLimitTracker(DateTimeProvider dateTimeProvider,
+                                  @Value("${app.github.content-requests-per-minute:80}") int contentRequestsPerMinute) {
+        this.dateTimeProvider = dateTimeProvider;
+        this.contentRequestSpacing = Duration.ofMinutes(1).dividedBy(contentRequestsPerMinute);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        String authorization = authorization(request.getHeaders());
+        try {
+            awaitCapacity(authorization);
+            if (isContentCreating(request)) {
+                awaitContentRequestSlot();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for GitHub rate limit");
+        }
+        ClientHttpResponse response = execution.execute(request, body);
+        record(authorization, response.getStatusCode(), response.getHeaders());
+        return response;
+    }
+
+    private static String authorization(HttpHeaders headers) {
+        String authorization = headers.getFirst(HttpHeaders.AUTHORIZATION);
+        return authorization == null ? "" : authorization;
+    }
+
+    private static boolean isContentCreating(HttpRequest request) {
+        return !HttpMethod.GET.equals(request.getMethod()) && !request.getURI().getPath().startsWith("/app/");
+    }
+
+    /**
+     * Updates the pause window of a token from the status and headers of a GitHub response.
+     *
+     * @param authorization Authorization header the request was sent with
+     * @param status status code of the response
+     * @param headers headers of the response
+     */
+    void record(String authorization, HttpStatusCode status, HttpHeaders headers) {
+        Instant now = now();
+        String retryAfter = headers.getFirst("Retry-After");
+        String remaining = headers.getFirst("X-RateLimit-Remaining");
+        String reset = headers.getFirst("X-RateLimit-Reset");
+        if (retryAfter != null) {
+            pauseUntil(authorization, now, retryAfter(retryAfter.trim(), now));
+        } else if ("0".equals(remaining) && reset != null) {
+            pauseUntil(authorization, now, rateLimitReset(reset.trim(), now));
+        } else if (isRateLimitStatus(status, headers)) {
+            pauseUntil(authorization, now, now.plus(DEFAULT_BACKOFF));
+        }
+    }
+
+    /**
+     * @param retryAfter a Retry-After header: a number of seconds or an HTTP date
+     * @param now the current time
+     * @return when GitHub allows requests again, or {@link #DEFAULT_BACKOFF} from now if the header can't be parsed
+     */
+    private static Instant retryAfter(String retryAfter, Instant now) {
+        try {
+            return now.plusSeconds(Long.parseLong(retryAfter));
+        } catch (NumberFormatException notSeconds) {
+            try {
+                return ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            } catch (DateTimeParseException notDate) {
+                log.warn("Unparseable Retry-After header from GitHub: {}", retryAfter);
+                return now.plus(DEFAULT_BACKOFF);
+            }
+        }
+    }
+
+    /**
+     * @param reset an X-RateLimit-Reset header, in epoch seconds
+     * @param now the current time
+     * @return when the rate limit resets, or {@link #DEFAULT_BACKOFF} from now if the header can't be parsed
+     */
+    private static Instant rateLimitReset(String reset, Instant now) {
+        try {
+            return Instant.ofEpochSecond(Long.parseLong(reset));
+        } catch (NumberFormatException e) {
+            log.warn("Unparseable X-RateLimit-Reset header from GitHub: {}", reset);
+            return now.plus(DEFAULT_BACKOFF);
+        }
+    }
+
+    /**
+     * Blocks the calling thread until GitHub's rate limit allows another request with the given token.
+     *
+     * @param authorization Authorization header the request will be sent with
+     */
+    public void awaitCapacity(String authorization) throws InterruptedException {
+        Duration wait = Duration.between(now(), currentPause(authorization));
+        if (wait.isPositive()) {
+            log.info("GitHub rate limit reached, waiting {} seconds", wait.toSeconds());
+            sleep(wait);
+        }
+    }
+
+    private void awaitContentRequestSlot() throws InterruptedException {
+        Duration wait = Duration.between(now(), reserveContentRequestSlot());
+        if (wait.isPositive()) {
+            sleep(wait);
+        }
+    }
+
+    private synchronized Instant reserveContentRequestSlot() {
+        Instant now = now();
+        Instant slot = nextContentRequest.isAfter(now) ? nextContentRequest : now;
+        nextContentRequest = slot.plus(contentRequestSpacing);
+        return slot;
+    }
+
+    private synchronized void pauseUntil(String authorization, Instant now, Instant until) {
+        pausedUntil.values().removeIf(pause -> !pause.isAfter(now));
+        pausedUntil.merge(authorization, until, (current, next) -> next.isAfter(current) ? next : current);
+    }
+
+    synchronized Instant currentPause(String authorization) {
+        return pausedUntil.getOrDefault(authorization, Instant.EPOCH);
+    }
+
+    void sleep(Duration duration) throws InterruptedException {
+        Thread.sleep(duration);
+    }
+
+    private Instant now() {
+        return Instant.from(dateTimeProvider.getNow().get());
+    }
+
+    /**
+     * Whether a failed GitHub call was rejected because of a primary or secondary rate limit,
+     * meaning it can be retried once the limit has passed.
+     *
+     * @param e exception thrown by the RestTemplate
+     * @return true if the request was rate limited
+     */
+    public static boolean isRateLimited(HttpStatusCodeException e) {
+        HttpHeaders headers = e.getResponseHeaders() == null ? new HttpHeaders() : e.getResponseHeaders();
+        return isRateLimitStatus(e.getStatusCode(), headers);
+    }
+
+    private static boolean isRateLimitStatus(HttpStatusCode status, HttpHeaders headers) {
+        if (status.isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)) {
+            return true;
+        }
+        return status.isSameCodeAs(HttpStatus.FORBIDDEN)
+                && (headers.containsKey("Retry-After") || "0".equals(headers.getFirst("X-RateLimit-Remaining")));
+    }
+}
@@ -0,0 +1,111 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Times outgoing GitHub requests and tracks how much of GitHub's rate limit is left.
+ * <p>
+ * Installed as the innermost interceptor on the shared GitHub RestTemplate (see GithubClientConfig), so the timer
+ * covers the HTTP exchange itself and not time spent waiting on the rate limit. The services build GitHub URLs by
+ * concatenation, which leaves Spring's {@code http.client.requests} timer without a usable {@code uri} tag; here
+ * each request is matched against the {@link #ROUTES} the app calls and tagged with the route template instead.
+ * </p>
+ * <p>
+ * Publishes the timer {@code frontiers.github.requests} with tags {@code method}, {@code route} (one of
+ * {@link #ROUTES}, or {@code other}) and {@code status} (the status code, or {@code IO_ERROR}), and the gauge
+ * {@code frontiers.github.ratelimit.remaining} with tag {@code resource}: the {@code X-RateLimit-Remaining} of the
+ * latest response for each of GitHub's rate limit resources ({@code core}, {@code search}, ...).
+ * </p>
+ */
+@Component
+public class GithubRequestMetrics implements ClientHttpRequestInterceptor {
+
+    /** A GitHub API route; each {@code {variable}} matches one path segment. */
+    record Route(String template, Pattern pattern) {
+        static Route of(String template) {
+            return new Route(template, Pattern.compile(template.replaceAll("\\{[^}]+}", "[^/]+")));
+        }
+    }
+
+    /** GitHub API routes the app calls, see the services that use the GitHub RestTemplate. */
+    static final List<Route> ROUTES = List.of(
+            Route.of("/app"),
+            Route.of("/app/installations/{installation_id}"),
+            Route.of("/app/installations/{installation_id}/access_tokens"),
+            Route.of("/orgs/{org}/members"),
+            // GitHub's Link header points to the later pages of the member list by organization id
+            Route.of("/organizations/{organization_id}/members"),
+            Route.of("/orgs/{org}/repos"),
+            Route.of("/repos/{owner}/{repo}"),
+            Route.of("/repos/{owner}/{repo}/collaborators/{username}"));
+
+    static final String OTHER_ROUTE = "other";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, AtomicLong> remainingByResource = new ConcurrentHashMap<>();
+
+    public GithubRequestMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String status = "IO_ERROR";
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            status = Integer.toString(response.getStatusCode().value());
+            recordRemaining(response.getHeaders().getFirst("X-RateLimit-Resource"),
+                    response.getHeaders().getFirst("X-RateLimit-Remaining"));
+            return response;
+        } finally {
+            sample.stop(Timer.builder("frontiers.github.requests")
+                    .description("Requests made to the GitHub API")
+                    .tag("method", request.getMethod().name())
+                    .tag("route", route(request.getURI().getPath()))
+                    .tag("status", status)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * @param path path of a GitHub API URL
+     * @return the template in {@link #ROUTES} that matches the path, or {@link #OTHER_ROUTE}
+     */
+    static String route(String path) {
+        return ROUTES.stream()
+                .filter(route -> route.pattern().matcher(path).matches())
+                .map(Route::template)
+                .findFirst()
+                .orElse(OTHER_ROUTE);
+    }
+
+    private void recordRemaining(String resource, String remaining) {
+        if (resource == null || remaining == null) {
+            return;
+        }
+        remainingByResource.computeIfAbsent(resource, r -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder("frontiers.github.ratelimit.remaining", value, AtomicLong::get)
+                    .description("Requests left in GitHub's current rate limit window")
+                    .tag("resource", r)
+                    .register(meterRegistry);
+            return value;
+        }).set(Long.parseLong(remaining.trim()));
+    }
+}
@@ -2,6 +2,7 @@ package edu.ucsb.cs156.frontiers.services;
 
 import edu.ucsb.cs156.frontiers.entities.User;
 import edu.ucsb.cs156.frontiers.errors.NotAuthenticatedWithGoogleException;
+import edu.ucsb.cs156.frontiers.models.FrontiersPrincipal;
 import edu.ucsb.cs156.frontiers.repositories.RosterStudentRepository;
 import edu.ucsb.cs156.frontiers.repositories.UserRepository;
 
@@ -30,13 +31,15 @@ public class GithubSignInServiceImpl extends DefaultOAuth2UserService implements
 
     private final CurrentUserService currentUserService;
     private final RosterStudentRepository rosterStudentRepository;
-    private final UpdateUserService updateUserService;
+    private final PostLoginService postLoginService;
+    private final CurrentUserCache currentUserCache;
 
-    public GithubSignInServiceImpl(@Autowired UserRepository userRepository, @Autowired CurrentUserService currentUserService, @Autowired RosterStudentRepository rosterStudentRepository, @Autowired UpdateUserService updateUserService) {
+    public GithubSignInServiceImpl(@Autowired UserRepository userRepository, @Autowired CurrentUserService currentUserService, @Autowired RosterStudentRepository rosterStudentRepository, @Autowired PostLoginService postLoginService, @Autowired CurrentUserCache currentUserCache) {
         this.userRepository = userRepository;
         this.currentUserService = currentUserService;
         this.rosterStudentRepository = rosterStudentRepository;
-        this.updateUserService = updateUserService;
+        this.postLoginService = postLoginService;
+        this.currentUserCache = currentUserCache;
     }
 
     @Override
@@ -58,14 +61,19 @@ public class GithubSignInServiceImpl extends DefaultOAuth2UserService implements
         if (authentication != null) {
             currentUser = (OidcUser) authentication.getPrincipal();
             User currentLocalUser = currentUserService.getCurrentUser().getUser();
+            authorities.add(new SimpleGrantedAuthority("ROLE_GITHUB"));
+            authorities.addAll(currentUser.getAuthorities());
             if (currentLocalUser != null) {
                 currentLocalUser.setGithubId((Integer) oAuth2User.getAttributes().get("id"));
                 currentLocalUser.setGithubLogin((String) oAuth2User.getAttributes().get("login"));
-                updateUserService.attachRosterStudents(currentLocalUser);
-                userRepository.save(currentLocalUser);
+                // only the GitHub columns are written, so a profile update saved meanwhile by PostLoginService is kept
+                userRepository.updateGithubAccount(currentLocalUser.getId(), currentLocalUser.getGithubId(),
+                        currentLocalUser.getGithubLogin());
+                currentUserCache.evict(currentLocalUser.getGoogleSub());
+                postLoginService.attachRosterStudents(currentLocalUser.getGoogleSub());
+                // the principal carries the GitHub id and login, so it is rebuilt along with the user
+                return new FrontiersPrincipal(authorities, currentUser.getIdToken(), currentUser.getUserInfo(), currentLocalUser);
             }
-            authorities.add(new SimpleGrantedAuthority("ROLE_GITHUB"));
-            authorities.addAll(currentUser.getAuthorities());
             return new DefaultOidcUser(authorities, currentUser.getIdToken(), currentUser.getUserInfo());
         } else {
             throw new NotAuthenticatedWithGoogleException("You must login first to link your GitHub account");
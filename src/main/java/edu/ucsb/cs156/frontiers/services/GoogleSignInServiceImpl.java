@@ -1,6 +1,7 @@
 package edu.ucsb.cs156.frontiers.services;
 
 import edu.ucsb.cs156.frontiers.entities.User;
+import edu.ucsb.cs156.frontiers.models.FrontiersPrincipal;
 import edu.ucsb.cs156.frontiers.repositories.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,7 +10,6 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserRequest;
 import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserService;
 import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
-import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 import org.springframework.stereotype.Service;
 
@@ -20,12 +20,15 @@ public class GoogleSignInServiceImpl extends OidcUserService implements GoogleSi
 
     private final UserRepository userRepository;
 
+    private final PostLoginService postLoginService;
+
     @Value("${app.admin.emails}")
     private final List<String> adminEmails = new ArrayList<>();
 
     @Autowired
-    public GoogleSignInServiceImpl(UserRepository userRepository) {
+    public GoogleSignInServiceImpl(UserRepository userRepository, PostLoginService postLoginService) {
         this.userRepository = userRepository;
+        this.postLoginService = postLoginService;
     }
 
     @Override
@@ -35,11 +38,12 @@ public class GoogleSignInServiceImpl extends OidcUserService implements GoogleSi
     }
 
     private OidcUser managePrimarySignIn(OidcUser oidcUser) {
+        User user;
         Optional<User> currentUser = userRepository.findByGoogleSub(oidcUser.getSubject());
         Set<GrantedAuthority> authorities = new HashSet<>();
         boolean changed = false;
         if (currentUser.isPresent()) {
-            User user = currentUser.get();
+            user = currentUser.get();
             if (user.getAdmin()) {
                 authorities.add(new SimpleGrantedAuthority("ROLE_ADMIN"));
             } else if (adminEmails.contains(user.getEmail())) {
@@ -72,7 +76,8 @@ public class GoogleSignInServiceImpl extends OidcUserService implements GoogleSi
             }
 
             if (changed) {
-                userRepository.save(user);
+                // only the roles are needed to finish signing in; the changed profile is saved in the background
+                postLoginService.refreshProfile(user.getGoogleSub(), PostLoginService.ProfileUpdate.of(user));
             }
         } else {
             User newUser = User.builder()
@@ -88,10 +93,10 @@ public class GoogleSignInServiceImpl extends OidcUserService implements GoogleSi
             } else {
                 authorities.add(new SimpleGrantedAuthority("ROLE_USER"));
             }
-            userRepository.save(newUser);
+            user = userRepository.save(newUser);
         }
         authorities.addAll(oidcUser.getAuthorities());
-        return new DefaultOidcUser(authorities, oidcUser.getIdToken(), oidcUser.getUserInfo());
+        return new FrontiersPrincipal(authorities, oidcUser.getIdToken(), oidcUser.getUserInfo(), user);
     }
 
 }
@@ -1,65 +1,165 @@
 package edu.ucsb.cs156.frontiers.services;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.frontiers.entities.Course;
 import edu.ucsb.cs156.frontiers.models.OrgMember;
-import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.net.URI;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @Service
 public class OrganizationMemberService {
 
+    /** Largest page size GitHub allows for the org members endpoint. */
+    static final int PAGE_SIZE = 100;
+
+    /** Pages of member lists remembered for conditional requests; a few hundred members each. */
+    static final int MAX_REMEMBERED_PAGES = 200;
+
+    //happily stolen directly from GitHub: https://docs.github.com/en/rest/using-the-rest-api/using-pagination-in-the-rest-api?apiVersion=2022-11-28
+    private static final Pattern NEXT_LINK = Pattern.compile("(?<=<)([\\S]*)(?=>; rel=\"next\")");
+
     private final JwtService jwtService;
     private final ObjectMapper objectMapper;
     private final RestTemplate restTemplate;
 
-    public OrganizationMemberService(JwtService jwtService, ObjectMapper objectMapper, RestTemplateBuilder builder) {
+    /**
+     * A page of a member list as last received: its validators, the members decoded from it, and the URL of the next
+     * page, or null.
+     */
+    record MemberPage(String etag, String lastModified, List<OrgMember> members, String next) {}
+
+    private final LinkedHashMap<String, MemberPage> rememberedPages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MemberPage> eldest) {
+            return size() > MAX_REMEMBERED_PAGES;
+        }
+    };
+
+    public OrganizationMemberService(JwtService jwtService, ObjectMapper objectMapper, RestTemplate githubRestTemplate) {
         this.jwtService = jwtService;
         this.objectMapper = objectMapper;
         this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        this.restTemplate = builder.build();
+        this.restTemplate = githubRestTemplate;
     }
 
     public Iterable<OrgMember> getOrganizationMembers(Course course) throws NoSuchAlgorithmException, InvalidKeySpecException, JsonProcessingException {
-        String ENDPOINT = "https://api.github.com/orgs/" + course.getOrgName() + "/members";
-        //happily stolen directly from GitHub: https://docs.github.com/en/rest/using-the-rest-api/using-pagination-in-the-rest-api?apiVersion=2022-11-28
-        Pattern pattern = Pattern.compile("(?<=<)([\\S]*)(?=>; rel=\"next\")");
-        String token = jwtService.getInstallationToken(course);
-        HttpHeaders headers = new HttpHeaders();
-        headers.add("Authorization", "Bearer " + token);
-        headers.add("Accept", "application/vnd.github+json");
-        headers.add("X-GitHub-Api-Version", "2022-11-28");
-        HttpEntity<String> entity = new HttpEntity<>(headers);
-        ResponseEntity<String> response = restTemplate.exchange(ENDPOINT, HttpMethod.GET, entity, String.class);
-        List<String> responseLinks = response.getHeaders().getOrEmpty("link");
         List<OrgMember> orgMembers = new ArrayList<>();
-        while (!responseLinks.isEmpty()&&responseLinks.getFirst().contains("next")) {
-            orgMembers.addAll(objectMapper.convertValue(objectMapper.readTree(response.getBody()), new TypeReference<List<OrgMember>>() {
-            }));
-            Matcher matcher = pattern.matcher(responseLinks.getFirst());
-            matcher.find();
-            response = restTemplate.exchange(matcher.group(0), HttpMethod.GET, entity, String.class);
-            responseLinks = response.getHeaders().getOrEmpty("link");
-        }
-        orgMembers.addAll(objectMapper.convertValue(objectMapper.readTree(response.getBody()), new TypeReference<List<OrgMember>>() {
-        }));
+        forEachOrganizationMemberPage(course, orgMembers::addAll);
         return orgMembers;
     }
+
+    /**
+     * Fetches the members of the course's organization one page at a time, handing each page to
+     * {@code pageConsumer} as soon as it has been decoded. Each page body is decoded straight from the
+     * response stream, so the raw JSON of a page is never held in memory.
+     * <p>
+     * The GitHub client's conditional request cache would have to buffer the bodies, so it leaves member lists alone.
+     * Instead, the decoded members of each page are remembered here with the page's {@code ETag} or
+     * {@code Last-Modified}; the next request for the page is conditional, and on {@code 304 Not Modified} the
+     * remembered members are handed on again. GitHub does not count 304 responses against the rate limit.
+     * </p>
+     * <p>
+     * GitHub's member list doesn't say who is an admin, so the admins, of whom there are few, are listed first,
+     * and each member's role is filled in from that list.
+     * </p>
+     *
+     * @param course course whose organization is listed
+     * @param pageConsumer called once per page, in order
+     */
+    public void forEachOrganizationMemberPage(Course course, Consumer<List<OrgMember>> pageConsumer) throws NoSuchAlgorithmException, InvalidKeySpecException, JsonProcessingException {
+        String token = jwtService.getInstallationToken(course);
+        String url = "https://api.github.com/orgs/" + course.getOrgName() + "/members?per_page=" + PAGE_SIZE;
+        Set<Integer> adminIds = new HashSet<>();
+        forEachPage(url + "&role=admin", token, page -> page.forEach(admin -> adminIds.add(admin.getGithubId())));
+        forEachPage(url, token, page -> pageConsumer.accept(page.stream()
+                .map(member -> new OrgMember(member.getGithubId(), member.getGithubLogin(),
+                        adminIds.contains(member.getGithubId()) ? "admin" : "member"))
+                .toList()));
+    }
+
+    private void forEachPage(String url, String token, Consumer<List<OrgMember>> pageConsumer) {
+        while (url != null) {
+            MemberPage remembered = remembered(url);
+            MemberPage page = restTemplate.execute(URI.create(url), HttpMethod.GET,
+                    request -> {
+                        request.getHeaders().add("Authorization", "Bearer " + token);
+                        request.getHeaders().add("Accept", "application/vnd.github+json");
+                        request.getHeaders().add("X-GitHub-Api-Version", "2022-11-28");
+                        if (remembered != null && remembered.etag() != null) {
+                            request.getHeaders().setIfNoneMatch(remembered.etag());
+                        } else if (remembered != null) {
+                            request.getHeaders().set(HttpHeaders.IF_MODIFIED_SINCE, remembered.lastModified());
+                        }
+                    },
+                    response -> {
+                        // only a conditional request, which needs a remembered page, can be answered with 304
+                        if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                            return remembered;
+                        }
+                        return new MemberPage(response.getHeaders().getETag(),
+                                response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED), readMembers(response),
+                                nextPage(response.getHeaders().getOrEmpty("link")));
+                    });
+            remember(url, page);
+            pageConsumer.accept(page.members());
+            url = page.next();
+        }
+    }
+
+    private synchronized MemberPage remembered(String url) {
+        return rememberedPages.get(url);
+    }
+
+    private synchronized void remember(String url, MemberPage page) {
+        if (page.etag() != null || page.lastModified() != null) {
+            rememberedPages.put(url, page);
+        }
+    }
+
+    synchronized int rememberedPageCount() {
+        return rememberedPages.size();
+    }
+
+    private List<OrgMember> readMembers(ClientHttpResponse response) throws IOException {
+        List<OrgMember> page = new ArrayList<>(PAGE_SIZE);
+        try (JsonParser parser = objectMapper.createParser(response.getBody())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of organization members");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                page.add(objectMapper.readValue(parser, OrgMember.class));
+            }
+        }
+        return List.copyOf(page);
+    }
+
+    private static String nextPage(List<String> links) {
+        if (links.isEmpty()) {
+            return null;
+        }
+        Matcher matcher = NEXT_LINK.matcher(links.getFirst());
+        return matcher.find() ? matcher.group(0) : null;
+    }
 }
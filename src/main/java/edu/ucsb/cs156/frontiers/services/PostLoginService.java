@@ -0,0 +1,135 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.frontiers.entities.User;
+import edu.ucsb.cs156.frontiers.repositories.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes that follow a sign in but are not needed to decide the user's roles: refreshing the profile Google sent
+ * and attaching roster students after a GitHub account is linked. They run on one background thread, so the OAuth
+ * callback returns without waiting for them.
+ * <p>
+ * Work is coalesced per user: whatever is requested for a user before their task starts is done in one pass,
+ * using the latest profile. At the start of a term, when a whole class signs in at once, the queue holds at most
+ * one task per user. The profile is written with a single UPDATE of its own columns, so it neither overwrites nor
+ * is overwritten by other changes to the user, such as a GitHub account linked meanwhile.
+ * </p>
+ * <p>
+ * Until a task has run, the database can still hold the previous profile; roles and the fields in
+ * {@link edu.ucsb.cs156.frontiers.models.FrontiersPrincipal} come from the sign in itself and are current, and
+ * the current user is looked up by OIDC subject, which never changes.
+ * </p>
+ */
+@Slf4j
+@Service
+public class PostLoginService {
+
+    /** Profile fields as Google sent them on the latest sign in. */
+    public record ProfileUpdate(String fullName, String email, String givenName, String pictureUrl, boolean admin) {
+
+        public static ProfileUpdate of(User user) {
+            return new ProfileUpdate(user.getFullName(), user.getEmail(), user.getGivenName(), user.getPictureUrl(),
+                    user.getAdmin());
+        }
+    }
+
+    /** Work requested for one user and not yet started. */
+    private static class PendingWork {
+        private ProfileUpdate profile;
+        private boolean attachRosterStudents;
+    }
+
+    private final UserRepository userRepository;
+
+    private final UpdateUserService updateUserService;
+
+    private final CurrentUserCache currentUserCache;
+
+    private final ConcurrentHashMap<String, PendingWork> pendingBySubject = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors
+            .newSingleThreadExecutor(Thread.ofPlatform().name("post-login-", 1).factory());
+
+    public PostLoginService(UserRepository userRepository, UpdateUserService updateUserService,
+            CurrentUserCache currentUserCache) {
+        this.userRepository = userRepository;
+        this.updateUserService = updateUserService;
+        this.currentUserCache = currentUserCache;
+    }
+
+    /**
+     * Saves the profile of a user who has just signed in.
+     *
+     * @param googleSub the user's OIDC subject
+     * @param profile the profile to save
+     */
+    public void refreshProfile(String googleSub, ProfileUpdate profile) {
+        enqueue(googleSub, work -> work.profile = profile);
+    }
+
+    /**
+     * Attaches the roster students with the user's email to a user who has just linked a GitHub account.
+     *
+     * @param googleSub the user's OIDC subject
+     */
+    public void attachRosterStudents(String googleSub) {
+        enqueue(googleSub, work -> work.attachRosterStudents = true);
+    }
+
+    private void enqueue(String googleSub, Consumer<PendingWork> request) {
+        boolean[] queued = { false };
+        pendingBySubject.compute(googleSub, (subject, work) -> {
+            if (work == null) {
+                work = new PendingWork();
+                queued[0] = true;
+            }
+            request.accept(work);
+            return work;
+        });
+        if (queued[0]) {
+            executor.execute(() -> run(googleSub));
+        }
+    }
+
+    private void run(String googleSub) {
+        PendingWork work = pendingBySubject.remove(googleSub);
+        try {
+            boolean written = false;
+            if (work.profile != null) {
+                ProfileUpdate profile = work.profile;
+                written = userRepository.updateProfile(googleSub, profile.fullName(), profile.email(),
+                        profile.givenName(), profile.pictureUrl()) > 0;
+                if (written && profile.admin()) {
+                    // only ever promotes, so an admin removed meanwhile stays removed
+                    userRepository.promoteToAdmin(googleSub);
+                }
+            }
+            if (work.attachRosterStudents) {
+                // loaded after the profile is written, so students are matched by the new email
+                Optional<User> user = userRepository.findByGoogleSub(googleSub);
+                user.ifPresent(updateUserService::attachRosterStudents);
+                written |= user.isPresent();
+            }
+            if (written) {
+                currentUserCache.evict(googleSub);
+            }
+        } catch (RuntimeException e) {
+            // a changed profile is sent again on the next sign in, and UpdateAllJob attaches roster students
+            log.warn("Post-login update failed for {}", googleSub, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -4,7 +4,6 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.frontiers.entities.Course;
 import edu.ucsb.cs156.frontiers.entities.RosterStudent;
-import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
@@ -21,57 +20,73 @@ public class RepositoryService {
     private final RestTemplate restTemplate;
     private final ObjectMapper mapper;
 
-    public RepositoryService(JwtService jwtService, RestTemplateBuilder restTemplateBuilder, ObjectMapper mapper) {
+    public RepositoryService(JwtService jwtService, RestTemplate githubRestTemplate, ObjectMapper mapper) {
         this.jwtService = jwtService;
-        this.restTemplate = restTemplateBuilder.build();
+        this.restTemplate = githubRestTemplate;
         this.mapper = mapper;
     }
 
     /**
-     * Creates a single student repository if it doesn't already exist, and provisions access to the repository by that student
+     * Creates a single student repository if it doesn't already exist, and provisions access to the repository by that student.
+     * A repository that already exists is left alone.
      * @param course The Course in question
      * @param student RosterStudent of the student the repository should be created for
      * @param repoPrefix Name of the project or assignment. Used to title the repository, in the format repoPrefix-githubLogin
      * @param isPrivate Whether the repository is private or not
+     * @throws HttpClientErrorException if GitHub rejected one of the requests, e.g. because of a rate limit
      */
     public void createStudentRepository(Course course, RosterStudent student, String repoPrefix, Boolean isPrivate) throws NoSuchAlgorithmException, InvalidKeySpecException, JsonProcessingException {
+        createStudentRepository(course, student, repoPrefix, isPrivate, false);
+    }
+
+    /**
+     * Creates a single student repository if it doesn't already exist, and provisions access to the repository by that student.
+     * @param course The Course in question
+     * @param student RosterStudent of the student the repository should be created for
+     * @param repoPrefix Name of the project or assignment. Used to title the repository, in the format repoPrefix-githubLogin
+     * @param isPrivate Whether the repository is private or not
+     * @param provisionIfExists Whether to grant the student access to a repository that already exists. Set this when
+     *                          repeating a call that failed, as it may have failed after creating the repository
+     * @throws HttpClientErrorException if GitHub rejected one of the requests, e.g. because of a rate limit
+     */
+    public void createStudentRepository(Course course, RosterStudent student, String repoPrefix, Boolean isPrivate, boolean provisionIfExists) throws NoSuchAlgorithmException, InvalidKeySpecException, JsonProcessingException {
         String newRepoName = repoPrefix+"-"+student.getGithubLogin();
         String token = jwtService.getInstallationToken(course);
         String existenceEndpoint = "https://api.github.com/repos/"+course.getOrgName()+"/"+newRepoName;
         String createEndpoint = "https://api.github.com/orgs/"+course.getOrgName()+"/repos";
         String provisionEndpoint = "https://api.github.com/repos/"+course.getOrgName()+"/"+newRepoName+"/collaborators/"+student.getGithubLogin();
-        HttpHeaders existenceHeaders = new HttpHeaders();
-        existenceHeaders.add("Authorization", "Bearer " + token);
-        existenceHeaders.add("Accept", "application/vnd.github+json");
-        existenceHeaders.add("X-GitHub-Api-Version", "2022-11-28");
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Authorization", "Bearer " + token);
+        headers.add("Accept", "application/vnd.github+json");
+        headers.add("X-GitHub-Api-Version", "2022-11-28");
 
-        HttpEntity<String> existenceEntity = new HttpEntity<>(existenceHeaders);
+        HttpEntity<String> existenceEntity = new HttpEntity<>(headers);
 
         try {
             restTemplate.exchange(existenceEndpoint, HttpMethod.GET, existenceEntity, String.class);
+            if (!provisionIfExists) {
+                return;
+            }
         } catch(HttpClientErrorException e){
             if(e.getStatusCode().equals(HttpStatus.NOT_FOUND)){
-                HttpHeaders createHeaders = new HttpHeaders();
-                createHeaders.add("Authorization", "Bearer " + token);
-                createHeaders.add("Accept", "application/vnd.github+json");
-                createHeaders.add("X-GitHub-Api-Version", "2022-11-28");
-
                 Map<String, Object> body  = new HashMap<>();
                 body.put("name", newRepoName);
                 body.put("private",  isPrivate);
                 String bodyAsJson =  mapper.writeValueAsString(body);
 
-                HttpEntity<String> createEntity = new HttpEntity<>(bodyAsJson, createHeaders);
+                HttpEntity<String> createEntity = new HttpEntity<>(bodyAsJson, headers);
 
                 restTemplate.exchange(createEndpoint, HttpMethod.POST, createEntity, String.class);
-                Map<String, Object> provisionBody  = new HashMap<>();
-                provisionBody.put("permission", "admin");
-                String provisionAsJson =  mapper.writeValueAsString(provisionBody);
-
-                HttpEntity<String> provisionEntity = new HttpEntity<>(provisionAsJson, createHeaders);
-                restTemplate.exchange(provisionEndpoint, HttpMethod.PUT, provisionEntity, String.class);
+            } else {
+                throw e;
             }
         }
 
+        Map<String, Object> provisionBody  = new HashMap<>();
+        provisionBody.put("permission", "admin");
+        String provisionAsJson =  mapper.writeValueAsString(provisionBody);
+
+        HttpEntity<String> provisionEntity = new HttpEntity<>(provisionAsJson, headers);
+        restTemplate.exchange(provisionEndpoint, HttpMethod.PUT, provisionEntity, String.class);
     }
 }
@@ -0,0 +1,269 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+
+import edu.ucsb.cs156.frontiers.entities.Course;
+import edu.ucsb.cs156.frontiers.entities.RosterStudent;
+import edu.ucsb.cs156.frontiers.entities.User;
+import edu.ucsb.cs156.frontiers.enums.OrgStatus;
+import edu.ucsb.cs156.frontiers.enums.RosterStatus;
+import edu.ucsb.cs156.frontiers.repositories.RosterStudentRepository;
+import edu.ucsb.cs156.frontiers.repositories.UserRepository;
+
+/**
+ * Imports a whole roster (e.g. an eGrades file) into a course.
+ * <p>
+ * The file is read one row at a time and written in chunks of {@link #CHUNK_SIZE} rows; apart from an index of the
+ * course's students by student id, nothing is kept for rows that have been written. The course's current students are
+ * loaded once up front; for each chunk, the users matching its emails are loaded in one query and inserts and updates
+ * are worked out in memory. Updated students are
+ * written by Hibernate in JDBC batches; new students are inserted with a JDBC batch directly, since Hibernate cannot
+ * batch inserts of entities with IDENTITY ids.
+ * </p>
+ * <p>
+ * Rows that cannot be imported are skipped and reported in the {@link ImportResult}; they do not stop the import.
+ * </p>
+ */
+@Service
+public class RosterImportService {
+
+    /** eGrades exports are UTF-8; the platform default charset is not used. */
+    public static final Charset EGRADES_CHARSET = StandardCharsets.UTF_8;
+
+    static final int CHUNK_SIZE = 500;
+
+    static final int JDBC_BATCH_SIZE = 50;
+
+    /** At most this many row errors are described in an {@link ImportResult}; the rest are only counted. */
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    // header line and the blank line after it
+    private static final int EGRADES_HEADER_LINES = 2;
+
+    private static final int EGRADES_COLUMNS = 11;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO roster_student (course_id, student_id, first_name, last_name, email, user_id, roster_status, org_status)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)""";
+
+    private static final String UPDATE_BY_STUDENT_ID_SQL = """
+            UPDATE roster_student SET first_name = ?, last_name = ?, email = ?, user_id = ?, roster_status = ?
+            WHERE course_id = ? AND student_id = ?""";
+
+    @Autowired
+    private RosterStudentRepository rosterStudentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param inserted students added to the course
+     * @param updated rows that matched a student already in the course (or earlier in the file)
+     * @param rejected rows that were skipped because they could not be imported
+     * @param errors descriptions of the first {@link #MAX_REPORTED_ERRORS} rejected rows
+     */
+    public record ImportResult(int inserted, int updated, int rejected, List<String> errors) {
+    }
+
+    /**
+     * Same as {@link #importEgrades(Course, InputStream, IntConsumer)}, without progress reports.
+     */
+    @Transactional
+    public ImportResult importEgrades(Course course, InputStream egradesCsv) throws IOException {
+        return importEgrades(course, egradesCsv, rowsWritten -> {
+        });
+    }
+
+    /**
+     * Inserts the students of an eGrades roster that are new to the course and updates the ones already in it
+     * (matched by student id). Every imported student gets roster status ROSTER and, if a user with the same email
+     * exists, is linked to that user. {@code @umail.ucsb.edu} emails are stored as {@code @ucsb.edu}.
+     *
+     * @param course the course to import into
+     * @param egradesCsv the eGrades CSV file, encoded in {@link #EGRADES_CHARSET}
+     * @param progress called with the number of rows written so far after each chunk is written
+     * @return what was written and which rows were skipped; a student id that appears twice counts as an insert and an update
+     * @throws IOException if the file cannot be read or is not valid CSV
+     */
+    @Transactional
+    public ImportResult importEgrades(Course course, InputStream egradesCsv, IntConsumer progress)
+            throws IOException {
+        Map<String, RosterStudent> byStudentId = new HashMap<>();
+        for (RosterStudent existing : rosterStudentRepository.findByCourseId(course.getId())) {
+            byStudentId.put(existing.getStudentId(), existing);
+        }
+
+        int inserted = 0;
+        int rows = 0;
+        int rejected = 0;
+        List<String> errors = new ArrayList<>();
+        List<RosterStudent> chunk = new ArrayList<>(CHUNK_SIZE);
+        try (CSVReader csvReader = new CSVReaderBuilder(new InputStreamReader(egradesCsv, EGRADES_CHARSET))
+                .withSkipLines(EGRADES_HEADER_LINES)
+                .build()) {
+            int line = EGRADES_HEADER_LINES;
+            String[] row;
+            // rows are checked by validateEgradesRow below, so no opencsv validators are configured
+            while ((row = csvReader.readNextSilently()) != null) {
+                line++;
+                if (row.length == 1 && row[0].isBlank()) {
+                    continue;
+                }
+                String error = validateEgradesRow(row);
+                if (error != null) {
+                    if (rejected++ < MAX_REPORTED_ERRORS) {
+                        errors.add("Line %d: %s".formatted(line, error));
+                    }
+                    continue;
+                }
+                chunk.add(fromEgradesCSVRow(row));
+                rows++;
+                if (chunk.size() == CHUNK_SIZE) {
+                    inserted += importChunk(course, byStudentId, chunk);
+                    chunk.clear();
+                    progress.accept(rows);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            inserted += importChunk(course, byStudentId, chunk);
+            progress.accept(rows);
+        }
+        return new ImportResult(inserted, rows - inserted, rejected, errors);
+    }
+
+    static String validateEgradesRow(String[] row) {
+        if (row.length < EGRADES_COLUMNS) {
+            return "expected at least %d columns but found %d".formatted(EGRADES_COLUMNS, row.length);
+        }
+        if (row[1].isBlank()) {
+            return "missing Perm #";
+        }
+        if (!row[10].contains("@")) {
+            return "invalid email \"%s\"".formatted(row[10]);
+        }
+        return null;
+    }
+
+    static RosterStudent fromEgradesCSVRow(String[] row) {
+        return RosterStudent.builder()
+                .firstName(row[5])
+                .lastName(row[4])
+                .studentId(row[1])
+                .email(row[10])
+                .build();
+    }
+
+    /**
+     * @return the number of students inserted
+     */
+    private int importChunk(Course course, Map<String, RosterStudent> byStudentId, List<RosterStudent> chunk) {
+        Set<String> emails = chunk.stream().map(s -> convertEmail(s.getEmail())).collect(Collectors.toSet());
+        Map<String, User> usersByEmail = new HashMap<>();
+        for (User user : userRepository.findAllByEmailIn(emails)) {
+            usersByEmail.put(user.getEmail(), user);
+        }
+
+        List<RosterStudent> inserts = new ArrayList<>();
+        // RosterStudent's equals/hashCode change as its fields are updated, so track students by identity
+        Set<RosterStudent> insertSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<RosterStudent> updates = Collections.newSetFromMap(new IdentityHashMap<>());
+        // students inserted by an earlier chunk have no id and are not managed by Hibernate
+        Set<RosterStudent> insertedEarlier = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (RosterStudent row : chunk) {
+            String email = convertEmail(row.getEmail());
+            RosterStudent student = byStudentId.get(row.getStudentId());
+            if (student == null) {
+                student = row;
+                student.setCourse(course);
+                student.setOrgStatus(OrgStatus.NONE);
+                byStudentId.put(student.getStudentId(), student);
+                inserts.add(student);
+                insertSet.add(student);
+            } else {
+                student.setFirstName(row.getFirstName());
+                student.setLastName(row.getLastName());
+                if (student.getId() != null) {
+                    updates.add(student);
+                } else if (!insertSet.contains(student)) {
+                    insertedEarlier.add(student);
+                }
+            }
+            student.setEmail(email);
+            student.setRosterStatus(RosterStatus.ROSTER);
+            User user = usersByEmail.get(email);
+            if (user != null) {
+                student.setUser(user);
+            }
+        }
+
+        rosterStudentRepository.saveAllAndFlush(updates);
+        insertAll(course, inserts);
+        updateInsertedEarlier(course, insertedEarlier);
+        return inserts.size();
+    }
+
+    private void insertAll(Course course, List<RosterStudent> students) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, students, JDBC_BATCH_SIZE, (ps, student) -> {
+            ps.setLong(1, course.getId());
+            ps.setString(2, student.getStudentId());
+            ps.setString(3, student.getFirstName());
+            ps.setString(4, student.getLastName());
+            ps.setString(5, student.getEmail());
+            setUserId(ps, 6, student);
+            ps.setString(7, student.getRosterStatus().name());
+            ps.setString(8, student.getOrgStatus().name());
+        });
+    }
+
+    private void updateInsertedEarlier(Course course, Set<RosterStudent> students) {
+        jdbcTemplate.batchUpdate(UPDATE_BY_STUDENT_ID_SQL, students, JDBC_BATCH_SIZE, (ps, student) -> {
+            ps.setString(1, student.getFirstName());
+            ps.setString(2, student.getLastName());
+            ps.setString(3, student.getEmail());
+            setUserId(ps, 4, student);
+            ps.setString(5, student.getRosterStatus().name());
+            ps.setLong(6, course.getId());
+            ps.setString(7, student.getStudentId());
+        });
+    }
+
+    private static void setUserId(PreparedStatement ps, int index, RosterStudent student) throws SQLException {
+        if (student.getUser() == null) {
+            ps.setNull(index, Types.BIGINT);
+        } else {
+            ps.setLong(index, student.getUser().getId());
+        }
+    }
+
+    static String convertEmail(String email) {
+        return email.replace("@umail.ucsb.edu", "@ucsb.edu");
+    }
+}
@@ -1,24 +1,24 @@
 package edu.ucsb.cs156.frontiers.services;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 import com.opencsv.bean.StatefulBeanToCsv;
 import com.opencsv.bean.StatefulBeanToCsvBuilder;
+import com.opencsv.exceptions.CsvDataTypeMismatchException;
+import com.opencsv.exceptions.CsvRequiredFieldEmptyException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import edu.ucsb.cs156.frontiers.entities.RosterStudent;
 import edu.ucsb.cs156.frontiers.models.RosterStudentDTO;
 import edu.ucsb.cs156.frontiers.repositories.RosterStudentRepository;
+import lombok.extern.slf4j.Slf4j;
 
 @Service
+@Slf4j
 public class RosterStudentDTOService {
 
 
@@ -26,18 +26,26 @@ public class RosterStudentDTOService {
     private RosterStudentRepository rosterStudentRepository;
 
     /**
-     * This method gets a list of RosterStudentDTOs based on the courseId
+     * This method writes the roster of a course as CSV, one row per student.
+     * Rows are read from the database and written as they arrive, so the
+     * roster is never held in memory as a whole.
      * 
-     * @param courseId if of the course
-     * @return a list of RosterStudentDTOs
+     * @param courseId id of the course
+     * @param writer where the CSV is written
+     * @throws IOException if a row cannot be converted to CSV
      */
-    public List<RosterStudentDTO> getRosterStudentDTOs(Long courseId) {
-        Iterable<RosterStudent> matchedStudents = rosterStudentRepository.findByCourseId(courseId);
-        
-        return StreamSupport.stream(matchedStudents.spliterator(), false)
-            .map(RosterStudentDTO::from)
-            .collect(Collectors.toList());
-
+    @Transactional(readOnly = true)
+    public void writeRosterStudentsCsv(Long courseId, Writer writer) throws IOException {
+        StatefulBeanToCsv<RosterStudentDTO> beanToCsvWriter = getStatefulBeanToCSV(writer);
+        try (Stream<RosterStudentDTO> dtos = rosterStudentRepository.streamRosterStudentDTOsByCourseId(courseId)) {
+            Iterator<RosterStudentDTO> rows = dtos.iterator();
+            while (rows.hasNext()) {
+                beanToCsvWriter.write(rows.next());
+            }
+        } catch (CsvDataTypeMismatchException | CsvRequiredFieldEmptyException e) {
+            log.error("Error writing CSV file", e);
+            throw new IOException("Error writing CSV file: " + e.getMessage());
+        }
     }
 
     public StatefulBeanToCsv<RosterStudentDTO> getStatefulBeanToCSV(Writer writer) throws IOException {
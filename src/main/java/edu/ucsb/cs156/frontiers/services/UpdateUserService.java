@@ -14,12 +14,17 @@ import edu.ucsb.cs156.frontiers.repositories.UserRepository;
 @Service
 public class UpdateUserService {
 
+    static final int CHUNK_SIZE = 10_000;
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
     private RosterStudentRepository rosterStudentRepository;
 
+    @Autowired
+    private CurrentUserCache currentUserCache;
+
     /**
      * This method attaches the RosterStudents to the User based on their email.
      * 
@@ -32,15 +37,24 @@ public class UpdateUserService {
             matchedStudent.setUser(user);
         }
         rosterStudentRepository.saveAll(matchedStudents);
-
+        currentUserCache.evict(user.getGoogleSub());
     }
 
-    /** attach roster students for all Users */
-    public void attachRosterStudentsAllUsers() {
-        Iterable<User> allUsers = userRepository.findAll();
-        for (User user : allUsers) {
-            attachRosterStudents(user);
+    /**
+     * Attaches every roster student to the user with the same email.
+     * Runs one UPDATE per {@link #CHUNK_SIZE} roster student ids, each in its own transaction, so a large
+     * table is not locked all at once; students already attached to the right user are not written.
+     *
+     * @return the number of roster students attached
+     */
+    public int attachRosterStudentsAllUsers() {
+        Long maxId = rosterStudentRepository.findMaxId();
+        long lastId = maxId == null ? 0 : maxId;
+        int attached = 0;
+        for (long afterId = 0; afterId < lastId; afterId += CHUNK_SIZE) {
+            attached += rosterStudentRepository.attachUsersByEmail(afterId, afterId + CHUNK_SIZE);
         }
+        return attached;
     }
 
     /**
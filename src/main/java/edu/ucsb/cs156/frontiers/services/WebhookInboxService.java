@@ -0,0 +1,290 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.frontiers.entities.Course;
+import edu.ucsb.cs156.frontiers.entities.RosterStudent;
+import edu.ucsb.cs156.frontiers.entities.WebhookDelivery;
+import edu.ucsb.cs156.frontiers.enums.OrgStatus;
+import edu.ucsb.cs156.frontiers.repositories.CourseRepository;
+import edu.ucsb.cs156.frontiers.repositories.RosterStudentRepository;
+import edu.ucsb.cs156.frontiers.repositories.WebhookDeliveryRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Inbox for GitHub webhook deliveries.
+ * <p>
+ * {@link #receive} only stores a delivery, so the webhook endpoint can answer GitHub right away; a delivery GitHub
+ * sends again (same {@code X-GitHub-Delivery}) is stored once. {@link #drain} runs in the background and handles
+ * stored deliveries {@link #BATCH_SIZE} at a time, passing each to the handler for its event and action in
+ * {@link #handlers}; deliveries without a handler are only marked processed.
+ * </p>
+ * <p>
+ * Organization membership events are coalesced within a batch: each student's org status is set from the last
+ * event about them, with one course lookup per installation, one roster query per course and one UPDATE per new
+ * status. Installation and organization events keep the linked courses' {@code orgName} and {@code installationId}
+ * current as they come. Several courses can be linked to one installation; every one of them is updated.
+ * Together these keep the roster current without running {@code UpdateOrgMembershipJob}, which is still there to
+ * catch up after missed deliveries.
+ * </p>
+ * <p>
+ * Deliveries are marked processed after the changes they cause have been saved, so a delivery may be handled twice
+ * if the application stops in between; every handler has the same result when run twice as when run once.
+ * A delivery whose handling fails, or whose installation's membership changes fail to save, is left in the inbox
+ * with its {@code attempts} and {@code lastError} recorded, and does not hold up the others; after
+ * {@link #MAX_ATTEMPTS} it is marked processed and logged as given up on.
+ * Processed deliveries are kept for {@link #RETENTION}, which is how long a repeated delivery id is recognized.
+ * </p>
+ */
+@Slf4j
+@Service
+public class WebhookInboxService {
+
+    static final int BATCH_SIZE = 100;
+
+    static final Duration RETENTION = Duration.ofDays(7);
+
+    static final int MAX_ATTEMPTS = 5;
+
+    @Autowired
+    private WebhookDeliveryRepository webhookDeliveryRepository;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private RosterStudentRepository rosterStudentRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JwtService jwtService;
+
+    /**
+     * Handles one delivery. Membership changes are added to {@code changes} and saved for the whole batch;
+     * anything else is saved right away.
+     */
+    @FunctionalInterface
+    private interface WebhookHandler {
+        void handle(WebhookDelivery delivery, JsonNode payload, MembershipChanges changes);
+    }
+
+    /**
+     * Handlers by {@code <X-GitHub-Event>.<action>}. See
+     * https://docs.github.com/en/webhooks/webhook-events-and-payloads for the payloads.
+     */
+    private final Map<String, WebhookHandler> handlers = Map.of(
+            "organization.member_added", this::memberAdded,
+            "organization.member_invited", this::memberInvited,
+            "organization.member_removed", this::memberRemoved,
+            "organization.renamed", this::organizationRenamed,
+            "installation_target.renamed", this::installationTargetRenamed,
+            "installation.deleted", this::installationDeleted);
+
+    /**
+     * The org status each student in a batch ends up with, by installation id and GitHub login, and the deliveries
+     * that asked for it.
+     */
+    private static class MembershipChanges {
+        private final Map<String, Map<String, OrgStatus>> statusByLoginByInstallation = new HashMap<>();
+        private final Map<String, List<WebhookDelivery>> deliveriesByInstallation = new HashMap<>();
+
+        void set(WebhookDelivery delivery, OrgStatus status) {
+            if (delivery.getInstallationId() != null && delivery.getGithubLogin() != null) {
+                statusByLoginByInstallation
+                        .computeIfAbsent(delivery.getInstallationId(), installationId -> new HashMap<>())
+                        .put(delivery.getGithubLogin(), status);
+                deliveriesByInstallation
+                        .computeIfAbsent(delivery.getInstallationId(), installationId -> new ArrayList<>())
+                        .add(delivery);
+            }
+        }
+    }
+
+    /**
+     * Stores a webhook delivery to be handled by {@link #drain}.
+     *
+     * @param deliveryId the {@code X-GitHub-Delivery} header
+     * @param event the {@code X-GitHub-Event} header
+     * @param payload body of the webhook
+     * @return false if a delivery with this id has already been received
+     */
+    public boolean receive(String deliveryId, String event, JsonNode payload) {
+        WebhookDelivery delivery = WebhookDelivery.builder()
+                .deliveryId(deliveryId)
+                .event(event)
+                .action(text(payload.path("action")))
+                .installationId(text(payload.path("installation").path("id")))
+                .githubLogin(githubLogin(payload))
+                .payload(payload.toString())
+                .receivedAt(ZonedDateTime.now(ZoneOffset.UTC))
+                .build();
+        try {
+            webhookDeliveryRepository.save(delivery);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // unique delivery id
+            return false;
+        }
+    }
+
+    private static String text(JsonNode node) {
+        return node.isMissingNode() || node.isNull() ? null : node.asText();
+    }
+
+    /** The user an organization membership event is about; invitations sent by email have no login. */
+    private static String githubLogin(JsonNode payload) {
+        String member = text(payload.at("/membership/user/login"));
+        return member != null ? member : text(payload.at("/invitation/login"));
+    }
+
+    /**
+     * Handles every delivery waiting in the inbox, then forgets processed deliveries older than {@link #RETENTION}.
+     * Each waiting delivery is tried once per drain.
+     */
+    @Scheduled(fixedDelayString = "${app.webhooks.drain-interval:1s}",
+            initialDelayString = "${app.webhooks.drain-interval:1s}")
+    public void drain() {
+        long afterId = 0;
+        List<WebhookDelivery> batch;
+        do {
+            batch = webhookDeliveryRepository.findByProcessedAtIsNullAndIdGreaterThanOrderByIdAsc(afterId,
+                    Limit.of(BATCH_SIZE));
+            process(batch);
+            if (!batch.isEmpty()) {
+                afterId = batch.get(batch.size() - 1).getId();
+            }
+        } while (batch.size() == BATCH_SIZE);
+        webhookDeliveryRepository.deleteProcessedBefore(ZonedDateTime.now(ZoneOffset.UTC).minus(RETENTION));
+    }
+
+    private void process(List<WebhookDelivery> batch) {
+        MembershipChanges changes = new MembershipChanges();
+        Map<WebhookDelivery, Exception> failures = new IdentityHashMap<>();
+        for (WebhookDelivery delivery : batch) {
+            WebhookHandler handler = handlers.get(delivery.getEvent() + "." + delivery.getAction());
+            if (handler != null) {
+                try {
+                    handler.handle(delivery, objectMapper.readTree(delivery.getPayload()), changes);
+                } catch (JsonProcessingException | RuntimeException e) {
+                    failures.put(delivery, e);
+                }
+            }
+        }
+
+        changes.statusByLoginByInstallation.forEach((installationId, statusByLogin) -> {
+            try {
+                applyMembershipChanges(installationId, statusByLogin);
+            } catch (RuntimeException e) {
+                changes.deliveriesByInstallation.get(installationId).forEach(delivery -> failures.put(delivery, e));
+            }
+        });
+
+        ZonedDateTime processedAt = ZonedDateTime.now(ZoneOffset.UTC);
+        List<Long> processedIds = new ArrayList<>();
+        for (WebhookDelivery delivery : batch) {
+            Exception failure = failures.get(delivery);
+            if (failure == null) {
+                processedIds.add(delivery.getId());
+            } else {
+                recordFailure(delivery, failure, processedAt);
+            }
+        }
+        if (!processedIds.isEmpty()) {
+            webhookDeliveryRepository.markProcessed(processedIds, processedAt);
+        }
+    }
+
+    /** Leaves the delivery in the inbox to be tried again, or gives up on it after {@link #MAX_ATTEMPTS}. */
+    private void recordFailure(WebhookDelivery delivery, Exception failure, ZonedDateTime now) {
+        delivery.setAttempts(delivery.getAttempts() + 1);
+        delivery.setLastError(failure.toString());
+        if (delivery.getAttempts() >= MAX_ATTEMPTS) {
+            log.error("Giving up on webhook delivery {} after {} attempts", delivery.getDeliveryId(),
+                    delivery.getAttempts(), failure);
+            delivery.setProcessedAt(now);
+        } else {
+            log.warn("Webhook delivery {} failed, attempt {} of {}", delivery.getDeliveryId(),
+                    delivery.getAttempts(), MAX_ATTEMPTS, failure);
+        }
+        webhookDeliveryRepository.save(delivery);
+    }
+
+    private void applyMembershipChanges(String installationId, Map<String, OrgStatus> statusByLogin) {
+        Map<OrgStatus, List<Long>> changedIdsByStatus = new EnumMap<>(OrgStatus.class);
+        for (Course course : courseRepository.findAllByInstallationId(installationId)) {
+            for (RosterStudent student : rosterStudentRepository
+                    .findByCourseIdAndGithubLoginIn(course.getId(), statusByLogin.keySet())) {
+                OrgStatus status = statusByLogin.get(student.getGithubLogin());
+                if (student.getOrgStatus() != status) {
+                    changedIdsByStatus.computeIfAbsent(status, orgStatus -> new ArrayList<>()).add(student.getId());
+                }
+            }
+        }
+        changedIdsByStatus.forEach((status, ids) -> rosterStudentRepository.updateOrgStatus(ids, status));
+    }
+
+    private void memberAdded(WebhookDelivery delivery, JsonNode payload, MembershipChanges changes) {
+        changes.set(delivery, OrgStatus.forRole(payload.at("/membership/role").asText()));
+    }
+
+    private void memberInvited(WebhookDelivery delivery, JsonNode payload, MembershipChanges changes) {
+        changes.set(delivery, OrgStatus.INVITED);
+    }
+
+    private void memberRemoved(WebhookDelivery delivery, JsonNode payload, MembershipChanges changes) {
+        changes.set(delivery, OrgStatus.NONE);
+    }
+
+    private void organizationRenamed(WebhookDelivery delivery, JsonNode payload, MembershipChanges changes) {
+        updateLinkedCourse(delivery, course -> course.setOrgName(text(payload.at("/organization/login"))));
+    }
+
+    private void installationTargetRenamed(WebhookDelivery delivery, JsonNode payload, MembershipChanges changes) {
+        updateLinkedCourse(delivery, course -> course.setOrgName(text(payload.at("/account/login"))));
+    }
+
+    /**
+     * The app was uninstalled from the organization, so the course is no longer linked to it and the installation's
+     * token no longer works.
+     */
+    private void installationDeleted(WebhookDelivery delivery, JsonNode payload, MembershipChanges changes) {
+        updateLinkedCourse(delivery, course -> {
+            course.setInstallationId(null);
+            course.setOrgName(null);
+        });
+        if (delivery.getInstallationId() != null) {
+            jwtService.invalidateInstallationToken(delivery.getInstallationId());
+        }
+    }
+
+    private void updateLinkedCourse(WebhookDelivery delivery, Consumer<Course> update) {
+        if (delivery.getInstallationId() == null) {
+            // findAllByInstallationId(null) would look for the courses that are not linked
+            return;
+        }
+        List<Course> courses = courseRepository.findAllByInstallationId(delivery.getInstallationId());
+        courses.forEach(update);
+        courseRepository.saveAll(courses);
+    }
+}
@@ -0,0 +1,71 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Checks the {@code X-Hub-Signature-256} header GitHub puts on webhook deliveries: {@code sha256=} followed by the
+ * hex HMAC-SHA256 of the request body, keyed with the webhook secret set on the GitHub App.
+ * <p>
+ * The HMAC is computed over the body exactly as it was received, before it is parsed. Each thread keeps its own
+ * initialized {@link Mac}, since creating one costs more than signing a typical delivery. Headers that are missing
+ * or malformed are rejected without computing an HMAC. When no secret is configured every delivery is rejected.
+ * </p>
+ */
+@Service
+public class WebhookSignatureService {
+
+    static final String ALGORITHM = "HmacSHA256";
+
+    static final String SIGNATURE_PREFIX = "sha256=";
+
+    // 32-byte HMAC-SHA256 as hex
+    private static final int SIGNATURE_LENGTH = SIGNATURE_PREFIX.length() + 64;
+
+    private final SecretKeySpec key;
+
+    private final ThreadLocal<Mac> macs = new ThreadLocal<>();
+
+    public WebhookSignatureService(@Value("${app.webhooks.secret:}") String secret) {
+        this.key = secret.isEmpty() ? null : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    /**
+     * @param body the request body as received
+     * @param signatureHeader the {@code X-Hub-Signature-256} header, or null if there was none
+     * @return true if a secret is configured and the header is the signature of {@code body}
+     */
+    public boolean isValid(byte[] body, String signatureHeader) throws NoSuchAlgorithmException, InvalidKeyException {
+        if (key == null || signatureHeader == null || signatureHeader.length() != SIGNATURE_LENGTH
+                || !signatureHeader.startsWith(SIGNATURE_PREFIX)) {
+            return false;
+        }
+        byte[] signature;
+        try {
+            signature = HexFormat.of().parseHex(signatureHeader, SIGNATURE_PREFIX.length(), SIGNATURE_LENGTH);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        // constant-time comparison, so the response time does not tell how much of a forged signature is right
+        return MessageDigest.isEqual(mac().doFinal(body), signature);
+    }
+
+    private Mac mac() throws NoSuchAlgorithmException, InvalidKeyException {
+        Mac mac = macs.get();
+        if (mac == null) {
+            mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            macs.set(mac);
+        }
+        return mac;
+    }
+}
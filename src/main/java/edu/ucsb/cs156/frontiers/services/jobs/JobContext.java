@@ -1,20 +1,79 @@
 package edu.ucsb.cs156.frontiers.services.jobs;
 
 import edu.ucsb.cs156.frontiers.entities.Job;
-import edu.ucsb.cs156.frontiers.repositories.JobsRepository;
-import lombok.AllArgsConstructor;
+import edu.ucsb.cs156.frontiers.entities.JobLogLine;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 import lombok.extern.slf4j.Slf4j;
 
-@AllArgsConstructor
+/**
+ * Handed to a running job so it can write to its log.
+ *
+ * <p>Lines are buffered and handed to {@code logWriter} (normally {@code JobLogLineRepository::saveAll}) in
+ * batches: whenever {@link #FLUSH_SIZE} lines are pending, when {@link #FLUSH_INTERVAL} has passed since the
+ * last write, and when {@link #flush()} is called at the end of the job. Every line is also handed to
+ * {@code lineListener} as soon as it is logged, so live viewers (see {@link JobEventBroadcaster}) do not have
+ * to wait for the next write.
+ */
 @Slf4j
 public class JobContext {
-  private JobsRepository jobsRepository;
-  private Job job;
+  static final int FLUSH_SIZE = 50;
+  static final Duration FLUSH_INTERVAL = Duration.ofSeconds(1);
 
-  public void log(String message) {
+  private final Job job;
+  private final Consumer<List<JobLogLine>> logWriter;
+  private final Consumer<JobLogLine> lineListener;
+  private final List<JobLogLine> pending = new ArrayList<>();
+  private int nextSeq = 0;
+  private long lastFlushNanos = System.nanoTime();
+
+  public JobContext(Job job, Consumer<List<JobLogLine>> logWriter) {
+    this(job, logWriter, line -> {});
+  }
+
+  public JobContext(
+      Job job, Consumer<List<JobLogLine>> logWriter, Consumer<JobLogLine> lineListener) {
+    this.job = job;
+    this.logWriter = logWriter;
+    this.lineListener = lineListener;
+  }
+
+  public synchronized void log(String message) {
+    append("INFO", message);
+  }
+
+  public synchronized void error(String message) {
+    append("ERROR", message);
+  }
+
+  private void append(String level, String message) {
     log.info("Job %s: %s".formatted(job.getId(), message));
-    String previousLog = job.getLog() == null ? "" : (job.getLog() + "\n");
-    job.setLog(previousLog + message);
-    if (jobsRepository != null) jobsRepository.save(job);
+    JobLogLine line =
+        JobLogLine.builder()
+            .jobId(job.getId())
+            .seq(nextSeq++)
+            .loggedAt(ZonedDateTime.now(ZoneOffset.UTC))
+            .level(level)
+            .message(message)
+            .build();
+    pending.add(line);
+    lineListener.accept(line);
+    if (pending.size() >= FLUSH_SIZE
+        || System.nanoTime() - lastFlushNanos >= FLUSH_INTERVAL.toNanos()) {
+      flush();
+    }
+  }
+
+  /** Writes any buffered lines. */
+  public synchronized void flush() {
+    if (!pending.isEmpty()) {
+      logWriter.accept(List.copyOf(pending));
+      pending.clear();
+    }
+    lastFlushNanos = System.nanoTime();
   }
 }
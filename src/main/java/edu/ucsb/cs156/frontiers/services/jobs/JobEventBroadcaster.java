@@ -0,0 +1,281 @@
+package edu.ucsb.cs156.frontiers.services.jobs;
+
+import edu.ucsb.cs156.frontiers.entities.Job;
+import edu.ucsb.cs156.frontiers.entities.JobLogLine;
+import edu.ucsb.cs156.frontiers.repositories.JobLogLineRepository;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes the log lines and status changes of jobs to Server-Sent Event subscribers.
+ *
+ * <p>From the time a job is queued until it finishes, its most recent {@link #BUFFER_SIZE} lines are kept in memory, so a client
+ * that reconnects with {@code Last-Event-ID} is caught up without touching the database. Older lines,
+ * and all lines of jobs that are no longer running in this instance, are replayed from job_log_line.
+ *
+ * <p>Each log line is sent as a {@code log} event whose id is the line's seq; status changes are sent
+ * as {@code status} events without an id.
+ *
+ * <p>Events are sent outside of any lock, so a slow client does not hold up other jobs, and the job thread is not
+ * held up while a new subscriber is caught up: events that arrive meanwhile are held back and sent after the
+ * catch-up, in order. A subscriber is dropped when a send to it fails, and when its stream completes, times out or
+ * fails.
+ *
+ * <p>An {@link SseEmitter.SseEventBuilder} can only be built once, so every send builds its event afresh from a
+ * {@link Supplier}.
+ */
+@Service
+@Slf4j
+public class JobEventBroadcaster {
+  static final int BUFFER_SIZE = 1000;
+  static final Duration EMITTER_TIMEOUT = Duration.ofMinutes(30);
+
+  @Autowired private JobLogLineRepository jobLogLineRepository;
+
+  private final ConcurrentHashMap<Long, LiveJob> liveJobs = new ConcurrentHashMap<>();
+
+  /** A job queued or running in this instance. Its monitor guards everything but {@code subscribers}. */
+  private static class LiveJob {
+    private final ArrayDeque<JobLogLine> recentLines = new ArrayDeque<>();
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private String status;
+    private boolean finished;
+
+    private LiveJob(String status) {
+      this.status = status;
+    }
+  }
+
+  /** A client following a live job. Until it has been caught up, new events are held back for it. */
+  private static class Subscriber {
+    private final SseEmitter emitter;
+    // null once the subscriber has been caught up
+    private List<Supplier<SseEmitter.SseEventBuilder>> heldBack = new ArrayList<>();
+    private boolean completeWhenCaughtUp;
+
+    private Subscriber(SseEmitter emitter) {
+      this.emitter = emitter;
+    }
+
+    /**
+     * @return false if the client is gone and the subscriber should be dropped
+     */
+    boolean send(Supplier<SseEmitter.SseEventBuilder> event) {
+      synchronized (this) {
+        if (heldBack != null) {
+          heldBack.add(event);
+          return true;
+        }
+      }
+      return JobEventBroadcaster.send(emitter, event);
+    }
+
+    /** Sends the job's final status and closes the stream. */
+    void complete(Supplier<SseEmitter.SseEventBuilder> finalStatus) {
+      synchronized (this) {
+        if (heldBack != null) {
+          heldBack.add(finalStatus);
+          completeWhenCaughtUp = true;
+          return;
+        }
+      }
+      if (JobEventBroadcaster.send(emitter, finalStatus)) {
+        emitter.complete();
+      }
+    }
+
+    /**
+     * Sends the events held back while the subscriber was caught up, after which events are sent as they come.
+     *
+     * @return false if the client is gone and the subscriber should be dropped
+     */
+    boolean caughtUp() {
+      while (true) {
+        List<Supplier<SseEmitter.SseEventBuilder>> events;
+        synchronized (this) {
+          if (heldBack.isEmpty()) {
+            heldBack = null;
+            break;
+          }
+          events = heldBack;
+          heldBack = new ArrayList<>();
+        }
+        for (Supplier<SseEmitter.SseEventBuilder> event : events) {
+          if (!JobEventBroadcaster.send(emitter, event)) {
+            return false;
+          }
+        }
+      }
+      if (completeWhenCaughtUp) {
+        emitter.complete();
+      }
+      return true;
+    }
+  }
+
+  public void jobQueued(Job job) {
+    liveJobs.put(job.getId(), new LiveJob(job.getStatus()));
+  }
+
+  public void statusChanged(Job job) {
+    LiveJob live = liveJobs.get(job.getId());
+    if (live == null) {
+      return;
+    }
+    List<Subscriber> subscribers;
+    synchronized (live) {
+      live.status = job.getStatus();
+      subscribers = List.copyOf(live.subscribers);
+    }
+    String status = job.getStatus();
+    sendToAll(live, subscribers, () -> statusEvent(status));
+  }
+
+  public void lineLogged(JobLogLine line) {
+    LiveJob live = liveJobs.get(line.getJobId());
+    if (live == null) {
+      return;
+    }
+    List<Subscriber> subscribers;
+    synchronized (live) {
+      live.recentLines.addLast(line);
+      if (live.recentLines.size() > BUFFER_SIZE) {
+        live.recentLines.removeFirst();
+      }
+      subscribers = List.copyOf(live.subscribers);
+    }
+    sendToAll(live, subscribers, () -> logEvent(line));
+  }
+
+  public void jobFinished(Job job) {
+    LiveJob live = liveJobs.remove(job.getId());
+    if (live == null) {
+      return;
+    }
+    List<Subscriber> subscribers;
+    synchronized (live) {
+      live.finished = true;
+      subscribers = List.copyOf(live.subscribers);
+    }
+    String status = job.getStatus();
+    for (Subscriber subscriber : subscribers) {
+      subscriber.complete(() -> statusEvent(status));
+    }
+  }
+
+  private static void sendToAll(
+      LiveJob live, List<Subscriber> subscribers, Supplier<SseEmitter.SseEventBuilder> event) {
+    for (Subscriber subscriber : subscribers) {
+      if (!subscriber.send(event)) {
+        live.subscribers.remove(subscriber);
+      }
+    }
+  }
+
+  /**
+   * Opens an event stream for a job.
+   *
+   * @param job the job to follow
+   * @param lastEventId seq of the last line the client has already seen, or null to start from the beginning
+   * @return an emitter that replays the lines after {@code lastEventId} and, if the job is still queued or running,
+   *     keeps sending new lines until it finishes
+   */
+  public SseEmitter subscribe(Job job, Integer lastEventId) {
+    int fromSeq = lastEventId == null ? 0 : lastEventId + 1;
+    SseEmitter emitter = newEmitter();
+    if (subscribeToLiveJob(emitter, job.getId(), fromSeq)) {
+      return emitter;
+    }
+
+    replayFromDatabase(emitter, job.getId(), fromSeq, Limit.unlimited());
+    send(emitter, () -> statusEvent(job.getStatus()));
+    emitter.complete();
+    return emitter;
+  }
+
+  private boolean subscribeToLiveJob(SseEmitter emitter, long jobId, int fromSeq) {
+    LiveJob live = liveJobs.get(jobId);
+    if (live == null) {
+      return false;
+    }
+    Subscriber subscriber = new Subscriber(emitter);
+    Runnable drop = () -> live.subscribers.remove(subscriber);
+    emitter.onCompletion(drop);
+    emitter.onTimeout(drop);
+    emitter.onError(e -> drop.run());
+    List<JobLogLine> recentLines;
+    String status;
+    synchronized (live) {
+      if (live.finished) {
+        return false;
+      }
+      // from here on, new events are held back for the subscriber; older ones are in recentLines
+      recentLines = List.copyOf(live.recentLines);
+      status = live.status;
+      live.subscribers.add(subscriber);
+    }
+
+    // Lines older than the buffer were written to the database long ago: at most JobContext.FLUSH_SIZE
+    // lines are ever waiting to be written.
+    if (!recentLines.isEmpty() && fromSeq < recentLines.get(0).getSeq()) {
+      replayFromDatabase(emitter, jobId, fromSeq, Limit.of(recentLines.get(0).getSeq() - fromSeq));
+    }
+    for (JobLogLine line : recentLines) {
+      if (line.getSeq() >= fromSeq) {
+        send(emitter, () -> logEvent(line));
+      }
+    }
+    send(emitter, () -> statusEvent(status));
+    if (!subscriber.caughtUp()) {
+      live.subscribers.remove(subscriber);
+    }
+    return true;
+  }
+
+  private void replayFromDatabase(SseEmitter emitter, long jobId, int fromSeq, Limit limit) {
+    for (JobLogLine line :
+        jobLogLineRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(jobId, fromSeq, limit)) {
+      send(emitter, () -> logEvent(line));
+    }
+  }
+
+  SseEmitter newEmitter() {
+    return new SseEmitter(EMITTER_TIMEOUT.toMillis());
+  }
+
+  /**
+   * @return false if the client is gone and the emitter should be dropped
+   */
+  private static boolean send(SseEmitter emitter, Supplier<SseEmitter.SseEventBuilder> event) {
+    try {
+      emitter.send(event.get());
+      return true;
+    } catch (IOException | IllegalStateException e) {
+      log.debug("Dropping job event subscriber: {}", e.getMessage());
+      return false;
+    }
+  }
+
+  private static SseEmitter.SseEventBuilder logEvent(JobLogLine line) {
+    return SseEmitter.event()
+        .id(Integer.toString(line.getSeq()))
+        .name("log")
+        .data(line, MediaType.APPLICATION_JSON);
+  }
+
+  private static SseEmitter.SseEventBuilder statusEvent(String status) {
+    return SseEmitter.event().name("status").data(status);
+  }
+}
@@ -0,0 +1,71 @@
+package edu.ucsb.cs156.frontiers.services.jobs;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs jobs on their own bounded pool, separate from the executor Spring uses for other async work.
+ *
+ * <p>At most {@code app.jobs.max-concurrency} jobs run at once. Up to {@code app.jobs.queue-capacity} more wait
+ * in FIFO order; anything beyond that is rejected rather than piling up in memory.
+ *
+ * <p>Publishes the gauges {@code frontiers.jobs.queued} and {@code frontiers.jobs.running} and the timer
+ * {@code frontiers.jobs.queue.wait} (time from submission until a job starts).
+ */
+@Component
+public class JobExecutor {
+  private final ThreadPoolExecutor executor;
+  private final Timer queueWait;
+
+  public JobExecutor(
+      @Value("${app.jobs.max-concurrency:2}") int maxConcurrency,
+      @Value("${app.jobs.queue-capacity:100}") int queueCapacity,
+      MeterRegistry meterRegistry) {
+    this.executor =
+        new ThreadPoolExecutor(
+            maxConcurrency,
+            maxConcurrency,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            Thread.ofPlatform().name("job-", 1).factory());
+    Gauge.builder("frontiers.jobs.queued", executor, e -> e.getQueue().size())
+        .description("Jobs waiting for a free job thread")
+        .register(meterRegistry);
+    Gauge.builder("frontiers.jobs.running", executor, ThreadPoolExecutor::getActiveCount)
+        .description("Jobs currently running")
+        .register(meterRegistry);
+    this.queueWait =
+        Timer.builder("frontiers.jobs.queue.wait")
+            .description("Time jobs spend queued before they start")
+            .register(meterRegistry);
+  }
+
+  /**
+   * Queues a job.
+   *
+   * @param job the work to run
+   * @throws RejectedExecutionException if the queue is full
+   */
+  public void submit(Runnable job) {
+    long submittedAt = System.nanoTime();
+    executor.execute(
+        () -> {
+          queueWait.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+          job.run();
+        });
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+}
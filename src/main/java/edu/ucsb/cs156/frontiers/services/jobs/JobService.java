@@ -1,54 +1,210 @@
 package edu.ucsb.cs156.frontiers.services.jobs;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import edu.ucsb.cs156.frontiers.entities.Job;
+import edu.ucsb.cs156.frontiers.entities.JobLogLine;
+import edu.ucsb.cs156.frontiers.errors.JobAlreadyRunningException;
+import edu.ucsb.cs156.frontiers.errors.JobQueueFullException;
+import edu.ucsb.cs156.frontiers.repositories.JobLogLineRepository;
 import edu.ucsb.cs156.frontiers.repositories.JobsRepository;
 import edu.ucsb.cs156.frontiers.services.CurrentUserService;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 @Service
 public class JobService {
   @Autowired private JobsRepository jobsRepository;
 
+  @Autowired private JobLogLineRepository jobLogLineRepository;
+
+  @Autowired private JobEventBroadcaster jobEventBroadcaster;
+
+  @Autowired private JobExecutor jobExecutor;
+
   @Autowired private CurrentUserService currentUserService;
 
-  @Lazy @Autowired private JobService self;
+  @Autowired private MeterRegistry meterRegistry;
+
+  private final ConcurrentHashMap<CourseJobKey, Job> activeCourseJobs = new ConcurrentHashMap<>();
+
+  private record CourseJobKey(String jobType, long courseId) {}
 
   public Job runAsJob(JobContextConsumer jobFunction) {
-    Job job = Job.builder().createdBy(currentUserService.getUser()).status("running").build();
+    return runAsJob(jobFunction, null);
+  }
 
-    jobsRepository.save(job);
-    self.runJobAsync(job, jobFunction);
+  /**
+   * Queues a job on the {@link JobExecutor}.
+   *
+   * <p>Jobs that work on a course are deduplicated: while a job of the same type is queued or running for
+   * the same course, that job is returned instead of starting another one. A job is saved before it can be
+   * returned to another caller, and if it cannot be queued its course is released again.
+   *
+   * @param jobFunction the job
+   * @param courseId the course the job works on, or null if it is not about a single course
+   * @return the queued job, or the one that was already queued or running for this course
+   * @throws JobQueueFullException if too many jobs are already waiting
+   */
+  public Job runAsJob(JobContextConsumer jobFunction, Long courseId) {
+    return queue(jobFunction, courseId, false);
+  }
 
+  /**
+   * Like {@link #runAsJob(JobContextConsumer, Long)}, for jobs whose input differs from one launch to the next
+   * (e.g. an uploaded file): returning the active job would silently drop this one's input, so it is refused.
+   *
+   * @param jobFunction the job
+   * @param courseId the course the job works on
+   * @return the queued job
+   * @throws JobAlreadyRunningException if a job of the same type is queued or running for this course
+   * @throws JobQueueFullException if too many jobs are already waiting
+   */
+  public Job runAsNewJob(JobContextConsumer jobFunction, long courseId) {
+    return queue(jobFunction, courseId, true);
+  }
+
+  private Job queue(JobContextConsumer jobFunction, Long courseId, boolean refuseIfActive) {
+    Job job =
+        Job.builder()
+            .createdBy(currentUserService.getUser())
+            .jobType(jobFunction.getClass().getSimpleName())
+            .courseId(courseId)
+            .status("queued")
+            .build();
+    CourseJobKey key = courseId == null ? null : new CourseJobKey(job.getJobType(), courseId);
+    if (key != null) {
+      Job existing = activeCourseJobs.get(key);
+      if (existing != null) {
+        return alreadyActive(existing, refuseIfActive);
+      }
+    }
+
+    jobsRepository.save(job);
+    if (key != null) {
+      Job existing = activeCourseJobs.putIfAbsent(key, job);
+      if (existing != null) {
+        // another launch for this course got in first; this job never ran
+        jobsRepository.delete(job);
+        return alreadyActive(existing, refuseIfActive);
+      }
+    }
+    try {
+      jobEventBroadcaster.jobQueued(job);
+      jobExecutor.submit(() -> runJob(job, jobFunction, key));
+    } catch (RuntimeException e) {
+      job.setStatus("error");
+      finish(job, key);
+      if (e instanceof RejectedExecutionException) {
+        throw new JobQueueFullException(job.getJobType());
+      }
+      throw e;
+    }
     return job;
   }
 
-  @Async
-  public void runJobAsync(Job job, JobContextConsumer jobFunction) {
-    JobContext context = new JobContext(jobsRepository, job);
+  private static Job alreadyActive(Job existing, boolean refuse) {
+    if (refuse) {
+      throw new JobAlreadyRunningException(existing.getJobType(), existing.getCourseId());
+    }
+    return existing;
+  }
 
+  /**
+   * Runs a job on a job thread. Its run time is recorded in the timer {@code frontiers.jobs.run}, tagged with the
+   * job's {@code type} and final {@code status}.
+   *
+   * <p>Whatever happens to the job, including an {@link Error}, its course is released and its final status is
+   * saved if the database allows; a job that did not complete is marked as an error.
+   */
+  private void runJob(Job job, JobContextConsumer jobFunction, CourseJobKey key) {
+    JobContext context =
+        new JobContext(job, jobLogLineRepository::saveAll, jobEventBroadcaster::lineLogged);
+    Timer.Sample sample = Timer.start(meterRegistry);
+    String status = "error";
     try {
+      job.setStatus("running");
+      job.setStartedAt(ZonedDateTime.now(ZoneOffset.UTC));
+      jobsRepository.save(job);
+      jobEventBroadcaster.statusChanged(job);
+
       jobFunction.accept(context);
+      status = "complete";
     } catch (Exception e) {
-      job.setStatus("error");
-      context.log(e.getMessage());
-      return;
+      context.error(e.getMessage());
+    } finally {
+      job.setStatus(status);
+      try {
+        sample.stop(
+            Timer.builder("frontiers.jobs.run")
+                .description("Time jobs take to run")
+                .tag("type", job.getJobType())
+                .tag("status", job.getStatus())
+                .register(meterRegistry));
+        context.flush();
+      } catch (RuntimeException e) {
+        log.warn("Could not save the log of job {}", job.getId(), e);
+      } finally {
+        finish(job, key);
+      }
     }
+  }
 
-    job.setStatus("complete");
-    jobsRepository.save(job);
+  private void finish(Job job, CourseJobKey key) {
+    try {
+      jobsRepository.save(job);
+    } catch (RuntimeException e) {
+      log.warn("Could not save the final status of job {}", job.getId(), e);
+    } finally {
+      if (key != null) {
+        activeCourseJobs.remove(key, job);
+      }
+      jobEventBroadcaster.jobFinished(job);
+    }
   }
 
-  public String getJobLogs(Long jobId) {
+  /**
+   * Opens a Server-Sent Events stream of a job's log lines and status changes.
+   *
+   * @param job the job to follow
+   * @param lastEventId seq of the last log line the client has already received, or null
+   * @return the event stream
+   */
+  public SseEmitter streamJob(Job job, Integer lastEventId) {
+    return jobEventBroadcaster.subscribe(job, lastEventId);
+  }
+
+  /**
+   * Returns part of a job's log, one line per log message.
+   *
+   * @param jobId id of the job
+   * @param offset number of lines to skip
+   * @param limit maximum number of lines to return, or null for all remaining lines
+   * @return the requested lines joined with newlines
+   */
+  public String getJobLogs(Long jobId, int offset, Integer limit) {
     Job job =
         jobsRepository
             .findById(jobId)
             .orElseThrow(() -> new IllegalArgumentException("Job not found"));
 
-    String log = job.getLog();
-    return log != null ? log : "";
+    List<JobLogLine> lines =
+        jobLogLineRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            jobId, offset, limit == null ? Limit.unlimited() : Limit.of(limit));
+    if (lines.isEmpty() && offset == 0 && job.getLog() != null) {
+      // jobs that ran before logs were kept in job_log_line
+      return job.getLog();
+    }
+    return JobLogLine.toText(lines);
   }
 }
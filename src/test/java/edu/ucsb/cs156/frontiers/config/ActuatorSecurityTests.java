@@ -0,0 +1,47 @@
+package edu.ucsb.cs156.frontiers.config;
+
+import edu.ucsb.cs156.frontiers.ControllerTestCase;
+import edu.ucsb.cs156.frontiers.controllers.UserInfoController;
+import edu.ucsb.cs156.frontiers.repositories.UserRepository;
+import edu.ucsb.cs156.frontiers.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Checks that only admins get past the security filter to the actuator endpoints. The endpoints themselves are not
+ * part of this slice, so an admin's request ends in a 404.
+ */
+@WebMvcTest(controllers = UserInfoController.class)
+@Import(TestConfig.class)
+public class ActuatorSecurityTests extends ControllerTestCase {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Test
+  public void actuator__logged_out() throws Exception {
+    mockMvc.perform(get("/actuator/prometheus"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void actuator__user_logged_in() throws Exception {
+    mockMvc.perform(get("/actuator/metrics"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void actuator__admin_logged_in() throws Exception {
+    mockMvc.perform(get("/actuator/mappings"))
+        .andExpect(status().is(404));
+  }
+}
@@ -7,24 +7,17 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-import java.io.OutputStreamWriter;
+import java.io.IOException;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
-import com.opencsv.bean.StatefulBeanToCsv;
-import com.opencsv.bean.StatefulBeanToCsvBuilder;
-import com.opencsv.exceptions.CsvDataTypeMismatchException;
-import edu.ucsb.cs156.frontiers.entities.RosterStudent;
 import edu.ucsb.cs156.frontiers.enums.OrgStatus;
 import edu.ucsb.cs156.frontiers.enums.RosterStatus;
 import edu.ucsb.cs156.frontiers.models.RosterStudentDTO;
 import org.junit.jupiter.api.Test;
 import org.mockito.Answers;
-import org.mockito.Mock;
-import org.mockito.MockedConstruction;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -52,9 +45,6 @@ public class CSVDownloadsControllerTests extends ControllerTestCase {
 
   @MockitoBean(answers = Answers.RETURNS_MOCKS) CourseRepository courseRepository;
 
-  @Mock(answer = Answers.CALLS_REAL_METHODS)
-  StatefulBeanToCsv<RosterStudentDTO> csvWriter;
-
   @Autowired
   ObjectMapper objectMapper;
 
@@ -95,10 +85,8 @@ public class CSVDownloadsControllerTests extends ControllerTestCase {
 
     Course course = Course.builder().id(1L).build();
     doReturn(Optional.of(course)).when(courseRepository).findById(eq(1L));
-    doReturn(List.of()).when(rosterStudentDTOService).getRosterStudentDTOs(eq(1L));
-    doReturn(csvWriter).when(rosterStudentDTOService).getStatefulBeanToCSV(any());
-
-    doThrow(new CsvDataTypeMismatchException()).when(csvWriter).write(anyList());
+    doThrow(new IOException("Error writing CSV file: bad field"))
+        .when(rosterStudentDTOService).writeRosterStudentsCsv(eq(1L), any(Writer.class));
 
     // act
 
@@ -143,8 +131,11 @@ public class CSVDownloadsControllerTests extends ControllerTestCase {
             .build();
 
     doReturn(Optional.of(course)).when(courseRepository).findById(eq(1L));
-    doReturn(List.of(rosterStudentDTO)).when(rosterStudentDTOService).getRosterStudentDTOs(eq(1L));
-    
+    doAnswer(invocation -> {
+      Writer writer = invocation.getArgument(1);
+      rosterStudentDTOService.getStatefulBeanToCSV(writer).write(rosterStudentDTO);
+      return null;
+    }).when(rosterStudentDTOService).writeRosterStudentsCsv(eq(1L), any(Writer.class));
 
 
     String expectedResponse =  """
@@ -158,8 +149,7 @@ public class CSVDownloadsControllerTests extends ControllerTestCase {
             .andExpect(status().isOk())
             .andReturn();
 
-    verify(rosterStudentDTOService, times(1)).getRosterStudentDTOs(eq(1L));
-    verify(rosterStudentDTOService, times(1)).getStatefulBeanToCSV(any());
+    verify(rosterStudentDTOService, times(1)).writeRosterStudentsCsv(eq(1L), any(Writer.class));
 
     assertEquals(expectedResponse, response.getResponse().getContentAsString());
   }
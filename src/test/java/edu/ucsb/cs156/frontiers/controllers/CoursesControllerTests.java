@@ -5,6 +5,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -16,7 +17,6 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -294,25 +294,25 @@ public class CoursesControllerTests extends ControllerTestCase {
                 .school("UCSB")
                 .build();
 
-        RosterStudent student1 = RosterStudent.builder()
+        RosterStudentDTO student1 = RosterStudentDTO.builder()
                 .id(1L)
+                .courseId(course.getId())
                 .firstName("Chris")
                 .lastName("Gaucho")
                 .email("cgaucho@ucsb.edu")
-                .course(course)
                 .build();
 
-        RosterStudent student2 = RosterStudent.builder()
+        RosterStudentDTO student2 = RosterStudentDTO.builder()
                 .id(2L)
+                .courseId(course.getId())
                 .firstName("Fred")
                 .lastName("Student")
                 .email("fred@ucsb.edu")
-                .course(course)
                 .build();
 
-        List<RosterStudent> students = List.of(student1, student2);
+        List<RosterStudentDTO> students = List.of(student1, student2);
         
-        when(rosterStudentRepository.findByCourseId(courseId)).thenReturn(students);
+        when(rosterStudentRepository.findRosterStudentDTOsByCourseId(courseId)).thenReturn(students);
 
         // Act
         MvcResult response = mockMvc.perform(get("/api/courses/roster")
@@ -322,13 +322,10 @@ public class CoursesControllerTests extends ControllerTestCase {
 
         // Assert
         String responseString = response.getResponse().getContentAsString();
-        List<RosterStudentDTO> expectedDTOs = students.stream()
-                .map(RosterStudentDTO::from)
-                .collect(Collectors.toList());
-        
-        String expectedJson = mapper.writeValueAsString(expectedDTOs);
+        String expectedJson = mapper.writeValueAsString(students);
         assertEquals(expectedJson, responseString);
-        verify(rosterStudentRepository, times(1)).findByCourseId(courseId);
+        verify(rosterStudentRepository, times(1)).findRosterStudentDTOsByCourseId(courseId);
+        verify(rosterStudentRepository, never()).findByCourseId(any());
     }
     /**
      * Authenticated as STUDENT – expect HTTP 200 and correct JSON payload
@@ -3,6 +3,7 @@ package edu.ucsb.cs156.frontiers.controllers;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -10,34 +11,46 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import edu.ucsb.cs156.frontiers.ControllerTestCase;
 import edu.ucsb.cs156.frontiers.entities.Job;
+import edu.ucsb.cs156.frontiers.entities.JobLogLine;
 import edu.ucsb.cs156.frontiers.entities.User;
 import edu.ucsb.cs156.frontiers.jobs.UpdateAllJob;
+import edu.ucsb.cs156.frontiers.repositories.JobLogLineRepository;
 import edu.ucsb.cs156.frontiers.repositories.JobsRepository;
 import edu.ucsb.cs156.frontiers.repositories.UserRepository;
 import edu.ucsb.cs156.frontiers.services.UpdateUserService;
+import edu.ucsb.cs156.frontiers.services.jobs.JobEventBroadcaster;
+import edu.ucsb.cs156.frontiers.services.jobs.JobExecutor;
 import edu.ucsb.cs156.frontiers.services.jobs.JobService;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 import lombok.extern.slf4j.Slf4j;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
 import org.springframework.test.web.servlet.MvcResult;
 
 /**
@@ -53,19 +66,25 @@ import org.springframework.test.web.servlet.MvcResult;
 
 @Slf4j
 @WebMvcTest(controllers = JobsController.class)
-@Import(JobService.class)
+@Import({JobService.class, JobEventBroadcaster.class, JobExecutor.class, SimpleMeterRegistry.class})
 @AutoConfigureDataJpa
 public class JobsControllerDetailedTests extends ControllerTestCase {
 
   @MockitoBean
   JobsRepository jobsRepository;
 
+  @MockitoBean
+  JobLogLineRepository jobLogLineRepository;
+
   @MockitoBean
   UserRepository userRepository;
 
   @MockitoBean
   UpdateUserService updateUserService; // This will be used in the UpdateAllJob to call the GithubSignInService
 
+  @MockitoSpyBean
+  JobExecutor jobExecutor;
+
   @Autowired
   JobService jobService;
 
@@ -238,34 +257,16 @@ public class JobsControllerDetailedTests extends ControllerTestCase {
     assertEquals(expectedJson, responseString);
   }
 
+  private String savedLog() {
+    ArgumentCaptor<List<JobLogLine>> captor = ArgumentCaptor.captor();
+    verify(jobLogLineRepository, atLeastOnce()).saveAll(captor.capture());
+    return JobLogLine.toText(captor.getAllValues().stream().flatMap(List::stream).toList());
+  }
+
   @WithMockUser(roles = { "ADMIN" })
   @Test
   public void admin_can_launch_test_job() throws Exception {
 
-    // arrange
-
-    User user = currentUserService.getUser();
-
-    Job jobStarted = Job.builder()
-        .id(0L)
-        .createdBy(user)
-        .createdAt(null)
-        .updatedAt(null)
-        .status("running")
-        .log("Hello World! from test job!")
-        .build();
-
-    Job jobCompleted = Job.builder()
-        .id(0L)
-        .createdBy(user)
-        .createdAt(null)
-        .updatedAt(null)
-        .status("complete")
-        .log("Hello World! from test job!\nGoodbye from test job!")
-        .build();
-
-    when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobCompleted);
-
     // act
     MvcResult response = mockMvc
         .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=2000").with(csrf()))
@@ -276,62 +277,118 @@ public class JobsControllerDetailedTests extends ControllerTestCase {
     String responseString = response.getResponse().getContentAsString();
     Job jobReturned = objectMapper.readValue(responseString, Job.class);
 
-    assertEquals("running", jobReturned.getStatus());
+    MatcherAssert.assertThat(jobReturned.getStatus(), Matchers.anyOf(Matchers.is("queued"), Matchers.is("running")));
+    assertEquals("TestJob", jobReturned.getJobType());
 
-    await()
-        .atMost(1, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobStarted)));
+    ArgumentCaptor<Job> jobCaptor = ArgumentCaptor.forClass(Job.class);
     await()
         .atMost(10, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(4)).save(eq(jobCompleted)));
+        .untilAsserted(() -> verify(jobsRepository, times(3)).save(jobCaptor.capture()));
+    assertEquals("complete", jobCaptor.getValue().getStatus());
+    assertNotNull(jobCaptor.getValue().getStartedAt());
+    assertEquals("Hello World! from test job!\nGoodbye from test job!", savedLog());
   }
 
   @WithMockUser(roles = { "ADMIN" })
   @Test
   public void admin_can_launch_test_job_that_fails() throws Exception {
 
-    // arrange
+    // act
+    MvcResult response = mockMvc
+        .perform(post("/api/jobs/launch/testjob?fail=true&sleepMs=100").with(csrf()))
+        .andExpect(status().isOk())
+        .andReturn();
 
-    User user = currentUserService.getUser();
+    String responseString = response.getResponse().getContentAsString();
+    Job jobReturned = objectMapper.readValue(responseString, Job.class);
 
-    Job jobStarted = Job.builder()
-        .id(0L)
-        .createdBy(user)
-        .createdAt(null)
-        .updatedAt(null)
-        .status("running")
-        .log("Hello World! from test job!")
-        .build();
+    MatcherAssert.assertThat(jobReturned.getStatus(), Matchers.anyOf(Matchers.is("queued"), Matchers.is("running")));
+    assertEquals("TestJob", jobReturned.getJobType());
 
-    Job jobFailed = Job.builder()
-        .id(0L)
-        .createdBy(user)
-        .createdAt(null)
-        .updatedAt(null)
-        .status("error")
-        .log("Hello World! from test job!\nFail!")
-        .build();
+    ArgumentCaptor<Job> jobCaptor = ArgumentCaptor.forClass(Job.class);
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(() -> verify(jobsRepository, times(3)).save(jobCaptor.capture()));
+    assertEquals("error", jobCaptor.getValue().getStatus());
+    assertEquals("Hello World! from test job!\nFail!", savedLog());
+  }
 
-    when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobFailed);
+  @WithMockUser(roles = { "ADMIN" })
+  @Test
+  public void launching_a_job_when_the_queue_is_full_returns_service_unavailable() throws Exception {
+    doThrow(new RejectedExecutionException()).when(jobExecutor).submit(any(Runnable.class));
 
-    // act
     MvcResult response = mockMvc
-        .perform(post("/api/jobs/launch/testjob?fail=true&sleepMs=4000").with(csrf()))
+        .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=0").with(csrf()))
+        .andExpect(status().isServiceUnavailable())
+        .andReturn();
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("JobQueueFullException", json.get("type"));
+    assertEquals("Too many jobs are waiting to run; TestJob was not started. Please try again later.", json.get("message"));
+    ArgumentCaptor<Job> jobCaptor = ArgumentCaptor.forClass(Job.class);
+    verify(jobsRepository, times(2)).save(jobCaptor.capture());
+    assertEquals("error", jobCaptor.getValue().getStatus());
+  }
+
+  @WithMockUser(roles = { "ADMIN" })
+  @Test
+  public void test_getJobLogs_admin_can_page_through_log_lines() throws Exception {
+    // Arrange
+    Long jobId = 3L;
+    Job job = Job.builder().id(jobId).build();
+    when(jobsRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogLineRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(3L, 10, Limit.of(2)))
+        .thenReturn(List.of(
+            JobLogLine.builder().jobId(3L).seq(10).message("line 10").build(),
+            JobLogLine.builder().jobId(3L).seq(11).message("line 11").build()));
+
+    // Act & Assert
+    mockMvc
+        .perform(get("/api/jobs/logs/{id}", jobId).param("offset", "10").param("limit", "2"))
         .andExpect(status().isOk())
+        .andExpect(content().string("line 10\nline 11"));
+  }
+
+  @WithMockUser(roles = { "ADMIN" })
+  @Test
+  public void admin_can_stream_a_finished_job() throws Exception {
+    // Arrange
+    Job job = Job.builder().id(4L).status("complete").build();
+    when(jobsRepository.findById(4L)).thenReturn(Optional.of(job));
+    when(jobLogLineRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(4L, 6, Limit.unlimited()))
+        .thenReturn(List.of(JobLogLine.builder().jobId(4L).seq(6).message("line 6").build()));
+
+    // Act
+    MvcResult started = mockMvc
+        .perform(get("/api/jobs/stream/{id}", 4L).header("Last-Event-ID", "5"))
+        .andExpect(request().asyncStarted())
         .andReturn();
 
-    String responseString = response.getResponse().getContentAsString();
-    Job jobReturned = objectMapper.readValue(responseString, Job.class);
+    // Assert
+    String body = mockMvc.perform(asyncDispatch(started))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsString();
+    MatcherAssert.assertThat(body, Matchers.containsString("id:6\nevent:log\n"));
+    MatcherAssert.assertThat(body, Matchers.containsString("\"message\":\"line 6\""));
+    MatcherAssert.assertThat(body, Matchers.containsString("event:status\ndata:complete\n"));
+  }
 
-    assertEquals("running", jobReturned.getStatus());
+  @WithMockUser(roles = { "ADMIN" })
+  @Test
+  public void stream_returns_not_found_for_missing_job() throws Exception {
+    when(jobsRepository.findById(eq(8L))).thenReturn(Optional.empty());
 
-    await()
-        .atMost(1, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobStarted)));
+    MvcResult response = mockMvc.perform(get("/api/jobs/stream/{id}", 8L)).andExpect(status().isNotFound()).andReturn();
 
-    await()
-        .atMost(10, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(3)).save(eq(jobFailed)));
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Job with id 8 not found", json.get("message"));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void regular_user_cannot_stream_a_job() throws Exception {
+    mockMvc.perform(get("/api/jobs/stream/{id}", 4L)).andExpect(status().isForbidden());
   }
 
   @WithMockUser(roles = { "ADMIN" })
@@ -361,7 +418,7 @@ public class JobsControllerDetailedTests extends ControllerTestCase {
 
     doReturn(jobStarted, jobRunning).when(jobsRepository).save(any(Job.class));
 
-    doNothing().when(updateUserService).attachRosterStudentsAllUsers();
+    doReturn(0).when(updateUserService).attachRosterStudentsAllUsers();
 
     // act
     MvcResult response = mockMvc
@@ -372,6 +429,6 @@ public class JobsControllerDetailedTests extends ControllerTestCase {
     // assert
     String responseString = response.getResponse().getContentAsString();
     Job jobReturned = objectMapper.readValue(responseString, Job.class);
-    MatcherAssert.assertThat(jobReturned.getStatus(), Matchers.anyOf(Matchers.is("completed"), Matchers.is("running")));
+    MatcherAssert.assertThat(jobReturned.getStatus(), Matchers.anyOf(Matchers.is("queued"), Matchers.is("running"), Matchers.is("complete")));
   }
 }
\ No newline at end of file
@@ -53,7 +53,7 @@ public class RepositoryControllerTests extends ControllerTestCase {
     @WithMockUser(roles = {"ADMIN"})
     public void not_the_creator() throws Exception {
         Course course = Course.builder().creator(User.builder().build()).build();
-        doReturn(Optional.of(course)).when(courseRepository).findById(eq(2L));
+        doReturn(Optional.of(course)).when(courseRepository).findWithRosterStudentsById(eq(2L));
         MvcResult response = mockMvc.perform(post("/api/repos/createRepos")
                 .with(csrf())
                 .param("courseId", "2")
@@ -66,7 +66,7 @@ public class RepositoryControllerTests extends ControllerTestCase {
     @WithMockUser(roles = {"ADMIN"})
     public void not_registered_org() throws Exception {
         Course course = Course.builder().courseName("course").creator(currentUserService.getUser()).build();
-        doReturn(Optional.of(course)).when(courseRepository).findById(eq(2L));
+        doReturn(Optional.of(course)).when(courseRepository).findWithRosterStudentsById(eq(2L));
         MvcResult response = mockMvc.perform(post("/api/repos/createRepos")
                         .with(csrf())
                         .param("courseId", "2")
@@ -82,7 +82,7 @@ public class RepositoryControllerTests extends ControllerTestCase {
     @WithMockUser(roles = {"ADMIN"})
     public void just_no_install_id() throws Exception {
         Course course = Course.builder().courseName("course").orgName("ucsb-cs156").creator(currentUserService.getUser()).build();
-        doReturn(Optional.of(course)).when(courseRepository).findById(eq(2L));
+        doReturn(Optional.of(course)).when(courseRepository).findWithRosterStudentsById(eq(2L));
         MvcResult response = mockMvc.perform(post("/api/repos/createRepos")
                         .with(csrf())
                         .param("courseId", "2")
@@ -98,9 +98,9 @@ public class RepositoryControllerTests extends ControllerTestCase {
     @WithMockUser(roles = {"ADMIN"})
     public void job_actually_fires() throws Exception {
         Course course = Course.builder().id(2L).orgName("ucsb-cs156").installationId("1234").courseName("course").creator(currentUserService.getUser()).build();
-        doReturn(Optional.of(course)).when(courseRepository).findById(eq(2L));
+        doReturn(Optional.of(course)).when(courseRepository).findWithRosterStudentsById(eq(2L));
         Job job = Job.builder().status("processing").build();
-        doReturn(job).when(service).runAsJob(any(CreateStudentRepositoriesJob.class));
+        doReturn(job).when(service).runAsJob(any(CreateStudentRepositoriesJob.class), eq(2L));
         MvcResult response = mockMvc.perform(post("/api/repos/createRepos")
                         .with(csrf())
                         .param("courseId", "2")
@@ -117,7 +117,7 @@ public class RepositoryControllerTests extends ControllerTestCase {
     @WithMockUser(roles = {"ADMIN"})
     public void notFound() throws Exception {
         Course course = Course.builder().courseName("course").creator(currentUserService.getUser()).build();
-        doReturn(Optional.empty()).when(courseRepository).findById(eq(2L));
+        doReturn(Optional.empty()).when(courseRepository).findWithRosterStudentsById(eq(2L));
         MvcResult response = mockMvc.perform(post("/api/repos/createRepos")
                         .with(csrf())
                         .param("courseId", "2")
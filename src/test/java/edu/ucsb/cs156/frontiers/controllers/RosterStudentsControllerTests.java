@@ -3,9 +3,13 @@ package edu.ucsb.cs156.frontiers.controllers;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.frontiers.entities.Job;
 import edu.ucsb.cs156.frontiers.entities.User;
+import edu.ucsb.cs156.frontiers.errors.JobAlreadyRunningException;
+import edu.ucsb.cs156.frontiers.errors.JobQueueFullException;
+import edu.ucsb.cs156.frontiers.jobs.RosterImportJob;
 import edu.ucsb.cs156.frontiers.jobs.UpdateOrgMembershipJob;
 import edu.ucsb.cs156.frontiers.models.RosterStudentDTO;
 import edu.ucsb.cs156.frontiers.services.OrganizationMemberService;
+import edu.ucsb.cs156.frontiers.services.RosterImportService;
 import edu.ucsb.cs156.frontiers.services.jobs.JobService;
 
 import org.apache.coyote.BadRequestException;
@@ -17,6 +21,7 @@ import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MvcResult;
 
 import edu.ucsb.cs156.frontiers.ControllerTestCase;
@@ -37,13 +42,21 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Collection;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
@@ -72,6 +85,9 @@ public class RosterStudentsControllerTests extends ControllerTestCase {
         @MockitoBean
         private UpdateUserService updateUserService;
 
+        @MockitoBean
+        private RosterImportService rosterImportService;
+
         @MockitoBean
         private OrganizationMemberService organizationMemberService;
 
@@ -143,6 +159,39 @@ public class RosterStudentsControllerTests extends ControllerTestCase {
 
         }
 
+        /**
+         * Test that you cannot post a roster student whose student number is already
+         * used in the course
+         * 
+         * @throws Exception
+         */
+
+        @Test
+        @WithMockUser(roles = { "ADMIN" })
+        public void test_AdminCannotPostRosterStudentWithDuplicateStudentId() throws Exception {
+                when(courseRepository.findById(eq(1L))).thenReturn(Optional.of(course1));
+                when(rosterStudentRepository.findByCourseIdAndStudentId(eq(1L), eq("A123456")))
+                                .thenReturn(Optional.of(rs1));
+
+                // act
+
+                mockMvc.perform(post("/api/rosterstudents/post")
+                                .with(csrf())
+                                .param("studentId", "A123456")
+                                .param("firstName", "Chris")
+                                .param("lastName", "Gaucho")
+                                .param("email", "cgaucho@example.org")
+                                .param("courseId", "1"))
+                                .andExpect(status().isBadRequest())
+                                .andExpect(jsonPath("$.message").value(
+                                                "Student number 'A123456' is already used in course 1"));
+
+                // assert
+
+                verify(rosterStudentRepository, never()).save(any(RosterStudent.class));
+
+        }
+
         /**
          * Test that you cannot post a single roster student for a course that does not
          * exist
@@ -250,92 +299,20 @@ public class RosterStudentsControllerTests extends ControllerTestCase {
 
                 // arrange
 
-                RosterStudent rs1BeforeWithId = RosterStudent.builder()
-                                .id(1L)
-                                .firstName("Chris")
-                                .lastName("Gaucho")
-                                .studentId("A123456")
-                                .email("cgaucho@ucsb.edu")
-                                .course(course1)
-                                .rosterStatus(RosterStatus.MANUAL)
-                                .orgStatus(OrgStatus.NONE)
-                                .build();
-
-                RosterStudent rs1AfterWithId = RosterStudent.builder()
-                                .id(1L)
-                                .firstName("CHRIS FAKE")
-                                .lastName("GAUCHO")
-                                .studentId("A123456")
-                                .email("cgaucho@ucsb.edu")
-                                .course(course1)
-                                .rosterStatus(RosterStatus.ROSTER)
-                                .orgStatus(OrgStatus.NONE)
-                                .build();
-
-                RosterStudent rs2BeforeWithId = RosterStudent.builder()
-                                .id(2L)
-                                .firstName("Lauren")
-                                .lastName("Del Playa")
-                                .studentId("A987654")
-                                .email("ldelplaya@umail.ucsb.edu")
-                                .course(course1)
-                                .rosterStatus(RosterStatus.ROSTER)
-                                .orgStatus(OrgStatus.NONE)
-                                .build();
-
-                RosterStudent rs2AfterWithId = RosterStudent.builder()
-                                .id(2L)
-                                .course(course1)
-                                .firstName("LAUREN")
-                                .lastName("DEL PLAYA")
-                                .email("ldelplaya@ucsb.edu")
-                                .studentId("A987654")
-                                .rosterStatus(RosterStatus.ROSTER)
-                                .orgStatus(OrgStatus.NONE)
-                                .build();
-
-                RosterStudent rs3NoId = RosterStudent.builder()
-                                .course(course1)
-                                .firstName("SABADO")
-                                .lastName("TARDE")
-                                .email("sabadotarde@ucsb.edu")
-                                .studentId("1234567")
-                                .rosterStatus(RosterStatus.ROSTER)
-                                .orgStatus(OrgStatus.NONE)
-                                .build();
-
-                RosterStudent rs3WithId = RosterStudent.builder()
-                                .id(3L)
-                                .course(course1)
-                                .firstName("SABADO")
-                                .lastName("TARDE")
-                                .email("sabadotarde@ucsb.edu")
-                                .studentId("1234567")
-                                .rosterStatus(RosterStatus.ROSTER)
-                                .orgStatus(OrgStatus.NONE)
-                                .build();
-
                 MockMultipartFile file = new MockMultipartFile(
                                 "file",
                                 "egrades.csv",
                                 MediaType.TEXT_PLAIN_VALUE,
-                                sampleCSVContents.getBytes());
+                                sampleCSVContents.getBytes(StandardCharsets.UTF_8));
 
                 when(courseRepository.findById(eq(1L))).thenReturn(Optional.of(course1));
-                when(rosterStudentRepository.findByCourseIdAndStudentId(eq(1L), eq("A123456")))
-                                .thenReturn(Optional.of(rs1BeforeWithId));
-                when(rosterStudentRepository.findByCourseIdAndStudentId(eq(1L), eq("A987654")))
-                                .thenReturn(Optional.of(rs2BeforeWithId));
-                when(rosterStudentRepository.findByCourseIdAndStudentId(eq(1L), eq("1234567")))
-                                .thenReturn(Optional.empty());
-
-                when(rosterStudentRepository.save(eq(rs1AfterWithId))).thenReturn(rs1AfterWithId);
-                when(rosterStudentRepository.save(eq(rs2AfterWithId))).thenReturn(rs2AfterWithId);
-                when(rosterStudentRepository.save(eq(rs3NoId))).thenReturn(rs3WithId);
-
-                doNothing().when(updateUserService).attachUserToRosterStudent(eq(rs1AfterWithId));               
-                doNothing().when(updateUserService).attachUserToRosterStudent(eq(rs2AfterWithId));
-                doNothing().when(updateUserService).attachUserToRosterStudent(eq(rs3WithId));
+                when(rosterImportService.importEgrades(eq(course1), any(InputStream.class)))
+                                .thenAnswer(invocation -> {
+                                        InputStream uploaded = invocation.getArgument(1);
+                                        assertEquals(sampleCSVContents,
+                                                        new String(uploaded.readAllBytes(), StandardCharsets.UTF_8));
+                                        return new RosterImportService.ImportResult(1, 2, 0, List.of());
+                                });
 
                 // act
 
@@ -349,23 +326,245 @@ public class RosterStudentsControllerTests extends ControllerTestCase {
                 // assert
 
                 verify(courseRepository, atLeastOnce()).findById(eq(1L));
-                verify(rosterStudentRepository, atLeastOnce()).findByCourseIdAndStudentId(eq(1L), eq("A123456"));
-                verify(rosterStudentRepository, atLeastOnce()).findByCourseIdAndStudentId(eq(1L), eq("A987654"));
-                verify(rosterStudentRepository, atLeastOnce()).findByCourseIdAndStudentId(eq(1L), eq("1234567"));
-                verify(rosterStudentRepository, atLeastOnce()).save(eq(rs1AfterWithId));
-                verify(rosterStudentRepository, atLeastOnce()).save(eq(rs2AfterWithId));
-                verify(rosterStudentRepository, atLeastOnce()).save(eq(rs3NoId));
+                verify(rosterImportService, times(1)).importEgrades(eq(course1), any(InputStream.class));
+
+                String responseString = response.getResponse().getContentAsString();
+                Map<String, Object> expectedMap = Map.of(
+                                "filename", "egrades.csv",
+                                "message", "Inserted 1 new students, Updated 2 students",
+                                "errors", List.of());
+                assertEquals(expectedMap, mapper.readValue(responseString, Map.class));
+
+        }
 
-                verify(updateUserService, times(1)).attachUserToRosterStudent(eq(rs1AfterWithId));
-                verify(updateUserService, times(1)).attachUserToRosterStudent(eq(rs2AfterWithId));
-                verify(updateUserService, times(1)).attachUserToRosterStudent(eq(rs3WithId));
+        /** Test that rows the import skipped are reported back */
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void upload_reports_rows_that_were_skipped() throws Exception {
+
+                // arrange
+
+                MockMultipartFile file = new MockMultipartFile(
+                                "file",
+                                "egrades.csv",
+                                MediaType.TEXT_PLAIN_VALUE,
+                                sampleCSVContents.getBytes(StandardCharsets.UTF_8));
+
+                when(courseRepository.findById(eq(1L))).thenReturn(Optional.of(course1));
+                when(rosterImportService.importEgrades(eq(course1), any(InputStream.class)))
+                                .thenReturn(new RosterImportService.ImportResult(2, 0, 1,
+                                                List.of("Line 5: missing Perm #")));
+
+                // act
+
+                MvcResult response = mockMvc
+                                .perform(multipart("/api/rosterstudents/upload/egrades")
+                                                .file(file)
+                                                .param("courseId", "1")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
 
                 String responseString = response.getResponse().getContentAsString();
-                Map<String, String> expectedMap = Map.of(
+                Map<String, Object> expectedMap = Map.of(
                                 "filename", "egrades.csv",
-                                "message", "Inserted 1 new students, Updated 2 students");
-                String expectedJson = mapper.writeValueAsString(expectedMap);
-                assertEquals(expectedJson, responseString);
+                                "message", "Inserted 2 new students, Updated 0 students, Skipped 1 invalid rows",
+                                "errors", List.of("Line 5: missing Perm #"));
+                assertEquals(expectedMap, mapper.readValue(responseString, Map.class));
+
+        }
+
+        /** Test that an upload can be imported by a background job */
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_can_upload_students_to_be_imported_by_a_job() throws Exception {
+
+                // arrange
+
+                MockMultipartFile file = new MockMultipartFile(
+                                "file",
+                                "egrades.csv",
+                                MediaType.TEXT_PLAIN_VALUE,
+                                sampleCSVContents.getBytes(StandardCharsets.UTF_8));
+
+                Job job = Job.builder().id(17L).status("queued").build();
+                List<RosterImportJob> launched = new ArrayList<>();
+                when(courseRepository.findById(eq(1L))).thenReturn(Optional.of(course1));
+                when(service.runAsNewJob(any(RosterImportJob.class), eq(1L))).thenAnswer(invocation -> {
+                        launched.add(invocation.getArgument(0));
+                        return job;
+                });
+
+                // act
+
+                MvcResult response = mockMvc
+                                .perform(multipart("/api/rosterstudents/upload/egrades/async")
+                                                .file(file)
+                                                .param("courseId", "1")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                assertEquals(objectMapper.writeValueAsString(job), response.getResponse().getContentAsString());
+                assertEquals(1, launched.size());
+                assertEquals(course1, ReflectionTestUtils.getField(launched.get(0), "course"));
+                assertEquals(rosterImportService, ReflectionTestUtils.getField(launched.get(0), "rosterImportService"));
+                Path egradesFile = (Path) ReflectionTestUtils.getField(launched.get(0), "egradesFile");
+                assertEquals(sampleCSVContents, Files.readString(egradesFile, StandardCharsets.UTF_8));
+                Files.delete(egradesFile);
+                verify(rosterImportService, never()).importEgrades(any(), any());
+
+        }
+
+        /** Test that the spooled upload is removed if the job cannot be started */
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void spooled_upload_is_deleted_when_the_job_queue_is_full() throws Exception {
+
+                // arrange
+
+                MockMultipartFile file = new MockMultipartFile(
+                                "file",
+                                "egrades.csv",
+                                MediaType.TEXT_PLAIN_VALUE,
+                                sampleCSVContents.getBytes(StandardCharsets.UTF_8));
+
+                List<Path> spooled = new ArrayList<>();
+                when(courseRepository.findById(eq(1L))).thenReturn(Optional.of(course1));
+                when(service.runAsNewJob(any(RosterImportJob.class), eq(1L))).thenAnswer(invocation -> {
+                        spooled.add((Path) ReflectionTestUtils.getField(invocation.<RosterImportJob>getArgument(0), "egradesFile"));
+                        throw new JobQueueFullException("RosterImportJob");
+                });
+
+                // act
+
+                MvcResult response = mockMvc
+                                .perform(multipart("/api/rosterstudents/upload/egrades/async")
+                                                .file(file)
+                                                .param("courseId", "1")
+                                                .with(csrf()))
+                                .andExpect(status().isServiceUnavailable()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("JobQueueFullException", json.get("type"));
+                assertEquals(1, spooled.size());
+                assertFalse(Files.exists(spooled.get(0)));
+
+        }
+
+        /** Test that a second upload is refused, and its spooled file removed, while an import for the course is running */
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void upload_is_refused_and_deleted_while_an_import_is_running() throws Exception {
+
+                // arrange
+
+                MockMultipartFile file = new MockMultipartFile(
+                                "file",
+                                "egrades.csv",
+                                MediaType.TEXT_PLAIN_VALUE,
+                                sampleCSVContents.getBytes(StandardCharsets.UTF_8));
+
+                List<Path> spooled = new ArrayList<>();
+                when(courseRepository.findById(eq(1L))).thenReturn(Optional.of(course1));
+                when(service.runAsNewJob(any(RosterImportJob.class), eq(1L))).thenAnswer(invocation -> {
+                        spooled.add((Path) ReflectionTestUtils.getField(invocation.<RosterImportJob>getArgument(0), "egradesFile"));
+                        throw new JobAlreadyRunningException("RosterImportJob", 1L);
+                });
+
+                // act
+
+                MvcResult response = mockMvc
+                                .perform(multipart("/api/rosterstudents/upload/egrades/async")
+                                                .file(file)
+                                                .param("courseId", "1")
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("JobAlreadyRunningException", json.get("type"));
+                assertEquals(1, spooled.size());
+                assertFalse(Files.exists(spooled.get(0)));
+
+        }
+
+        /** Test that no job is started if the upload cannot be spooled */
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void no_job_is_started_when_the_upload_cannot_be_spooled() throws Exception {
+
+                // arrange
+
+                MockMultipartFile file = new MockMultipartFile(
+                                "file",
+                                "egrades.csv",
+                                MediaType.TEXT_PLAIN_VALUE,
+                                sampleCSVContents.getBytes(StandardCharsets.UTF_8)) {
+                        @Override
+                        public void transferTo(Path dest) throws IOException {
+                                throw new IOException("No space left on device");
+                        }
+                };
+
+                when(courseRepository.findById(eq(1L))).thenReturn(Optional.of(course1));
+
+                // act
+
+                IOException thrown = assertThrows(IOException.class, () -> mockMvc
+                                .perform(multipart("/api/rosterstudents/upload/egrades/async")
+                                                .file(file)
+                                                .param("courseId", "1")
+                                                .with(csrf())));
+
+                // assert
+
+                assertEquals("No space left on device", thrown.getMessage());
+                verify(service, never()).runAsNewJob(any(), anyLong());
+
+        }
+
+        /** Test that you cannot upload a roster for a job for a course that does not exist */
+
+        @WithMockUser(roles = { "ADMIN" })
+        @Test
+        public void admin_cannot_upload_students_to_be_imported_by_a_job_for_a_course_that_does_not_exist()
+                        throws Exception {
+
+                // arrange
+
+                MockMultipartFile file = new MockMultipartFile(
+                                "file",
+                                "egrades.csv",
+                                MediaType.TEXT_PLAIN_VALUE,
+                                sampleCSVContents.getBytes(StandardCharsets.UTF_8));
+
+                when(courseRepository.findById(eq(1L))).thenReturn(Optional.empty());
+
+                // act
+
+                MvcResult response = mockMvc
+                                .perform(multipart("/api/rosterstudents/upload/egrades/async")
+                                                .file(file)
+                                                .param("courseId", "1")
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("EntityNotFoundException", json.get("type"));
+                verify(service, never()).runAsNewJob(any(), anyLong());
 
         }
 
@@ -441,7 +640,7 @@ public class RosterStudentsControllerTests extends ControllerTestCase {
                 Course course = Course.builder().id(2L).orgName("ucsb-cs156").installationId("1234").courseName("course").creator(currentUserService.getUser()).build();
                 doReturn(Optional.of(course)).when(courseRepository).findById(eq(2L));
                 Job job = Job.builder().status("processing").build();
-                doReturn(job).when(service).runAsJob(any(UpdateOrgMembershipJob.class));
+                doReturn(job).when(service).runAsJob(any(UpdateOrgMembershipJob.class), eq(2L));
                 MvcResult response = mockMvc.perform(post("/api/rosterstudents/updateCourseMembership")
                                 .with(csrf())
                                 .param("courseId", "2")
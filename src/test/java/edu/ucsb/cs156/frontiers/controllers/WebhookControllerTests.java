@@ -1,23 +1,20 @@
 package edu.ucsb.cs156.frontiers.controllers;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import edu.ucsb.cs156.frontiers.ControllerTestCase;
-import edu.ucsb.cs156.frontiers.entities.Course;
-import edu.ucsb.cs156.frontiers.entities.RosterStudent;
-import edu.ucsb.cs156.frontiers.entities.User;
-import edu.ucsb.cs156.frontiers.enums.OrgStatus;
-import edu.ucsb.cs156.frontiers.repositories.CourseRepository;
-import edu.ucsb.cs156.frontiers.repositories.RosterStudentRepository;
-import edu.ucsb.cs156.frontiers.repositories.UserRepository;
+import edu.ucsb.cs156.frontiers.services.WebhookInboxService;
+import edu.ucsb.cs156.frontiers.services.WebhookSignatureService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MvcResult;
 
-import java.util.Optional;
+import java.nio.charset.StandardCharsets;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -27,161 +24,108 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 public class WebhookControllerTests extends ControllerTestCase {
 
     @MockitoBean
-    RosterStudentRepository rosterStudentRepository;
+    WebhookInboxService webhookInboxService;
 
     @MockitoBean
-    CourseRepository  courseRepository;
+    WebhookSignatureService webhookSignatureService;
 
-    @Test
-    public void successfulWebhook() throws Exception {
-        Course course = Course.builder().installationId("1234").build();
-        RosterStudent student = RosterStudent.builder().githubLogin("testLogin").course(course).build();
-        RosterStudent updated = RosterStudent.builder().githubLogin("testLogin").course(course).orgStatus(OrgStatus.MEMBER).build();
-
-        doReturn(Optional.of(course)).when(courseRepository).findByInstallationId(contains("1234"));
-        doReturn(Optional.of(student)).when(rosterStudentRepository).findByCourseAndGithubLogin(eq(course), contains("testLogin"));
-        doReturn(updated).when(rosterStudentRepository).save(eq(updated));
-
-        String sendBody = """
-                {
-                "action" : "member_added",
-                "membership": {
-                    "user": {
-                        "login": "testLogin"
-                    }
-                },
-                "installation":{
-                    "id": "1234"
-                }
-                }
-                """;
+    private static final String SIGNATURE = "sha256=757107ea0eb2509fc211221cce984b8a37570b6d7586c22c46f4379c8b043e17";
 
-        MvcResult response = mockMvc.perform(post("/api/webhooks/github")
-                .content(sendBody)
-                .contentType(MediaType.APPLICATION_JSON))
-                .andExpect(status().isOk())
-                .andReturn();
-        verify(rosterStudentRepository, times(1)).findByCourseAndGithubLogin(eq(course), contains("testLogin"));
-        verify(courseRepository, times(1)).findByInstallationId(contains("1234"));
-        verify(rosterStudentRepository, times(1)).save(eq(updated));
-        String actualBody = response.getResponse().getContentAsString();
-        assertEquals(updated.toString(), actualBody);
+    private static final String SEND_BODY = """
+            {
+            "action" : "member_added",
+            "membership": {
+                "user": {
+                    "login": "testLogin"
+                }
+            },
+            "installation":{
+                "id": "1234"
+            }
+            }
+            """;
+
+    @BeforeEach
+    public void signatures_are_valid() throws Exception {
+        doReturn(true).when(webhookSignatureService).isValid(any(), eq(SIGNATURE));
     }
 
     @Test
-    public void noStudent() throws Exception {
-        Course course = Course.builder().installationId("1234").build();
-        doReturn(Optional.of(course)).when(courseRepository).findByInstallationId(contains("1234"));
-        doReturn(Optional.empty()).when(rosterStudentRepository).findByCourseAndGithubLogin(eq(course), contains("testLogin"));
-
-        String sendBody = """
-                {
-                "action" : "member_added",
-                "membership": {
-                    "user": {
-                        "login": "testLogin"
-                    }
-                },
-                "installation":{
-                    "id": "1234"
-                }
-                }
-                """;
+    public void delivery_is_queued() throws Exception {
+        doReturn(true).when(webhookInboxService).receive(eq("72d3162e-cc78-11e3-81ab-4c9367dc0958"), eq("organization"), any());
 
         MvcResult response = mockMvc.perform(post("/api/webhooks/github")
-                        .content(sendBody)
+                        .header("X-GitHub-Delivery", "72d3162e-cc78-11e3-81ab-4c9367dc0958")
+                        .header("X-GitHub-Event", "organization")
+                        .header("X-Hub-Signature-256", SIGNATURE)
+                        .content(SEND_BODY)
                         .contentType(MediaType.APPLICATION_JSON))
-                .andExpect(status().isOk())
+                .andExpect(status().isAccepted())
                 .andReturn();
-        verify(rosterStudentRepository, times(1)).findByCourseAndGithubLogin(eq(course), contains("testLogin"));
-        verify(courseRepository, times(1)).findByInstallationId(contains("1234"));
-        verify(rosterStudentRepository, times(0)).save(any());
-        String actualBody = response.getResponse().getContentAsString();
-        assertEquals("success", actualBody);
+
+        verify(webhookSignatureService, times(1)).isValid(SEND_BODY.getBytes(StandardCharsets.UTF_8), SIGNATURE);
+        JsonNode expectedPayload = mapper.readTree(SEND_BODY);
+        verify(webhookInboxService, times(1)).receive("72d3162e-cc78-11e3-81ab-4c9367dc0958", "organization", expectedPayload);
+        assertEquals("queued", response.getResponse().getContentAsString());
     }
 
     @Test
-    public void noCourse() throws Exception {
-        doReturn(Optional.empty()).when(courseRepository).findByInstallationId(contains("1234"));
-
-        String sendBody = """
-                {
-                "action" : "member_added",
-                "membership": {
-                    "user": {
-                        "login": "testLogin"
-                    }
-                },
-                "installation":{
-                    "id": "1234"
-                }
-                }
-                """;
+    public void redelivery_is_acknowledged_without_queueing_again() throws Exception {
+        doReturn(false).when(webhookInboxService).receive(eq("72d3162e-cc78-11e3-81ab-4c9367dc0958"), eq("organization"), any());
 
         MvcResult response = mockMvc.perform(post("/api/webhooks/github")
-                        .content(sendBody)
+                        .header("X-GitHub-Delivery", "72d3162e-cc78-11e3-81ab-4c9367dc0958")
+                        .header("X-GitHub-Event", "organization")
+                        .header("X-Hub-Signature-256", SIGNATURE)
+                        .content(SEND_BODY)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andReturn();
-        verify(rosterStudentRepository, times(0)).findByCourseAndGithubLogin(any(), any());
-        verify(courseRepository, times(1)).findByInstallationId(contains("1234"));
-        verify(rosterStudentRepository, times(0)).save(any());
-        String actualBody = response.getResponse().getContentAsString();
-        assertEquals("success", actualBody);
+
+        assertEquals("already received", response.getResponse().getContentAsString());
     }
 
     @Test
-    public void action_wrong() throws Exception {
-        String sendBody = """
-                {
-                "action" : "member_invited",
-                "membership": {
-                    "user": {
-                        "login": "testLogin"
-                    }
-                },
-                "installation":{
-                    "id": "1234"
-                }
-                }
-                """;
+    public void delivery_without_id_is_rejected() throws Exception {
+        mockMvc.perform(post("/api/webhooks/github")
+                        .header("X-GitHub-Event", "organization")
+                        .header("X-Hub-Signature-256", SIGNATURE)
+                        .content(SEND_BODY)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verify(webhookInboxService, times(0)).receive(any(), any(), any());
+    }
+
+    @Test
+    public void delivery_with_invalid_signature_is_rejected_before_parsing() throws Exception {
+        doReturn(false).when(webhookSignatureService).isValid(any(), eq("sha256=forged"));
 
         MvcResult response = mockMvc.perform(post("/api/webhooks/github")
-                        .content(sendBody)
+                        .header("X-GitHub-Delivery", "72d3162e-cc78-11e3-81ab-4c9367dc0958")
+                        .header("X-GitHub-Event", "organization")
+                        .header("X-Hub-Signature-256", "sha256=forged")
+                        .content("not even JSON")
                         .contentType(MediaType.APPLICATION_JSON))
-                .andExpect(status().isOk())
+                .andExpect(status().isUnauthorized())
                 .andReturn();
-        verify(rosterStudentRepository, times(0)).findByCourseAndGithubLogin(any(), any());
-        verify(courseRepository, times(0)).findByInstallationId(contains("1234"));
-        verify(rosterStudentRepository, times(0)).save(any());
-        String actualBody = response.getResponse().getContentAsString();
-        assertEquals("success", actualBody);
+
+        verify(webhookInboxService, times(0)).receive(any(), any(), any());
+        assertEquals("invalid signature", response.getResponse().getContentAsString());
     }
 
     @Test
-    public void no_action() throws Exception {
-        String sendBody = """
-                {
-                "membership": {
-                    "user": {
-                        "login": "testLogin"
-                    }
-                },
-                "installation":{
-                    "id": "1234"
-                }
-                }
-                """;
-
+    public void signed_delivery_that_is_not_json_is_rejected() throws Exception {
         MvcResult response = mockMvc.perform(post("/api/webhooks/github")
-                        .content(sendBody)
+                        .header("X-GitHub-Delivery", "72d3162e-cc78-11e3-81ab-4c9367dc0958")
+                        .header("X-GitHub-Event", "organization")
+                        .header("X-Hub-Signature-256", SIGNATURE)
+                        .content("{\"action\": ")
                         .contentType(MediaType.APPLICATION_JSON))
-                .andExpect(status().isOk())
+                .andExpect(status().isBadRequest())
                 .andReturn();
-        verify(rosterStudentRepository, times(0)).findByCourseAndGithubLogin(any(), any());
-        verify(courseRepository, times(0)).findByInstallationId(contains("1234"));
-        verify(rosterStudentRepository, times(0)).save(any());
-        String actualBody = response.getResponse().getContentAsString();
-        assertEquals("success", actualBody);
+
+        verify(webhookInboxService, times(0)).receive(any(), any(), any());
+        assertEquals("invalid JSON", response.getResponse().getContentAsString());
     }
 }
@@ -3,6 +3,7 @@ package edu.ucsb.cs156.frontiers.jobs;
 
 import edu.ucsb.cs156.frontiers.entities.Course;
 import edu.ucsb.cs156.frontiers.entities.Job;
+import edu.ucsb.cs156.frontiers.entities.JobLogLine;
 import edu.ucsb.cs156.frontiers.entities.RosterStudent;
 import edu.ucsb.cs156.frontiers.entities.User;
 import edu.ucsb.cs156.frontiers.enums.OrgStatus;
@@ -15,6 +16,12 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import edu.ucsb.cs156.frontiers.errors.NoLinkedOrganizationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -29,7 +36,13 @@ public class CreateStudentRepositoriesJobTest {
     private RepositoryService service;
 
     Job jobStarted = Job.builder().build();
-    JobContext ctx = new JobContext(null, jobStarted);
+    List<JobLogLine> logLines = new ArrayList<>();
+    JobContext ctx = new JobContext(jobStarted, logLines::addAll);
+
+    private String jobLog() {
+        ctx.flush();
+        return JobLogLine.toText(logLines);
+    }
 
     @BeforeEach
     public void setup() {
@@ -42,7 +55,7 @@ public class CreateStudentRepositoriesJobTest {
         RosterStudent student = RosterStudent.builder().githubLogin("studentLogin").orgStatus(OrgStatus.MEMBER).build();
         course.setRosterStudents(List.of(student));
 
-        doNothing().when(service).createStudentRepository(eq(course), eq(student), contains("repo-prefix"), eq(false));
+        doNothing().when(service).createStudentRepository(eq(course), eq(student), contains("repo-prefix"), eq(false), eq(false));
 
         var repoJob = spy(CreateStudentRepositoriesJob.builder()
                 .repositoryService(service)
@@ -54,10 +67,11 @@ public class CreateStudentRepositoriesJobTest {
         repoJob.accept(ctx);
         String expected = """
                 Processing...
-                Done""";
-        assertEquals(expected, jobStarted.getLog());
+                [1/1] repo-prefix-studentLogin: done
+                Done: 1 succeeded, 0 failed""";
+        assertEquals(expected, jobLog());
 
-        verify(service, times(1)).createStudentRepository(eq(course), eq(student), contains("repo-prefix"), eq(false));
+        verify(service, times(1)).createStudentRepository(eq(course), eq(student), contains("repo-prefix"), eq(false), eq(false));
     }
 
     @Test
@@ -66,7 +80,7 @@ public class CreateStudentRepositoriesJobTest {
         RosterStudent student = RosterStudent.builder().githubLogin("studentLogin").orgStatus(OrgStatus.MEMBER).build();
         course.setRosterStudents(List.of(student));
 
-        doNothing().when(service).createStudentRepository(eq(course), eq(student), contains("repo-prefix"), eq(true));
+        doNothing().when(service).createStudentRepository(eq(course), eq(student), contains("repo-prefix"), eq(true), eq(false));
 
         var repoJob = spy(CreateStudentRepositoriesJob.builder()
                 .repositoryService(service)
@@ -78,10 +92,11 @@ public class CreateStudentRepositoriesJobTest {
         repoJob.accept(ctx);
         String expected = """
                 Processing...
-                Done""";
-        assertEquals(expected, jobStarted.getLog());
+                [1/1] repo-prefix-studentLogin: done
+                Done: 1 succeeded, 0 failed""";
+        assertEquals(expected, jobLog());
 
-        verify(service, times(1)).createStudentRepository(eq(course), eq(student), contains("repo-prefix"), eq(true));
+        verify(service, times(1)).createStudentRepository(eq(course), eq(student), contains("repo-prefix"), eq(true), eq(false));
     }
 
 
@@ -101,10 +116,33 @@ public class CreateStudentRepositoriesJobTest {
         repoJob.accept(ctx);
         String expected = """
                 Processing...
-                Done""";
-        assertEquals(expected, jobStarted.getLog());
+                Done: 0 succeeded, 0 failed""";
+        assertEquals(expected, jobLog());
+
+        verify(service, times(0)).createStudentRepository(any(),any(),any(),any(),anyBoolean());
+    }
+
+    @Test
+    public void createsRepoForOwner() throws Exception {
+        Course course = Course.builder().orgName("ucsb-cs156").installationId("1234").build();
+        RosterStudent student = RosterStudent.builder().githubLogin("studentLogin").orgStatus(OrgStatus.OWNER).build();
+        course.setRosterStudents(List.of(student));
+
+        var repoJob = CreateStudentRepositoriesJob.builder()
+                .repositoryService(service)
+                .repositoryPrefix("repo-prefix")
+                .isPrivate(false)
+                .course(course)
+                .build();
+
+        repoJob.accept(ctx);
+        String expected = """
+                Processing...
+                [1/1] repo-prefix-studentLogin: done
+                Done: 1 succeeded, 0 failed""";
+        assertEquals(expected, jobLog());
 
-        verify(service, times(0)).createStudentRepository(any(),any(),any(),any());
+        verify(service, times(1)).createStudentRepository(eq(course), eq(student), eq("repo-prefix"), eq(false), eq(false));
     }
 
     @Test
@@ -122,9 +160,121 @@ public class CreateStudentRepositoriesJobTest {
         repoJob.accept(ctx);
         String expected = """
                 Processing...
-                Done""";
-        assertEquals(expected, jobStarted.getLog());
+                Done: 0 succeeded, 0 failed""";
+        assertEquals(expected, jobLog());
+
+        verify(service, times(0)).createStudentRepository(any(),any(),any(),any(),anyBoolean());
+    }
+
+    private HttpClientErrorException rateLimited() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Retry-After", "1");
+        return HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", headers, new byte[0], null);
+    }
+
+    @Test
+    public void retries_student_after_rate_limit() throws Exception {
+        Course course = Course.builder().orgName("ucsb-cs156").installationId("1234").build();
+        RosterStudent student = RosterStudent.builder().githubLogin("studentLogin").orgStatus(OrgStatus.MEMBER).build();
+        course.setRosterStudents(List.of(student));
+
+        doThrow(rateLimited()).when(service).createStudentRepository(eq(course), eq(student), eq("repo-prefix"), eq(false), eq(false));
+
+        var repoJob = CreateStudentRepositoriesJob.builder()
+                .repositoryService(service)
+                .repositoryPrefix("repo-prefix")
+                .course(course)
+                .isPrivate(false)
+                .build();
+
+        repoJob.accept(ctx);
+        String expected = """
+                Processing...
+                [1/1] repo-prefix-studentLogin: done
+                Done: 1 succeeded, 0 failed""";
+        assertEquals(expected, jobLog());
+
+        verify(service, times(1)).createStudentRepository(eq(course), eq(student), eq("repo-prefix"), eq(false), eq(false));
+        // the first attempt may have created the repository before it was rate limited, so the retry provisions it regardless
+        verify(service, times(1)).createStudentRepository(eq(course), eq(student), eq("repo-prefix"), eq(false), eq(true));
+    }
+
+    @Test
+    public void gives_up_after_max_attempts() throws Exception {
+        Course course = Course.builder().orgName("ucsb-cs156").installationId("1234").build();
+        RosterStudent student = RosterStudent.builder().githubLogin("studentLogin").orgStatus(OrgStatus.MEMBER).build();
+        course.setRosterStudents(List.of(student));
+
+        doThrow(rateLimited()).when(service).createStudentRepository(eq(course), eq(student), eq("repo-prefix"), eq(false), anyBoolean());
+
+        var repoJob = CreateStudentRepositoriesJob.builder()
+                .repositoryService(service)
+                .repositoryPrefix("repo-prefix")
+                .course(course)
+                .isPrivate(false)
+                .build();
+
+        repoJob.accept(ctx);
+        String expected = """
+                Processing...
+                [1/1] repo-prefix-studentLogin: failed (429 Too Many Requests)
+                Done: 0 succeeded, 1 failed""";
+        assertEquals(expected, jobLog());
+
+        verify(service, times(CreateStudentRepositoriesJob.MAX_ATTEMPTS)).createStudentRepository(eq(course), eq(student), eq("repo-prefix"), eq(false), anyBoolean());
+    }
+
+    @Test
+    public void does_not_retry_other_http_errors() throws Exception {
+        Course course = Course.builder().orgName("ucsb-cs156").installationId("1234").build();
+        RosterStudent student = RosterStudent.builder().githubLogin("studentLogin").orgStatus(OrgStatus.MEMBER).build();
+        course.setRosterStudents(List.of(student));
+
+        doThrow(HttpClientErrorException.create(HttpStatus.UNPROCESSABLE_ENTITY, "Unprocessable Entity", new HttpHeaders(), new byte[0], null))
+                .when(service).createStudentRepository(eq(course), eq(student), eq("repo-prefix"), eq(false), eq(false));
+
+        var repoJob = CreateStudentRepositoriesJob.builder()
+                .repositoryService(service)
+                .repositoryPrefix("repo-prefix")
+                .course(course)
+                .isPrivate(false)
+                .build();
+
+        repoJob.accept(ctx);
+        String expected = """
+                Processing...
+                [1/1] repo-prefix-studentLogin: failed (422 Unprocessable Entity)
+                Done: 0 succeeded, 1 failed""";
+        assertEquals(expected, jobLog());
+
+        verify(service, times(1)).createStudentRepository(eq(course), eq(student), eq("repo-prefix"), eq(false), eq(false));
+    }
+
+    @Test
+    public void one_failure_does_not_stop_other_students() throws Exception {
+        Course course = Course.builder().orgName("ucsb-cs156").installationId("1234").build();
+        RosterStudent student1 = RosterStudent.builder().githubLogin("student1").orgStatus(OrgStatus.MEMBER).build();
+        RosterStudent student2 = RosterStudent.builder().githubLogin("student2").orgStatus(OrgStatus.MEMBER).build();
+        course.setRosterStudents(List.of(student1, student2));
+
+        doThrow(new NoLinkedOrganizationException("course")).when(service).createStudentRepository(eq(course), eq(student1), eq("repo-prefix"), eq(false), eq(false));
+
+        var repoJob = CreateStudentRepositoriesJob.builder()
+                .repositoryService(service)
+                .repositoryPrefix("repo-prefix")
+                .course(course)
+                .isPrivate(false)
+                .maxConcurrency(1)
+                .build();
+
+        repoJob.accept(ctx);
+        String expected = """
+                Processing...
+                [1/2] repo-prefix-student1: failed (No linked GitHub Organization to course. Please link a GitHub Organization first.)
+                [2/2] repo-prefix-student2: done
+                Done: 1 succeeded, 1 failed""";
+        assertEquals(expected, jobLog());
 
-        verify(service, times(0)).createStudentRepository(any(),any(),any(),any());
+        verify(service, times(1)).createStudentRepository(eq(course), eq(student2), eq("repo-prefix"), eq(false), eq(false));
     }
 }
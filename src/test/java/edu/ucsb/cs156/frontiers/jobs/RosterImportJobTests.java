@@ -0,0 +1,114 @@
+package edu.ucsb.cs156.frontiers.jobs;
+
+import edu.ucsb.cs156.frontiers.entities.Course;
+import edu.ucsb.cs156.frontiers.entities.Job;
+import edu.ucsb.cs156.frontiers.entities.JobLogLine;
+import edu.ucsb.cs156.frontiers.services.RosterImportService;
+import edu.ucsb.cs156.frontiers.services.jobs.JobContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+public class RosterImportJobTests {
+
+    @Mock
+    private RosterImportService rosterImportService;
+
+    @TempDir
+    Path tempDir;
+
+    Course course = Course.builder().id(1L).courseName("CMPSC 156").build();
+    Job jobStarted = Job.builder().build();
+    List<JobLogLine> logLines = new ArrayList<>();
+    JobContext ctx = new JobContext(jobStarted, logLines::addAll);
+    Path egradesFile;
+
+    private String jobLog() {
+        ctx.flush();
+        return JobLogLine.toText(logLines);
+    }
+
+    @BeforeEach
+    public void setup() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        egradesFile = Files.writeString(tempDir.resolve("egrades.csv"), "header\n\nrows\n");
+    }
+
+    private RosterImportJob job() {
+        return RosterImportJob.builder()
+                .course(course)
+                .rosterImportService(rosterImportService)
+                .egradesFile(egradesFile)
+                .build();
+    }
+
+    @Test
+    public void imports_the_spooled_file_and_logs_progress_and_counts() throws Exception {
+        when(rosterImportService.importEgrades(eq(course), any(InputStream.class), any(IntConsumer.class)))
+                .thenAnswer(invocation -> {
+                    InputStream egradesCsv = invocation.getArgument(1);
+                    assertEquals("header\n\nrows\n", new String(egradesCsv.readAllBytes(), StandardCharsets.UTF_8));
+                    IntConsumer progress = invocation.getArgument(2);
+                    progress.accept(500);
+                    progress.accept(742);
+                    return new RosterImportService.ImportResult(700, 42, 0, List.of());
+                });
+
+        job().accept(ctx);
+
+        String expected = """
+                Importing roster for CMPSC 156
+                Imported 500 rows
+                Imported 742 rows
+                Inserted 700 new students, Updated 42 students, Skipped 0 invalid rows
+                Done""";
+        assertEquals(expected, jobLog());
+        assertFalse(Files.exists(egradesFile));
+    }
+
+    @Test
+    public void skipped_rows_are_logged_as_errors() throws Exception {
+        when(rosterImportService.importEgrades(eq(course), any(InputStream.class), any(IntConsumer.class)))
+                .thenReturn(new RosterImportService.ImportResult(1, 0, 3, List.of("Line 4: missing Perm #")));
+
+        job().accept(ctx);
+
+        String expected = """
+                Importing roster for CMPSC 156
+                Line 4: missing Perm #
+                2 more invalid rows not listed
+                Inserted 1 new students, Updated 0 students, Skipped 3 invalid rows
+                Done""";
+        assertEquals(expected, jobLog());
+        assertEquals("ERROR", logLines.get(1).getLevel());
+        assertEquals("ERROR", logLines.get(2).getLevel());
+    }
+
+    @Test
+    public void spooled_file_is_deleted_when_the_import_fails() throws Exception {
+        when(rosterImportService.importEgrades(eq(course), any(InputStream.class), any(IntConsumer.class)))
+                .thenThrow(new IOException("Un-terminated quoted field at end of CSV file"));
+
+        assertThrows(IOException.class, () -> job().accept(ctx));
+
+        assertFalse(Files.exists(egradesFile));
+    }
+}
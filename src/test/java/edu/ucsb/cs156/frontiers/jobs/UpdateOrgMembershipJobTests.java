@@ -3,6 +3,7 @@ package edu.ucsb.cs156.frontiers.jobs;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import edu.ucsb.cs156.frontiers.entities.Course;
 import edu.ucsb.cs156.frontiers.entities.Job;
+import edu.ucsb.cs156.frontiers.entities.JobLogLine;
 import edu.ucsb.cs156.frontiers.entities.RosterStudent;
 import edu.ucsb.cs156.frontiers.entities.User;
 import edu.ucsb.cs156.frontiers.enums.OrgStatus;
@@ -22,10 +23,13 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -42,67 +46,143 @@ public class UpdateOrgMembershipJobTests {
     private OrganizationMemberService organizationMemberService;
 
     Job jobStarted = Job.builder().build();
-    JobContext ctx = new JobContext(null, jobStarted);
+    List<JobLogLine> logLines = new ArrayList<>();
+    JobContext ctx = new JobContext(jobStarted, logLines::addAll);
+
+    private String jobLog() {
+        ctx.flush();
+        return JobLogLine.toText(logLines);
+    }
 
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
     }
 
+    @SafeVarargs
+    private void givenOrgMembers(Course course, List<OrgMember>... pages) throws Exception {
+        doAnswer(invocation -> {
+            Consumer<List<OrgMember>> pageConsumer = invocation.getArgument(1);
+            for (List<OrgMember> page : pages) {
+                pageConsumer.accept(page);
+            }
+            return null;
+        }).when(organizationMemberService).forEachOrganizationMemberPage(eq(course), any());
+    }
+
+    private UpdateOrgMembershipJob job(Course course) {
+        return UpdateOrgMembershipJob.builder()
+                .rosterStudentRepository(rosterStudentRepository)
+                .organizationMemberService(organizationMemberService)
+                .course(course)
+                .build();
+    }
+
     @Test
     public void match_students_correctly() throws Exception {
         OrgMember orgMember1 = OrgMember.builder().githubId(123456).githubLogin("division7").build();
         OrgMember orgMember2 = OrgMember.builder().githubId(123457).githubLogin("division8").build();
-        List<OrgMember> orgMembers = List.of(orgMember1, orgMember2);
-        Course course = Course.builder().orgName("ucsb-cs156").installationId("1234").build();
-        RosterStudent student1 = RosterStudent.builder().studentId("banana").githubLogin("division7").githubId(123456).course(course).build();
-        RosterStudent student2 = RosterStudent.builder().studentId("apple").githubLogin("division8").githubId(123457).course(course).build();
-        RosterStudent student1Updated = RosterStudent.builder().studentId("banana").githubLogin("division7").githubId(123456).course(course).orgStatus(OrgStatus.MEMBER).build();
-        RosterStudent student2Updated = RosterStudent.builder().studentId("apple").githubLogin("division8").githubId(123457).course(course).orgStatus(OrgStatus.MEMBER).build();
-
-        doReturn(orgMembers).when(organizationMemberService).getOrganizationMembers(eq(course));
-        doReturn(Optional.of(student1)).when(rosterStudentRepository).findByCourseAndGithubId(eq(course), eq(123456));
-        doReturn(Optional.of(student2)).when(rosterStudentRepository).findByCourseAndGithubId(eq(course), eq(123457));
-
-        var matchJob = spy(UpdateOrgMembershipJob.builder()
-                .rosterStudentRepository(rosterStudentRepository)
-                .organizationMemberService(organizationMemberService)
-                .course(course)
-                .build());
+        Course course = Course.builder().id(1L).orgName("ucsb-cs156").installationId("1234").build();
+        RosterStudent student1 = RosterStudent.builder().id(11L).studentId("banana").githubLogin("division7").githubId(123456).course(course).build();
+        RosterStudent student2 = RosterStudent.builder().id(12L).studentId("apple").githubLogin("division8").githubId(123457).course(course).build();
+
+        givenOrgMembers(course, List.of(orgMember1), List.of(orgMember2));
+        doReturn(List.of(student1, student2)).when(rosterStudentRepository).findByCourseId(eq(1L));
 
-        matchJob.accept(ctx);
+        job(course).accept(ctx);
         String expected = """
                 Processing...
+                Updated org status for 2 roster students
                 Done""";
-        assertEquals(expected, jobStarted.getLog());
+        assertEquals(expected, jobLog());
 
-        verify(rosterStudentRepository, times(1)).save(eq(student1Updated));
-        verify(rosterStudentRepository, times(1)).save(eq(student2Updated));
+        verify(rosterStudentRepository, times(1)).updateOrgStatus(eq(List.of(11L, 12L)), eq(OrgStatus.MEMBER));
+        verify(rosterStudentRepository, never()).updateOrgStatus(any(), eq(OrgStatus.NONE));
+        verify(rosterStudentRepository, never()).findByCourseAndGithubId(any(), anyInt());
+        verify(rosterStudentRepository, never()).save(any());
+        verify(rosterStudentRepository, never()).saveAll(any());
     }
 
     @Test
     public void no_roster_student() throws Exception {
         OrgMember orgMember1 = OrgMember.builder().githubId(123456).githubLogin("division7").build();
         List<OrgMember> orgMembers = List.of(orgMember1);
-        Course course = Course.builder().orgName("ucsb-cs156").installationId("1234").build();
+        Course course = Course.builder().id(1L).orgName("ucsb-cs156").installationId("1234").build();
+        RosterStudent unlinked = RosterStudent.builder().studentId("cherry").course(course).build();
 
-        doReturn(orgMembers).when(organizationMemberService).getOrganizationMembers(eq(course));
-        doReturn(Optional.empty()).when(rosterStudentRepository).findByCourseAndGithubId(eq(course), eq(123456));
-
-        var matchJob = spy(UpdateOrgMembershipJob.builder()
-                .rosterStudentRepository(rosterStudentRepository)
-                .organizationMemberService(organizationMemberService)
-                .course(course)
-                .build());
+        givenOrgMembers(course, orgMembers);
+        doReturn(List.of(unlinked)).when(rosterStudentRepository).findByCourseId(eq(1L));
 
-        matchJob.accept(ctx);
+        job(course).accept(ctx);
         String expected = """
                 Processing...
+                Updated org status for 0 roster students
                 Done""";
-        assertEquals(expected, jobStarted.getLog());
+        assertEquals(expected, jobLog());
 
         verify(rosterStudentRepository, times(0)).save(any());
+        verify(rosterStudentRepository, times(0)).updateOrgStatus(any(), any());
     }
 
+    @Test
+    public void existing_members_are_not_rewritten() throws Exception {
+        OrgMember orgMember1 = OrgMember.builder().githubId(123456).githubLogin("division7").build();
+        Course course = Course.builder().id(1L).orgName("ucsb-cs156").installationId("1234").build();
+        RosterStudent student1 = RosterStudent.builder().studentId("banana").githubLogin("division7").githubId(123456).course(course).orgStatus(OrgStatus.MEMBER).build();
+
+        givenOrgMembers(course, List.of(orgMember1));
+        doReturn(List.of(student1)).when(rosterStudentRepository).findByCourseId(eq(1L));
 
+        job(course).accept(ctx);
+
+        assertEquals(OrgStatus.MEMBER, student1.getOrgStatus());
+        verify(rosterStudentRepository, times(0)).updateOrgStatus(any(), any());
+    }
+
+    @Test
+    public void students_who_left_the_org_are_reset() throws Exception {
+        OrgMember orgMember1 = OrgMember.builder().githubId(123456).githubLogin("division7").build();
+        Course course = Course.builder().id(1L).orgName("ucsb-cs156").installationId("1234").build();
+        RosterStudent stayed = RosterStudent.builder().id(11L).studentId("banana").githubLogin("division7").githubId(123456).course(course).orgStatus(OrgStatus.MEMBER).build();
+        RosterStudent left = RosterStudent.builder().id(12L).studentId("apple").githubLogin("division8").githubId(123457).course(course).orgStatus(OrgStatus.MEMBER).build();
+        RosterStudent invited = RosterStudent.builder().id(13L).studentId("cherry").githubLogin("division9").githubId(123458).course(course).orgStatus(OrgStatus.INVITED).build();
+
+        givenOrgMembers(course, List.of(orgMember1));
+        doReturn(List.of(stayed, left, invited)).when(rosterStudentRepository).findByCourseId(eq(1L));
+
+        job(course).accept(ctx);
+        String expected = """
+                Processing...
+                Updated org status for 1 roster students
+                Done""";
+        assertEquals(expected, jobLog());
+
+        verify(rosterStudentRepository, times(1)).updateOrgStatus(eq(List.of(12L)), eq(OrgStatus.NONE));
+        verify(rosterStudentRepository, never()).updateOrgStatus(any(), eq(OrgStatus.MEMBER));
+        assertEquals(OrgStatus.INVITED, invited.getOrgStatus());
+    }
+
+    @Test
+    public void admins_are_marked_owners_and_owners_who_left_are_reset() throws Exception {
+        OrgMember admin = OrgMember.builder().githubId(123456).githubLogin("division7").role("admin").build();
+        OrgMember demoted = OrgMember.builder().githubId(123457).githubLogin("division8").role("member").build();
+        Course course = Course.builder().id(1L).orgName("ucsb-cs156").installationId("1234").build();
+        RosterStudent promotedStudent = RosterStudent.builder().id(11L).studentId("banana").githubLogin("division7").githubId(123456).course(course).orgStatus(OrgStatus.MEMBER).build();
+        RosterStudent demotedStudent = RosterStudent.builder().id(12L).studentId("apple").githubLogin("division8").githubId(123457).course(course).orgStatus(OrgStatus.OWNER).build();
+        RosterStudent leftStudent = RosterStudent.builder().id(13L).studentId("cherry").githubLogin("division9").githubId(123458).course(course).orgStatus(OrgStatus.OWNER).build();
+
+        givenOrgMembers(course, List.of(admin, demoted));
+        doReturn(List.of(promotedStudent, demotedStudent, leftStudent)).when(rosterStudentRepository).findByCourseId(eq(1L));
+
+        job(course).accept(ctx);
+        String expected = """
+                Processing...
+                Updated org status for 3 roster students
+                Done""";
+        assertEquals(expected, jobLog());
+
+        verify(rosterStudentRepository, times(1)).updateOrgStatus(eq(List.of(11L)), eq(OrgStatus.OWNER));
+        verify(rosterStudentRepository, times(1)).updateOrgStatus(eq(List.of(12L)), eq(OrgStatus.MEMBER));
+        verify(rosterStudentRepository, times(1)).updateOrgStatus(eq(List.of(13L)), eq(OrgStatus.NONE));
+    }
 }
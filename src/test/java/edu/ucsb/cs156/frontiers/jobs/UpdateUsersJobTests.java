@@ -10,15 +10,25 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import edu.ucsb.cs156.frontiers.entities.Job;
+import edu.ucsb.cs156.frontiers.entities.JobLogLine;
 import edu.ucsb.cs156.frontiers.services.UpdateUserService;
 import edu.ucsb.cs156.frontiers.services.jobs.JobContext;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @ExtendWith(MockitoExtension.class)
 public class UpdateUsersJobTests {
     @Mock
     private UpdateUserService updateUserService;
     Job jobStarted = Job.builder().build();
-    JobContext ctx = new JobContext(null, jobStarted);
+    List<JobLogLine> logLines = new ArrayList<>();
+    JobContext ctx = new JobContext(jobStarted, logLines::addAll);
+
+    private String jobLog() {
+        ctx.flush();
+        return JobLogLine.toText(logLines);
+    }
 
     @Test
     void test_UpdateAllJob() throws Exception {
@@ -27,12 +37,15 @@ public class UpdateUsersJobTests {
                         .updateUserService(updateUserService)
                         .build());
 
+        when(updateUserService.attachRosterStudentsAllUsers()).thenReturn(4);
+
         job.accept(ctx);
         String expected = """
                 Processing...
+                Attached 4 roster students to users
                 Done""";
 
-        assertEquals(expected, jobStarted.getLog());
+        assertEquals(expected, jobLog());
         verify(updateUserService, times(1)).attachRosterStudentsAllUsers();
 
     }
@@ -0,0 +1,57 @@
+package edu.ucsb.cs156.frontiers.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+
+import edu.ucsb.cs156.frontiers.entities.User;
+
+/**
+ * This is a test class for the FrontiersPrincipal class.
+ */
+
+public class FrontiersPrincipalTests {
+
+    private final OidcIdToken idToken = OidcIdToken.withTokenValue("token")
+            .subject("115856948234298493496")
+            .claim("email", "cgaucho@ucsb.edu")
+            .build();
+
+    private final List<SimpleGrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_PROFESSOR"));
+
+    @Test
+    public void test_copies_user_fields() {
+        User user = User.builder()
+                .id(7L)
+                .email("cgaucho@ucsb.edu")
+                .githubId(123456)
+                .githubLogin("cgaucho")
+                .build();
+
+        FrontiersPrincipal principal = new FrontiersPrincipal(authorities, idToken, null, user);
+
+        assertEquals(7L, principal.getUserId());
+        assertEquals("cgaucho@ucsb.edu", principal.getEmail());
+        assertEquals(123456, principal.getGithubId());
+        assertEquals("cgaucho", principal.getGithubLogin());
+        assertEquals("115856948234298493496", principal.getName());
+        assertTrue(principal.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_PROFESSOR")));
+    }
+
+    @Test
+    public void test_principals_differ_by_github_account() {
+        User user = User.builder().id(7L).email("cgaucho@ucsb.edu").build();
+        User linked = User.builder().id(7L).email("cgaucho@ucsb.edu").githubId(123456).githubLogin("cgaucho").build();
+
+        assertEquals(new FrontiersPrincipal(authorities, idToken, null, user),
+                new FrontiersPrincipal(authorities, idToken, null, user));
+        assertNotEquals(new FrontiersPrincipal(authorities, idToken, null, user),
+                new FrontiersPrincipal(authorities, idToken, null, linked));
+    }
+}
@@ -0,0 +1,74 @@
+package edu.ucsb.cs156.frontiers.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+
+import liquibase.Contexts;
+import liquibase.LabelExpression;
+import liquibase.Liquibase;
+import liquibase.changelog.ChangeSet;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.LiquibaseException;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Runs the changelog on a database that has the duplicates the unique indexes of migration 012 forbid, and checks that
+ * the update stops with a message saying what to clean up, rather than failing on the index.
+ */
+public class DuplicateCheckMigrationTests {
+
+    private static final String CHANGELOG = "db/migration/changelog-master.json";
+
+    private static void run(String databaseName, String... inserts) throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:" + databaseName)) {
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            Liquibase liquibase = new Liquibase(CHANGELOG, new ClassLoaderResourceAccessor(), database);
+            List<ChangeSet> changeSets = liquibase.getDatabaseChangeLog().getChangeSets();
+            int before012 = 0;
+            while (!changeSets.get(before012).getId().startsWith("012-")) {
+                before012++;
+            }
+            liquibase.update(before012, new Contexts(), new LabelExpression());
+            try (Statement statement = connection.createStatement()) {
+                for (String insert : inserts) {
+                    statement.execute(insert);
+                }
+            }
+            liquibase.update(new Contexts(), new LabelExpression());
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "duplicate_emails | INSERT INTO USERS (ID, ADMIN, PROFESSOR, EMAIL, GOOGLE_SUB) VALUES (1, FALSE, FALSE, 'cgaucho@ucsb.edu', '1'), (2, FALSE, FALSE, 'cgaucho@ucsb.edu', '2') | UX_USERS_EMAIL",
+            "duplicate_subs | INSERT INTO USERS (ID, ADMIN, PROFESSOR, EMAIL, GOOGLE_SUB) VALUES (1, FALSE, FALSE, 'cgaucho@ucsb.edu', '1'), (2, FALSE, FALSE, 'ldelplaya@ucsb.edu', '1') | UX_USERS_GOOGLE_SUB",
+            "duplicate_student_ids | INSERT INTO ROSTER_STUDENT (ID, COURSE_ID, STUDENT_ID) VALUES (1, 1, 'A123456'), (2, 1, 'A123456') | UX_ROSTER_STUDENT_COURSE_ID_STUDENT_ID",
+    })
+    public void update_stops_on_duplicates(String databaseName, String duplicates, String index) {
+        LiquibaseException e = assertThrows(LiquibaseException.class, () -> run(databaseName,
+                "INSERT INTO USERS (ID, ADMIN, PROFESSOR, EMAIL, GOOGLE_SUB) VALUES (100, FALSE, TRUE, 'phtcon@ucsb.edu', '100')",
+                "INSERT INTO COURSE (ID, USER_ID, COURSE_NAME) VALUES (1, 100, 'CMPSC 156')",
+                duplicates));
+
+        assertTrue(e.getMessage().contains("before " + index + " can be created"), e::getMessage);
+    }
+
+    @Test
+    public void update_runs_without_duplicates() {
+        assertDoesNotThrow(() -> run("no_duplicates",
+                "INSERT INTO USERS (ID, ADMIN, PROFESSOR, EMAIL, GOOGLE_SUB) VALUES (1, FALSE, FALSE, 'cgaucho@ucsb.edu', '1'), (2, FALSE, FALSE, NULL, NULL), (3, FALSE, FALSE, NULL, NULL)",
+                "INSERT INTO COURSE (ID, USER_ID, COURSE_NAME) VALUES (1, 1, 'CMPSC 156'), (2, 1, 'CMPSC 148')",
+                "INSERT INTO ROSTER_STUDENT (ID, COURSE_ID, STUDENT_ID) VALUES (1, 1, 'A123456'), (2, 2, 'A123456'), (3, 1, NULL), (4, 1, NULL)"));
+    }
+}
@@ -0,0 +1,140 @@
+package edu.ucsb.cs156.frontiers.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.frontiers.entities.Course;
+import edu.ucsb.cs156.frontiers.entities.CourseStaff;
+import edu.ucsb.cs156.frontiers.entities.RosterStudent;
+import edu.ucsb.cs156.frontiers.entities.User;
+import edu.ucsb.cs156.frontiers.enums.OrgStatus;
+import edu.ucsb.cs156.frontiers.enums.RosterStatus;
+import edu.ucsb.cs156.frontiers.services.wiremock.WiremockService;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/**
+ * Counts the SQL statements and entities behind the course lookups the controllers make, so that an association
+ * going back to being eagerly join-fetched shows up as a test failure.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class FetchStatisticsTests {
+
+    private static final int STUDENTS = 3;
+    private static final int LINKED_STUDENTS = 2;
+
+    @MockitoBean
+    private WiremockService wiremockService;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private RosterStudentRepository rosterStudentRepository;
+
+    private Statistics statistics;
+    private Course course;
+
+    @BeforeEach
+    public void setUp() {
+        User professor = testEntityManager.persist(User.builder().email("phtcon@ucsb.edu").professor(true).build());
+        course = testEntityManager.persist(Course.builder()
+                .courseName("CMPSC 156").installationId("1234").orgName("ucsb-cs156").creator(professor).build());
+        for (int i = 0; i < STUDENTS; i++) {
+            User user = i < LINKED_STUDENTS
+                    ? testEntityManager.persist(User.builder().email("student%d@ucsb.edu".formatted(i)).build())
+                    : null;
+            testEntityManager.persist(RosterStudent.builder()
+                    .course(course).studentId("S%d".formatted(i)).email("student%d@ucsb.edu".formatted(i)).user(user)
+                    .rosterStatus(RosterStatus.ROSTER).orgStatus(OrgStatus.NONE).build());
+        }
+        User ta = testEntityManager.persist(User.builder().email("ta@ucsb.edu").build());
+        testEntityManager.persist(CourseStaff.builder().course(course).user(ta).role("TA").build());
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    /** Most course endpoints: findById loads the course and its creator, and nothing else. */
+    @Test
+    public void findById_does_not_load_the_roster_or_staff() {
+        Course found = courseRepository.findById(course.getId()).orElseThrow();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(2, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+        assertFalse(Hibernate.isInitialized(found.getRosterStudents()));
+        assertFalse(Hibernate.isInitialized(found.getCourseStaff()));
+        assertFalse(Hibernate.isInitialized(found.getCreator().getLinkedStudents()));
+        assertFalse(Hibernate.isInitialized(found.getCreator().getRoles()));
+    }
+
+    /** POST /api/webhooks/github: the courses are looked up by installation id. */
+    @Test
+    public void findAllByInstallationId_does_not_load_the_roster_or_staff() {
+        Course found = courseRepository.findAllByInstallationId("1234").get(0);
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(2, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+        assertFalse(Hibernate.isInitialized(found.getRosterStudents()));
+        assertFalse(Hibernate.isInitialized(found.getCourseStaff()));
+    }
+
+    /** POST /api/repos/createRepos: the job needs the roster after the request has returned. */
+    @Test
+    public void findWithRosterStudentsById_loads_the_roster_in_one_query() {
+        Course found = courseRepository.findWithRosterStudentsById(course.getId()).orElseThrow();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(2 + STUDENTS + LINKED_STUDENTS, statistics.getEntityLoadCount());
+        assertTrue(Hibernate.isInitialized(found.getRosterStudents()));
+        assertEquals(STUDENTS, found.getRosterStudents().size());
+        assertFalse(Hibernate.isInitialized(found.getCourseStaff()));
+    }
+
+    /** GET /api/courses/student: courses are found by a roster email, and the student's status is read from the roster. */
+    @Test
+    public void findAllByRosterStudents_Email_loads_the_roster_in_one_query() {
+        List<Course> found = courseRepository.findAllByRosterStudents_Email("student2@ucsb.edu");
+
+        assertEquals(1, found.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertTrue(Hibernate.isInitialized(found.get(0).getRosterStudents()));
+        assertEquals(STUDENTS, found.get(0).getRosterStudents().size());
+        assertFalse(Hibernate.isInitialized(found.get(0).getCourseStaff()));
+    }
+
+    /** Roster jobs and imports: the course of each student is loaded once, without its roster. */
+    @Test
+    public void findByCourseId_does_not_load_the_course_roster_again() {
+        List<RosterStudent> students = new ArrayList<>();
+        rosterStudentRepository.findByCourseId(course.getId()).forEach(students::add);
+
+        assertEquals(STUDENTS, students.size());
+        // the students, then their course (with its creator), then each linked user
+        assertEquals(2 + LINKED_STUDENTS, statistics.getPrepareStatementCount());
+        assertEquals(STUDENTS + 2 + LINKED_STUDENTS, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+        assertFalse(Hibernate.isInitialized(students.get(0).getCourse().getRosterStudents()));
+    }
+}
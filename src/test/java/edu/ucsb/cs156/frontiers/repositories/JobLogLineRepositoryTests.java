@@ -0,0 +1,78 @@
+package edu.ucsb.cs156.frontiers.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import edu.ucsb.cs156.frontiers.entities.Job;
+import edu.ucsb.cs156.frontiers.entities.JobLogLine;
+import edu.ucsb.cs156.frontiers.services.wiremock.WiremockService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Checks that {@link JobLogLineRepository#saveAll} commits on its own, independently of the caller's transaction.
+ * The test itself runs outside a transaction, so it cleans up after itself.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class JobLogLineRepositoryTests {
+
+    @MockitoBean
+    private WiremockService wiremockService;
+
+    @Autowired
+    private JobsRepository jobsRepository;
+
+    @Autowired
+    private JobLogLineRepository jobLogLineRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void cleanup() {
+        jobLogLineRepository.deleteAll();
+        jobsRepository.deleteAll();
+    }
+
+    private List<JobLogLine> linesOf(Job job) {
+        return jobLogLineRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(job.getId(), 0, Limit.unlimited());
+    }
+
+    @Test
+    public void lines_are_kept_when_the_callers_transaction_rolls_back() {
+        Job job = jobsRepository.save(Job.builder().jobType("RosterImportJob").status("running").build());
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        // another transaction, like the one serving a viewer of the job's log
+        TransactionTemplate otherTransaction = new TransactionTemplate(transactionManager);
+        otherTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        List<JobLogLine> visibleBeforeRollback = transaction.execute(status -> {
+            jobLogLineRepository.saveAll(List.of(JobLogLine.builder()
+                    .jobId(job.getId())
+                    .seq(0)
+                    .loggedAt(ZonedDateTime.now(ZoneOffset.UTC))
+                    .level("INFO")
+                    .message("Imported 500 rows")
+                    .build()));
+            List<JobLogLine> visible = otherTransaction.execute(inner -> linesOf(job));
+            status.setRollbackOnly();
+            return visible;
+        });
+
+        assertEquals("Imported 500 rows", JobLogLine.toText(visibleBeforeRollback));
+        assertEquals("Imported 500 rows", JobLogLine.toText(linesOf(job)));
+    }
+}
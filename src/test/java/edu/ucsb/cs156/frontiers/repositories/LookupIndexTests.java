@@ -0,0 +1,89 @@
+package edu.ucsb.cs156.frontiers.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.frontiers.entities.Course;
+import edu.ucsb.cs156.frontiers.entities.RosterStudent;
+import edu.ucsb.cs156.frontiers.entities.User;
+import edu.ucsb.cs156.frontiers.services.wiremock.WiremockService;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/**
+ * Checks, against the schema built by the Liquibase changesets, that the hot lookups are answered from an index.
+ * H2 names the index it uses in a comment in the EXPLAIN output.
+ */
+@DataJpaTest
+public class LookupIndexTests {
+
+    @MockitoBean
+    private WiremockService wiremockService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private RosterStudentRepository rosterStudentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "SELECT * FROM ROSTER_STUDENT WHERE COURSE_ID = 1 AND STUDENT_ID = 'A123456' | UX_ROSTER_STUDENT_COURSE_ID_STUDENT_ID",
+            "SELECT * FROM ROSTER_STUDENT WHERE COURSE_ID = 1 AND GITHUB_ID = 12345       | IX_ROSTER_STUDENT_COURSE_ID_GITHUB_ID",
+            "SELECT * FROM ROSTER_STUDENT WHERE COURSE_ID = 1 AND GITHUB_LOGIN = 'cgaucho' | IX_ROSTER_STUDENT_COURSE_ID_GITHUB_LOGIN",
+            "SELECT * FROM ROSTER_STUDENT WHERE EMAIL = 'cgaucho@ucsb.edu'                | IX_ROSTER_STUDENT_EMAIL",
+            "SELECT * FROM ROSTER_STUDENT WHERE USER_ID = 1                                | IX_ROSTER_STUDENT_USER_ID",
+            "SELECT * FROM COURSE WHERE INSTALLATION_ID = '1234'                           | IX_COURSE_INSTALLATION_ID",
+            "SELECT * FROM USERS WHERE EMAIL = 'cgaucho@ucsb.edu'                          | UX_USERS_EMAIL",
+            "SELECT * FROM USERS WHERE GOOGLE_SUB = '115856948234298493496'                | UX_USERS_GOOGLE_SUB",
+            "SELECT * FROM USERS WHERE GITHUB_ID = 12345                                   | IX_USERS_GITHUB_ID",
+    })
+    public void lookup_uses_index(String query, String index) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + query, String.class);
+
+        assertTrue(plan.contains(index), () -> "expected " + index + " in plan:\n" + plan);
+    }
+
+    @Test
+    public void student_id_is_unique_within_a_course() {
+        User professor = userRepository.save(User.builder().email("phtcon@ucsb.edu").professor(true).build());
+        Course course = courseRepository.save(Course.builder().courseName("CMPSC 156").creator(professor).build());
+        rosterStudentRepository.saveAndFlush(RosterStudent.builder().course(course).studentId("A123456").build());
+
+        assertThrows(DataIntegrityViolationException.class, () -> rosterStudentRepository
+                .saveAndFlush(RosterStudent.builder().course(course).studentId("A123456").build()));
+    }
+
+    @Test
+    public void user_email_is_unique() {
+        entityManager.persistAndFlush(User.builder().email("cgaucho@ucsb.edu").googleSub("115856948234298493496").build());
+
+        assertThrows(ConstraintViolationException.class, () -> entityManager
+                .persistAndFlush(User.builder().email("cgaucho@ucsb.edu").googleSub("104766735621183497251").build()));
+    }
+
+    @Test
+    public void user_google_sub_is_unique() {
+        entityManager.persistAndFlush(User.builder().email("cgaucho@ucsb.edu").googleSub("115856948234298493496").build());
+
+        assertThrows(ConstraintViolationException.class, () -> entityManager
+                .persistAndFlush(User.builder().email("chris.gaucho@ucsb.edu").googleSub("115856948234298493496").build()));
+    }
+}
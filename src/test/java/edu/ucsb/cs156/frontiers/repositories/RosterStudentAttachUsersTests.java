@@ -0,0 +1,91 @@
+package edu.ucsb.cs156.frontiers.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import edu.ucsb.cs156.frontiers.entities.Course;
+import edu.ucsb.cs156.frontiers.entities.RosterStudent;
+import edu.ucsb.cs156.frontiers.entities.User;
+import edu.ucsb.cs156.frontiers.services.wiremock.WiremockService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/**
+ * Runs {@link RosterStudentRepository#attachUsersByEmail} against the schema built by the Liquibase changesets.
+ */
+@DataJpaTest
+public class RosterStudentAttachUsersTests {
+
+    @MockitoBean
+    private WiremockService wiremockService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private RosterStudentRepository rosterStudentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User cgaucho;
+    private User ldelplaya;
+    private Course course;
+
+    @BeforeEach
+    public void setUp() {
+        cgaucho = userRepository.save(User.builder().email("cgaucho@ucsb.edu").build());
+        ldelplaya = userRepository.save(User.builder().email("ldelplaya@ucsb.edu").build());
+        User professor = userRepository.save(User.builder().email("phtcon@ucsb.edu").professor(true).build());
+        course = courseRepository.save(Course.builder().courseName("CMPSC 156").creator(professor).build());
+    }
+
+    private RosterStudent student(String studentId, String email, User user) {
+        return rosterStudentRepository.save(RosterStudent.builder()
+                .course(course).studentId(studentId).email(email).user(user).build());
+    }
+
+    private User userOf(RosterStudent student) {
+        return rosterStudentRepository.findById(student.getId()).orElseThrow().getUser();
+    }
+
+    @Test
+    public void only_students_not_attached_to_their_user_are_written() {
+        RosterStudent unattached = student("A111111", "cgaucho@ucsb.edu", null);
+        RosterStudent attachedElsewhere = student("A222222", "ldelplaya@ucsb.edu", cgaucho);
+        RosterStudent alreadyAttached = student("A333333", "cgaucho@ucsb.edu", cgaucho);
+        RosterStudent noUser = student("A444444", "nobody@ucsb.edu", null);
+        entityManager.flush();
+
+        int attached = rosterStudentRepository.attachUsersByEmail(0, unattached.getId() + 100);
+        entityManager.clear();
+
+        assertEquals(2, attached);
+        assertEquals(cgaucho.getId(), userOf(unattached).getId());
+        assertEquals(ldelplaya.getId(), userOf(attachedElsewhere).getId());
+        assertEquals(cgaucho.getId(), userOf(alreadyAttached).getId());
+        assertNull(userOf(noUser));
+    }
+
+    @Test
+    public void only_students_in_the_id_range_are_written() {
+        RosterStudent first = student("A111111", "cgaucho@ucsb.edu", null);
+        RosterStudent second = student("A222222", "ldelplaya@ucsb.edu", null);
+        entityManager.flush();
+
+        int attached = rosterStudentRepository.attachUsersByEmail(first.getId(), second.getId());
+        entityManager.clear();
+
+        assertEquals(1, attached);
+        assertNull(userOf(first));
+        assertEquals(ldelplaya.getId(), userOf(second).getId());
+        assertEquals(second.getId(), rosterStudentRepository.findMaxId());
+    }
+}
@@ -0,0 +1,133 @@
+package edu.ucsb.cs156.frontiers.repositories;
+
+import edu.ucsb.cs156.frontiers.entities.Course;
+import edu.ucsb.cs156.frontiers.entities.CourseStaff;
+import edu.ucsb.cs156.frontiers.entities.RosterStudent;
+import edu.ucsb.cs156.frontiers.entities.User;
+import edu.ucsb.cs156.frontiers.enums.OrgStatus;
+import edu.ucsb.cs156.frontiers.enums.RosterStatus;
+import edu.ucsb.cs156.frontiers.models.RosterStudentDTO;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.StreamSupport;
+
+/**
+ * Cost of loading the roster of a 2,000-student course, half of whom are linked to a user, from H2.
+ * <ul>
+ *   <li>{@code hydrateEntities}: what {@code GET /api/courses/roster} used to do; load {@link RosterStudent}
+ *       entities with {@code findByCourseId} and map them with {@link RosterStudentDTO#from}.</li>
+ *   <li>{@code projectDtos}: {@code findRosterStudentDTOsByCourseId}, which selects only the DTO columns.</li>
+ * </ul>
+ * Entities loaded and JDBC statements per call, taken from Hibernate statistics, are printed at the end of each
+ * run. Run with the instructions in docs/benchmarks.md.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RosterStudentQueriesBenchmark {
+
+    static final int STUDENTS = 2_000;
+
+    private SessionFactory sessionFactory;
+    private Session session;
+    private RosterStudentRepository rosterStudentRepository;
+    private Long courseId;
+
+    private long calls;
+    private long entitiesLoaded;
+    private long statements;
+
+    @Setup
+    public void setup() {
+        sessionFactory = new Configuration()
+                .setProperty(AvailableSettings.JAKARTA_JDBC_URL, "jdbc:h2:mem:roster-benchmark;DB_CLOSE_DELAY=-1")
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+                .setProperty(AvailableSettings.GENERATE_STATISTICS, "true")
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(Course.class)
+                .addAnnotatedClass(CourseStaff.class)
+                .addAnnotatedClass(RosterStudent.class)
+                .buildSessionFactory();
+
+        session = sessionFactory.openSession();
+        session.beginTransaction();
+        User professor = User.builder().email("professor@ucsb.edu").professor(true).build();
+        session.persist(professor);
+        Course course = Course.builder().courseName("CMPSC 156").creator(professor).build();
+        session.persist(course);
+        for (int i = 0; i < STUDENTS; i++) {
+            String email = "student%d@ucsb.edu".formatted(i);
+            User user = null;
+            if (i % 2 == 0) {
+                user = User.builder().email(email).githubId(i).githubLogin("student" + i).build();
+                session.persist(user);
+            }
+            session.persist(RosterStudent.builder()
+                    .course(course).studentId("S%04d".formatted(i)).firstName("First" + i).lastName("Last" + i)
+                    .email(email).user(user).rosterStatus(RosterStatus.ROSTER).orgStatus(OrgStatus.NONE).build());
+        }
+        session.getTransaction().commit();
+        session.clear();
+        courseId = course.getId();
+
+        rosterStudentRepository = new JpaRepositoryFactory(session).getRepository(RosterStudentRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%nper call: %d entities loaded, %d JDBC statements%n",
+                entitiesLoaded / calls, statements / calls);
+        session.close();
+        sessionFactory.close();
+    }
+
+    @TearDown(Level.Invocation)
+    public void clearSession() {
+        session.clear();
+    }
+
+    private List<RosterStudentDTO> measure(Supplier<List<RosterStudentDTO>> query) {
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        List<RosterStudentDTO> roster = query.get();
+        calls++;
+        entitiesLoaded += statistics.getEntityLoadCount();
+        statements += statistics.getPrepareStatementCount();
+        return roster;
+    }
+
+    @Benchmark
+    public List<RosterStudentDTO> hydrateEntities() {
+        return measure(() -> StreamSupport.stream(rosterStudentRepository.findByCourseId(courseId).spliterator(), false)
+                .map(RosterStudentDTO::from)
+                .toList());
+    }
+
+    @Benchmark
+    public List<RosterStudentDTO> projectDtos() {
+        return measure(() -> rosterStudentRepository.findRosterStudentDTOsByCourseId(courseId));
+    }
+}
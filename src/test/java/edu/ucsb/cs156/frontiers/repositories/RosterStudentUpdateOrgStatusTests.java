@@ -0,0 +1,65 @@
+package edu.ucsb.cs156.frontiers.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import edu.ucsb.cs156.frontiers.entities.Course;
+import edu.ucsb.cs156.frontiers.entities.RosterStudent;
+import edu.ucsb.cs156.frontiers.entities.User;
+import edu.ucsb.cs156.frontiers.enums.OrgStatus;
+import edu.ucsb.cs156.frontiers.services.wiremock.WiremockService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/**
+ * Runs {@link RosterStudentRepository#updateOrgStatus} against the schema built by the Liquibase changesets.
+ */
+@DataJpaTest
+public class RosterStudentUpdateOrgStatusTests {
+
+    @MockitoBean
+    private WiremockService wiremockService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private RosterStudentRepository rosterStudentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private RosterStudent student(Course course, String studentId) {
+        return rosterStudentRepository.save(RosterStudent.builder()
+                .course(course).studentId(studentId).orgStatus(OrgStatus.NONE).build());
+    }
+
+    private OrgStatus orgStatusOf(RosterStudent student) {
+        return rosterStudentRepository.findById(student.getId()).orElseThrow().getOrgStatus();
+    }
+
+    @Test
+    public void only_the_given_students_are_written() {
+        User professor = userRepository.save(User.builder().email("phtcon@ucsb.edu").professor(true).build());
+        Course course = courseRepository.save(Course.builder().courseName("CMPSC 156").creator(professor).build());
+        RosterStudent first = student(course, "A111111");
+        RosterStudent second = student(course, "A222222");
+        RosterStudent untouched = student(course, "A333333");
+        entityManager.flush();
+
+        int updated = rosterStudentRepository.updateOrgStatus(List.of(first.getId(), second.getId()), OrgStatus.MEMBER);
+        entityManager.clear();
+
+        assertEquals(2, updated);
+        assertEquals(OrgStatus.MEMBER, orgStatusOf(first));
+        assertEquals(OrgStatus.MEMBER, orgStatusOf(second));
+        assertEquals(OrgStatus.NONE, orgStatusOf(untouched));
+    }
+}
@@ -0,0 +1,68 @@
+package edu.ucsb.cs156.frontiers.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.frontiers.entities.User;
+import edu.ucsb.cs156.frontiers.services.wiremock.WiremockService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/**
+ * Runs the targeted UPDATEs of {@link UserRepository}, which must leave the columns they don't set alone.
+ */
+@DataJpaTest
+public class UserTargetedUpdateTests {
+
+    @MockitoBean
+    private WiremockService wiremockService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User reload(User user) {
+        entityManager.clear();
+        return userRepository.findById(user.getId()).orElseThrow();
+    }
+
+    @Test
+    public void profile_update_keeps_the_linked_github_account() {
+        User user = userRepository.save(User.builder().googleSub("115856948234298493496").email("cgaucho@ucsb.edu")
+                .fullName("Chris Gaucho").githubId(12345).githubLogin("cgaucho").build());
+
+        assertEquals(1, userRepository.updateProfile("115856948234298493496", "Chris G. Gaucho", "chris@ucsb.edu",
+                "Chris", "https://example.org/new.jpg"));
+        assertEquals(0, userRepository.updateProfile("104766735621183497251", "Someone Else", "else@ucsb.edu",
+                "Someone", "https://example.org/else.jpg"));
+
+        User updated = reload(user);
+        assertEquals("Chris G. Gaucho", updated.getFullName());
+        assertEquals("chris@ucsb.edu", updated.getEmail());
+        assertEquals("Chris", updated.getGivenName());
+        assertEquals("https://example.org/new.jpg", updated.getPictureUrl());
+        assertEquals(12345, updated.getGithubId());
+        assertEquals("cgaucho", updated.getGithubLogin());
+    }
+
+    @Test
+    public void linking_github_keeps_the_profile() {
+        User user = userRepository.save(User.builder().googleSub("115856948234298493496").email("chris@ucsb.edu")
+                .fullName("Chris G. Gaucho").build());
+
+        assertEquals(1, userRepository.updateGithubAccount(user.getId(), 12345, "cgaucho"));
+        assertEquals(1, userRepository.promoteToAdmin("115856948234298493496"));
+
+        User updated = reload(user);
+        assertEquals(12345, updated.getGithubId());
+        assertEquals("cgaucho", updated.getGithubLogin());
+        assertEquals("chris@ucsb.edu", updated.getEmail());
+        assertEquals("Chris G. Gaucho", updated.getFullName());
+        assertTrue(updated.getAdmin());
+    }
+}
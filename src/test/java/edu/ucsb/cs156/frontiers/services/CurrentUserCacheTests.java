@@ -0,0 +1,141 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.auditing.DateTimeProvider;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import edu.ucsb.cs156.frontiers.entities.User;
+
+public class CurrentUserCacheTests {
+
+    private static final String SUBJECT = "115856948234298493496";
+
+    private final DateTimeProvider dateTimeProvider = mock(DateTimeProvider.class);
+
+    private Instant now = Instant.parse("2024-05-23T08:00:00.00Z");
+
+    private final User user = User.builder().googleSub(SUBJECT).email("cgaucho@ucsb.edu").build();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final Supplier<User> loadUser = () -> {
+        loads.incrementAndGet();
+        return user;
+    };
+
+    private final Supplier<User> loadNoUser = () -> {
+        loads.incrementAndGet();
+        return null;
+    };
+
+    @BeforeEach
+    public void setUp() {
+        doAnswer(invocation -> Optional.of(now)).when(dateTimeProvider).getNow();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    private void startRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @Test
+    public void user_is_looked_up_once_per_request() {
+        CurrentUserCache cache = new CurrentUserCache(dateTimeProvider, Duration.ZERO);
+
+        startRequest();
+        assertSame(user, cache.get(SUBJECT, loadUser));
+        assertSame(user, cache.get(SUBJECT, loadUser));
+        assertEquals(1, loads.get());
+
+        startRequest();
+        assertSame(user, cache.get(SUBJECT, loadUser));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void missing_user_is_looked_up_once_per_request() {
+        CurrentUserCache cache = new CurrentUserCache(dateTimeProvider, Duration.ZERO);
+
+        startRequest();
+        assertNull(cache.get(SUBJECT, loadNoUser));
+        assertNull(cache.get(SUBJECT, loadNoUser));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void without_a_request_or_ttl_user_is_looked_up_every_time() {
+        CurrentUserCache cache = new CurrentUserCache(dateTimeProvider, Duration.ZERO);
+
+        cache.get(SUBJECT, loadUser);
+        cache.get(SUBJECT, loadUser);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void with_a_ttl_user_is_kept_across_requests_until_it_expires() {
+        CurrentUserCache cache = new CurrentUserCache(dateTimeProvider, Duration.ofSeconds(30));
+
+        assertSame(user, cache.get(SUBJECT, loadUser));
+        now = now.plusSeconds(29);
+        assertSame(user, cache.get(SUBJECT, loadUser));
+        assertEquals(1, loads.get());
+
+        now = now.plusSeconds(1);
+        assertSame(user, cache.get(SUBJECT, loadUser));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void with_a_ttl_missing_user_is_not_kept() {
+        CurrentUserCache cache = new CurrentUserCache(dateTimeProvider, Duration.ofSeconds(30));
+
+        assertNull(cache.get(SUBJECT, loadNoUser));
+        assertNull(cache.get(SUBJECT, loadNoUser));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void evicted_user_is_looked_up_again_in_the_same_request() {
+        CurrentUserCache cache = new CurrentUserCache(dateTimeProvider, Duration.ofSeconds(30));
+
+        startRequest();
+        cache.get(SUBJECT, loadUser);
+        cache.evict(SUBJECT);
+        cache.get(SUBJECT, loadUser);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void evict_without_a_subject_or_request_does_nothing() {
+        CurrentUserCache cache = new CurrentUserCache(dateTimeProvider, Duration.ofSeconds(30));
+
+        cache.get(SUBJECT, loadUser);
+        cache.evict(null);
+        cache.get(SUBJECT, loadUser);
+
+        assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,220 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.headerDoesNotExist;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+public class GithubConditionalRequestCacheTests {
+
+    private static final String URL = "https://api.github.com/repos/ucsb-cs156/repo1";
+
+    private final GithubConditionalRequestCache cache = new GithubConditionalRequestCache(8);
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final MockRestServiceServer server;
+
+    public GithubConditionalRequestCacheTests() {
+        restTemplate.getInterceptors().add(cache);
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+    }
+
+    private static HttpHeaders headers(String name, String value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(name, value);
+        return headers;
+    }
+
+    @Test
+    public void not_modified_is_served_from_cache() {
+        server.expect(requestTo(URL))
+                .andExpect(headerDoesNotExist(HttpHeaders.IF_NONE_MATCH))
+                .andRespond(withSuccess().headers(headers(HttpHeaders.ETAG, "\"abc\"")).body("[1]"));
+        server.expect(requestTo(URL))
+                .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"abc\""))
+                .andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+
+        assertEquals("[1]", restTemplate.getForObject(URL, String.class));
+        ResponseEntity<String> second = restTemplate.getForEntity(URL, String.class);
+
+        server.verify();
+        assertEquals(HttpStatus.OK, second.getStatusCode());
+        assertEquals("[1]", second.getBody());
+        assertEquals("\"abc\"", second.getHeaders().getETag());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void last_modified_is_sent_as_if_modified_since() {
+        String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+        server.expect(requestTo(URL))
+                .andRespond(withSuccess().headers(headers(HttpHeaders.LAST_MODIFIED, lastModified)).body("[1]"));
+        server.expect(requestTo(URL))
+                .andExpect(header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(headerDoesNotExist(HttpHeaders.IF_NONE_MATCH))
+                .andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+
+        restTemplate.getForObject(URL, String.class);
+        assertEquals("[1]", restTemplate.getForObject(URL, String.class));
+        server.verify();
+    }
+
+    @Test
+    public void changed_response_replaces_cached_one() {
+        server.expect(requestTo(URL))
+                .andRespond(withSuccess().headers(headers(HttpHeaders.ETAG, "\"abc\"")).body("[1]"));
+        server.expect(requestTo(URL))
+                .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"abc\""))
+                .andRespond(withSuccess().headers(headers(HttpHeaders.ETAG, "\"def\"")).body("[1,2]"));
+        server.expect(requestTo(URL))
+                .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"def\""))
+                .andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+
+        restTemplate.getForObject(URL, String.class);
+        assertEquals("[1,2]", restTemplate.getForObject(URL, String.class));
+        assertEquals("[1,2]", restTemplate.getForObject(URL, String.class));
+        server.verify();
+    }
+
+    @Test
+    public void responses_without_validators_are_not_cached() {
+        server.expect(requestTo(URL)).andRespond(withSuccess().body("[1]"));
+        server.expect(requestTo(URL))
+                .andExpect(headerDoesNotExist(HttpHeaders.IF_NONE_MATCH))
+                .andExpect(headerDoesNotExist(HttpHeaders.IF_MODIFIED_SINCE))
+                .andRespond(withSuccess().body("[1]"));
+
+        restTemplate.getForObject(URL, String.class);
+        restTemplate.getForObject(URL, String.class);
+        server.verify();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void error_responses_are_not_cached() {
+        server.expect(requestTo(URL))
+                .andRespond(withStatus(HttpStatus.NOT_FOUND).headers(headers(HttpHeaders.ETAG, "\"abc\"")));
+
+        assertThrows(HttpClientErrorException.class, () -> restTemplate.getForObject(URL, String.class));
+        server.verify();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void non_get_requests_are_passed_through() {
+        server.expect(requestTo(URL))
+                .andExpect(method(HttpMethod.POST))
+                .andRespond(withSuccess().headers(headers(HttpHeaders.ETAG, "\"abc\"")).body("{}"));
+
+        restTemplate.postForObject(URL, "{}", String.class);
+        server.verify();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void least_recently_used_entry_is_evicted() {
+        String other = "https://api.github.com/repos/ucsb-cs156/repo2";
+        String third = "https://api.github.com/app/installations/1";
+        server.expect(requestTo(URL)).andRespond(withSuccess().headers(headers(HttpHeaders.ETAG, "\"a\"")).body("aaaa"));
+        server.expect(requestTo(other)).andRespond(withSuccess().headers(headers(HttpHeaders.ETAG, "\"b\"")).body("bbbb"));
+        server.expect(requestTo(URL))
+                .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"a\""))
+                .andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+        server.expect(requestTo(third)).andRespond(withSuccess().headers(headers(HttpHeaders.ETAG, "\"c\"")).body("cccc"));
+        server.expect(requestTo(other))
+                .andExpect(headerDoesNotExist(HttpHeaders.IF_NONE_MATCH))
+                .andRespond(withSuccess().body("bbbb"));
+
+        restTemplate.getForObject(URL, String.class);
+        restTemplate.getForObject(other, String.class);
+        restTemplate.getForObject(URL, String.class);
+        restTemplate.getForObject(third, String.class);
+        restTemplate.getForObject(other, String.class);
+
+        server.verify();
+        assertEquals(2, cache.size());
+        assertEquals(8, cache.bytes());
+    }
+
+    @Test
+    public void cached_response_outlives_the_token_it_was_fetched_with() {
+        server.expect(requestTo(URL))
+                .andExpect(header(HttpHeaders.AUTHORIZATION, "Bearer token-a"))
+                .andRespond(withSuccess().headers(headers(HttpHeaders.ETAG, "\"abc\"")).body("[1]"));
+        server.expect(requestTo(URL))
+                .andExpect(header(HttpHeaders.AUTHORIZATION, "Bearer token-b"))
+                .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"abc\""))
+                .andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+
+        exchange("Bearer token-a");
+        assertEquals("[1]", exchange("Bearer token-b"));
+
+        server.verify();
+        assertEquals(1, cache.size());
+    }
+
+    private String exchange(String authorization) {
+        return restTemplate.exchange(URL, HttpMethod.GET,
+                new HttpEntity<>(headers(HttpHeaders.AUTHORIZATION, authorization)), String.class).getBody();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "https://api.github.com/orgs/ucsb-cs156/members?per_page=100",
+            "https://api.github.com/organizations/1234567/members?per_page=100&page=2",
+    })
+    public void streamed_member_lists_are_not_cached(String members) {
+        server.expect(requestTo(members))
+                .andRespond(withSuccess().headers(headers(HttpHeaders.ETAG, "\"abc\"")).body("[1]"));
+        server.expect(requestTo(members))
+                .andExpect(headerDoesNotExist(HttpHeaders.IF_NONE_MATCH))
+                .andRespond(withSuccess().headers(headers(HttpHeaders.ETAG, "\"abc\"")).body("[1]"));
+
+        restTemplate.getForObject(members, String.class);
+        restTemplate.getForObject(members, String.class);
+
+        server.verify();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void response_larger_than_the_cache_is_passed_on_whole_but_not_cached() {
+        server.expect(requestTo(URL))
+                .andRespond(withSuccess().headers(headers(HttpHeaders.ETAG, "\"abc\"")).body("[1,2,3,4,5]"));
+        server.expect(requestTo(URL))
+                .andExpect(headerDoesNotExist(HttpHeaders.IF_NONE_MATCH))
+                .andRespond(withSuccess().body("[1]"));
+
+        ResponseEntity<String> first = restTemplate.getForEntity(URL, String.class);
+        restTemplate.getForObject(URL, String.class);
+
+        server.verify();
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertEquals("\"abc\"", first.getHeaders().getETag());
+        assertEquals("[1,2,3,4,5]", first.getBody());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void cached_response_reports_status_text() throws Exception {
+        GithubConditionalRequestCache.CachedResponse response =
+                new GithubConditionalRequestCache.CachedResponse(HttpStatus.OK, new HttpHeaders(), new byte[0]);
+        assertEquals("OK", response.getStatusText());
+        assertEquals("OK", new GithubConditionalRequestCache.PartlyReadResponse(response, new byte[0]).getStatusText());
+    }
+}
@@ -0,0 +1,232 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.auditing.DateTimeProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class GithubRateLimitTrackerTests {
+
+    private static final String TOKEN = "Bearer token-for-ucsb-cs156";
+
+    private static final String OTHER_TOKEN = "Bearer token-for-ucsb-cs148";
+
+    private final Instant now = Instant.parse("2024-05-23T08:00:00.00Z");
+
+    private final DateTimeProvider dateTimeProvider = mock(DateTimeProvider.class);
+
+    private final List<Duration> sleeps = new ArrayList<>();
+
+    private GithubRateLimitTracker tracker;
+
+    @BeforeEach
+    public void setup() {
+        doReturn(Optional.of(now)).when(dateTimeProvider).getNow();
+        tracker = new GithubRateLimitTracker(dateTimeProvider, 60) {
+            @Override
+            void sleep(Duration duration) {
+                sleeps.add(duration);
+            }
+        };
+    }
+
+    private HttpHeaders headers(String... namesAndValues) {
+        HttpHeaders headers = new HttpHeaders();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            headers.add(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return headers;
+    }
+
+    private HttpRequest request(HttpMethod method, String url, String authorization) {
+        HttpRequest request = mock(HttpRequest.class);
+        doReturn(method).when(request).getMethod();
+        doReturn(URI.create(url)).when(request).getURI();
+        doReturn(headers("Authorization", authorization)).when(request).getHeaders();
+        return request;
+    }
+
+    @Test
+    public void no_wait_without_rate_limit_headers() throws Exception {
+        tracker.record(TOKEN, HttpStatus.OK, headers("X-RateLimit-Remaining", "4999"));
+        tracker.awaitCapacity(TOKEN);
+        assertEquals(List.of(), sleeps);
+    }
+
+    @Test
+    public void retry_after_pauses_requests() throws Exception {
+        tracker.record(TOKEN, HttpStatus.FORBIDDEN, headers("Retry-After", "30"));
+        tracker.awaitCapacity(TOKEN);
+        assertEquals(List.of(Duration.ofSeconds(30)), sleeps);
+    }
+
+    @Test
+    public void exhausted_primary_limit_pauses_until_reset() throws Exception {
+        tracker.record(TOKEN, HttpStatus.FORBIDDEN, headers("X-RateLimit-Remaining", "0",
+                "X-RateLimit-Reset", Long.toString(now.plusSeconds(120).getEpochSecond())));
+        tracker.awaitCapacity(TOKEN);
+        assertEquals(List.of(Duration.ofSeconds(120)), sleeps);
+    }
+
+    @Test
+    public void rate_limit_status_without_headers_backs_off_for_a_minute() throws Exception {
+        tracker.record(TOKEN, HttpStatus.TOO_MANY_REQUESTS, headers());
+        tracker.awaitCapacity(TOKEN);
+        assertEquals(List.of(GithubRateLimitTracker.DEFAULT_BACKOFF), sleeps);
+    }
+
+    @Test
+    public void exhausted_limit_without_reset_backs_off_for_a_minute() throws Exception {
+        tracker.record(TOKEN, HttpStatus.FORBIDDEN, headers("X-RateLimit-Remaining", "0"));
+        assertEquals(now.plus(GithubRateLimitTracker.DEFAULT_BACKOFF), tracker.currentPause(TOKEN));
+    }
+
+    @Test
+    public void plain_forbidden_does_not_pause() {
+        tracker.record(TOKEN, HttpStatus.FORBIDDEN, headers());
+        assertEquals(Instant.EPOCH, tracker.currentPause(TOKEN));
+    }
+
+    @Test
+    public void pauses_are_extended_but_never_shortened() {
+        tracker.record(TOKEN, HttpStatus.FORBIDDEN, headers("Retry-After", "60"));
+        tracker.record(TOKEN, HttpStatus.FORBIDDEN, headers("Retry-After", "10"));
+        assertEquals(now.plusSeconds(60), tracker.currentPause(TOKEN));
+        tracker.record(TOKEN, HttpStatus.FORBIDDEN, headers("Retry-After", "90"));
+        assertEquals(now.plusSeconds(90), tracker.currentPause(TOKEN));
+    }
+
+    @Test
+    public void retry_after_as_http_date_pauses_until_that_date() {
+        tracker.record(TOKEN, HttpStatus.FORBIDDEN, headers("Retry-After", "Thu, 23 May 2024 08:01:30 GMT"));
+        assertEquals(now.plusSeconds(90), tracker.currentPause(TOKEN));
+    }
+
+    @Test
+    public void unparseable_headers_back_off_for_a_minute() {
+        tracker.record(TOKEN, HttpStatus.FORBIDDEN, headers("Retry-After", "soon"));
+        tracker.record(OTHER_TOKEN, HttpStatus.FORBIDDEN, headers("X-RateLimit-Remaining", "0",
+                "X-RateLimit-Reset", "later"));
+        assertEquals(now.plus(GithubRateLimitTracker.DEFAULT_BACKOFF), tracker.currentPause(TOKEN));
+        assertEquals(now.plus(GithubRateLimitTracker.DEFAULT_BACKOFF), tracker.currentPause(OTHER_TOKEN));
+    }
+
+    @Test
+    public void pause_only_applies_to_the_throttled_token() throws Exception {
+        ClientHttpResponse throttled = mock(ClientHttpResponse.class);
+        doReturn(HttpStatus.FORBIDDEN).when(throttled).getStatusCode();
+        doReturn(headers("Retry-After", "30")).when(throttled).getHeaders();
+        ClientHttpResponse ok = mock(ClientHttpResponse.class);
+        doReturn(HttpStatus.OK).when(ok).getStatusCode();
+        doReturn(new HttpHeaders()).when(ok).getHeaders();
+        ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+        doReturn(throttled, ok, ok).when(execution).execute(any(), any());
+
+        tracker.intercept(request(HttpMethod.GET, "https://api.github.com/orgs/ucsb-cs156/members", TOKEN), new byte[0], execution);
+        tracker.intercept(request(HttpMethod.GET, "https://api.github.com/orgs/ucsb-cs148/members", OTHER_TOKEN), new byte[0], execution);
+        assertEquals(List.of(), sleeps);
+
+        tracker.intercept(request(HttpMethod.GET, "https://api.github.com/orgs/ucsb-cs156/members", TOKEN), new byte[0], execution);
+        assertEquals(List.of(Duration.ofSeconds(30)), sleeps);
+    }
+
+    @Test
+    public void requests_without_authorization_share_one_pause() throws Exception {
+        HttpRequest anonymous = mock(HttpRequest.class);
+        doReturn(HttpMethod.GET).when(anonymous).getMethod();
+        doReturn(new HttpHeaders()).when(anonymous).getHeaders();
+        tracker.record("", HttpStatus.TOO_MANY_REQUESTS, headers());
+        ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+        ClientHttpResponse ok = mock(ClientHttpResponse.class);
+        doReturn(HttpStatus.OK).when(ok).getStatusCode();
+        doReturn(new HttpHeaders()).when(ok).getHeaders();
+        doReturn(ok).when(execution).execute(any(), any());
+
+        tracker.intercept(anonymous, new byte[0], execution);
+
+        assertEquals(List.of(GithubRateLimitTracker.DEFAULT_BACKOFF), sleeps);
+    }
+
+    @Test
+    public void passed_pauses_are_forgotten() {
+        tracker.record(TOKEN, HttpStatus.FORBIDDEN, headers("Retry-After", "0"));
+        tracker.record(OTHER_TOKEN, HttpStatus.FORBIDDEN, headers("Retry-After", "30"));
+        assertEquals(Instant.EPOCH, tracker.currentPause(TOKEN));
+        assertEquals(now.plusSeconds(30), tracker.currentPause(OTHER_TOKEN));
+    }
+
+    @Test
+    public void content_requests_are_spaced_out_but_gets_and_token_requests_are_not() throws Exception {
+        HttpRequest post = request(HttpMethod.POST, "https://api.github.com/orgs/ucsb-cs156/repos", TOKEN);
+        HttpRequest tokenRequest = request(HttpMethod.POST, "https://api.github.com/app/installations/1/access_tokens", "Bearer app.jwt");
+        HttpRequest get = request(HttpMethod.GET, "https://api.github.com/orgs/ucsb-cs156/members", TOKEN);
+        ClientHttpResponse response = mock(ClientHttpResponse.class);
+        doReturn(HttpStatus.OK).when(response).getStatusCode();
+        doReturn(new HttpHeaders()).when(response).getHeaders();
+        ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+        doReturn(response).when(execution).execute(any(), any());
+
+        assertSame(response, tracker.intercept(post, new byte[0], execution));
+        assertSame(response, tracker.intercept(get, new byte[0], execution));
+        assertSame(response, tracker.intercept(tokenRequest, new byte[0], execution));
+        assertSame(response, tracker.intercept(post, new byte[0], execution));
+
+        assertEquals(List.of(Duration.ofSeconds(1)), sleeps);
+    }
+
+    @Test
+    public void interrupted_wait_is_reported_as_io_exception() throws Exception {
+        GithubRateLimitTracker interrupted = new GithubRateLimitTracker(dateTimeProvider, 60) {
+            @Override
+            void sleep(Duration duration) throws InterruptedException {
+                throw new InterruptedException();
+            }
+        };
+        interrupted.record(TOKEN, HttpStatus.FORBIDDEN, headers("Retry-After", "30"));
+        HttpRequest get = request(HttpMethod.GET, "https://api.github.com/orgs/ucsb-cs156/members", TOKEN);
+        ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+
+        assertThrows(InterruptedIOException.class, () -> interrupted.intercept(get, new byte[0], execution));
+        assertTrue(Thread.interrupted());
+        verify(execution, never()).execute(any(), any());
+    }
+
+    @Test
+    public void isRateLimited_recognizes_rate_limit_responses() {
+        assertTrue(GithubRateLimitTracker.isRateLimited(
+                HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "", null, new byte[0], null)));
+        assertTrue(GithubRateLimitTracker.isRateLimited(
+                HttpClientErrorException.create(HttpStatus.FORBIDDEN, "", headers("Retry-After", "5"), new byte[0], null)));
+        assertTrue(GithubRateLimitTracker.isRateLimited(
+                HttpClientErrorException.create(HttpStatus.FORBIDDEN, "", headers("X-RateLimit-Remaining", "0"), new byte[0], null)));
+        assertFalse(GithubRateLimitTracker.isRateLimited(
+                HttpClientErrorException.create(HttpStatus.FORBIDDEN, "", headers("X-RateLimit-Remaining", "10"), new byte[0], null)));
+        assertFalse(GithubRateLimitTracker.isRateLimited(
+                HttpClientErrorException.create(HttpStatus.NOT_FOUND, "", null, new byte[0], null)));
+    }
+}
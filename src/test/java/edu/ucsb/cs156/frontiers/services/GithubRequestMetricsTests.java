@@ -0,0 +1,141 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+public class GithubRequestMetricsTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final GithubRequestMetrics metrics = new GithubRequestMetrics(meterRegistry);
+
+    private final ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+
+    private HttpRequest request(HttpMethod method, String url) {
+        HttpRequest request = mock(HttpRequest.class);
+        doReturn(method).when(request).getMethod();
+        doReturn(URI.create(url)).when(request).getURI();
+        return request;
+    }
+
+    private ClientHttpResponse response(HttpStatus status, HttpHeaders headers) throws IOException {
+        ClientHttpResponse response = mock(ClientHttpResponse.class);
+        doReturn(status).when(response).getStatusCode();
+        doReturn(headers).when(response).getHeaders();
+        return response;
+    }
+
+    private long requests(String method, String route, String status) {
+        return meterRegistry.get("frontiers.github.requests")
+                .tag("method", method)
+                .tag("route", route)
+                .tag("status", status)
+                .timer()
+                .count();
+    }
+
+    private double remaining(String resource) {
+        return meterRegistry.get("frontiers.github.ratelimit.remaining").tag("resource", resource).gauge().value();
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "/app,                                                  /app",
+            "/app/installations/12345,                              /app/installations/{installation_id}",
+            "/app/installations/12345/access_tokens,                /app/installations/{installation_id}/access_tokens",
+            "/orgs/ucsb-cs156/members,                              /orgs/{org}/members",
+            "/organizations/1234567/members,                        /organizations/{organization_id}/members",
+            "/orgs/ucsb-cs156/repos,                                /orgs/{org}/repos",
+            "/repos/ucsb-cs156/jpa00-cgaucho,                       /repos/{owner}/{repo}",
+            "/repos/ucsb-cs156/jpa00-cgaucho/collaborators/cgaucho, /repos/{owner}/{repo}/collaborators/{username}",
+            "/repos/ucsb-cs156/jpa00-cgaucho/issues,                other",
+            "/user,                                                 other",
+    })
+    public void paths_are_tagged_with_their_route(String path, String route) {
+        assertEquals(route, GithubRequestMetrics.route(path));
+    }
+
+    @Test
+    public void responses_are_timed_by_route_and_status() throws Exception {
+        ClientHttpResponse created = response(HttpStatus.CREATED, new HttpHeaders());
+        doReturn(created).when(execution).execute(any(), any());
+        HttpRequest request = request(HttpMethod.POST, "https://api.github.com/orgs/ucsb-cs156/repos");
+
+        assertSame(created, metrics.intercept(request, new byte[0], execution));
+        metrics.intercept(request, new byte[0], execution);
+
+        assertEquals(2, requests("POST", "/orgs/{org}/repos", "201"));
+    }
+
+    @Test
+    public void failed_exchanges_are_timed_as_io_errors() throws Exception {
+        doThrow(new IOException("connection reset")).when(execution).execute(any(), any());
+        HttpRequest request = request(HttpMethod.GET, "https://api.github.com/orgs/ucsb-cs156/members?per_page=100");
+
+        assertThrows(IOException.class, () -> metrics.intercept(request, new byte[0], execution));
+
+        assertEquals(1, requests("GET", "/orgs/{org}/members", "IO_ERROR"));
+    }
+
+    @Test
+    public void remaining_rate_limit_is_tracked_per_resource() throws Exception {
+        HttpHeaders core = new HttpHeaders();
+        core.add("X-RateLimit-Resource", "core");
+        core.add("X-RateLimit-Remaining", "4999");
+        HttpHeaders laterCore = new HttpHeaders();
+        laterCore.add("X-RateLimit-Resource", "core");
+        laterCore.add("X-RateLimit-Remaining", "4998");
+        HttpHeaders search = new HttpHeaders();
+        search.add("X-RateLimit-Resource", "search");
+        search.add("X-RateLimit-Remaining", "29");
+        ClientHttpResponse first = response(HttpStatus.OK, core);
+        ClientHttpResponse second = response(HttpStatus.OK, laterCore);
+        ClientHttpResponse third = response(HttpStatus.OK, search);
+        doReturn(first, second, third).when(execution).execute(any(), any());
+        HttpRequest request = request(HttpMethod.GET, "https://api.github.com/app");
+
+        metrics.intercept(request, new byte[0], execution);
+        metrics.intercept(request, new byte[0], execution);
+        metrics.intercept(request, new byte[0], execution);
+
+        assertEquals(4998, remaining("core"));
+        assertEquals(29, remaining("search"));
+    }
+
+    @Test
+    public void responses_without_rate_limit_headers_publish_no_gauge() throws Exception {
+        HttpHeaders resourceOnly = new HttpHeaders();
+        resourceOnly.add("X-RateLimit-Resource", "core");
+        HttpHeaders remainingOnly = new HttpHeaders();
+        remainingOnly.add("X-RateLimit-Remaining", "4999");
+        ClientHttpResponse first = response(HttpStatus.OK, resourceOnly);
+        ClientHttpResponse second = response(HttpStatus.OK, remainingOnly);
+        doReturn(first, second).when(execution).execute(any(), any());
+        HttpRequest request = request(HttpMethod.GET, "https://api.github.com/app");
+
+        metrics.intercept(request, new byte[0], execution);
+        metrics.intercept(request, new byte[0], execution);
+
+        assertNull(meterRegistry.find("frontiers.github.ratelimit.remaining").gauge());
+    }
+}
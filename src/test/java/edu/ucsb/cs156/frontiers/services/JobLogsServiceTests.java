@@ -4,12 +4,16 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
+import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.data.domain.Limit;
 
 import edu.ucsb.cs156.frontiers.entities.Job;
+import edu.ucsb.cs156.frontiers.entities.JobLogLine;
+import edu.ucsb.cs156.frontiers.repositories.JobLogLineRepository;
 import edu.ucsb.cs156.frontiers.repositories.JobsRepository;
 import edu.ucsb.cs156.frontiers.services.jobs.JobService;
 
@@ -17,6 +21,8 @@ public class JobLogsServiceTests {
 
   @Mock private JobsRepository jobRepository;
 
+  @Mock private JobLogLineRepository jobLogLineRepository;
+
   @InjectMocks private JobService jobService;
 
   @BeforeEach
@@ -24,21 +30,76 @@ public class JobLogsServiceTests {
     MockitoAnnotations.openMocks(this);
   }
 
+  private JobLogLine line(int seq, String message) {
+    return JobLogLine.builder().jobId(1L).seq(seq).level("INFO").message(message).build();
+  }
+
+  @Test
+  void test_getJobLogs_with_log_lines() {
+    // Arrange
+    Long jobId = 1L;
+    Job job = Job.builder().id(jobId).build();
+    when(jobRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogLineRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(1L, 0, Limit.unlimited()))
+        .thenReturn(List.of(line(0, "This is a job log"), line(1, "Second line")));
+
+    // Act
+    String result = jobService.getJobLogs(jobId, 0, null);
+
+    // Assert
+    assertEquals("This is a job log\nSecond line", result);
+  }
+
+  @Test
+  void test_getJobLogs_with_offset_and_limit() {
+    // Arrange
+    Long jobId = 1L;
+    Job job = Job.builder().id(jobId).build();
+    when(jobRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogLineRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(1L, 5, Limit.of(2)))
+        .thenReturn(List.of(line(5, "sixth"), line(6, "seventh")));
+
+    // Act
+    String result = jobService.getJobLogs(jobId, 5, 2);
+
+    // Assert
+    assertEquals("sixth\nseventh", result);
+  }
+
   @Test
-  void test_getJobLogs_with_log() {
+  void test_getJobLogs_falls_back_to_log_of_older_jobs() {
     // Arrange
     Long jobId = 1L;
     Job job = Job.builder().build();
     job.setLog("This is a job log");
     when(jobRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogLineRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(1L, 0, Limit.unlimited()))
+        .thenReturn(List.of());
 
     // Act
-    String result = jobService.getJobLogs(jobId);
+    String result = jobService.getJobLogs(jobId, 0, null);
 
     // Assert
     assertEquals("This is a job log", result);
   }
 
+  @Test
+  void test_getJobLogs_past_end_of_log_of_older_job() {
+    // Arrange
+    Long jobId = 1L;
+    Job job = Job.builder().build();
+    job.setLog("This is a job log");
+    when(jobRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogLineRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(1L, 3, Limit.unlimited()))
+        .thenReturn(List.of());
+
+    // Act
+    String result = jobService.getJobLogs(jobId, 3, null);
+
+    // Assert
+    assertEquals("", result);
+  }
+
   @Test
   void test_getJobLogs_with_null_log() {
     // Arrange
@@ -46,9 +107,11 @@ public class JobLogsServiceTests {
     Job job = Job.builder().build();
     job.setLog(null);
     when(jobRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogLineRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(2L, 0, Limit.unlimited()))
+        .thenReturn(List.of());
 
     // Act
-    String result = jobService.getJobLogs(jobId);
+    String result = jobService.getJobLogs(jobId, 0, null);
 
     // Assert
     assertEquals("", result);
@@ -61,6 +124,6 @@ public class JobLogsServiceTests {
     when(jobRepository.findById(jobId)).thenReturn(Optional.empty());
 
     // Act & Assert
-    assertThrows(IllegalArgumentException.class, () -> jobService.getJobLogs(jobId));
+    assertThrows(IllegalArgumentException.class, () -> jobService.getJobLogs(jobId, 0, null));
   }
 }
@@ -0,0 +1,265 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+
+import edu.ucsb.cs156.frontiers.entities.Job;
+import edu.ucsb.cs156.frontiers.errors.JobAlreadyRunningException;
+import edu.ucsb.cs156.frontiers.errors.JobQueueFullException;
+import edu.ucsb.cs156.frontiers.repositories.JobLogLineRepository;
+import edu.ucsb.cs156.frontiers.repositories.JobsRepository;
+import edu.ucsb.cs156.frontiers.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.frontiers.services.jobs.JobEventBroadcaster;
+import edu.ucsb.cs156.frontiers.services.jobs.JobExecutor;
+import edu.ucsb.cs156.frontiers.services.jobs.JobService;
+
+public class JobServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogLineRepository jobLogLineRepository;
+
+  @Mock private JobEventBroadcaster jobEventBroadcaster;
+
+  @Mock private JobExecutor jobExecutor;
+
+  @Mock private CurrentUserService currentUserService;
+
+  @Spy private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @InjectMocks private JobService jobService;
+
+  private final List<Runnable> submitted = new ArrayList<>();
+
+  private final JobContextConsumer job = ctx -> ctx.log("working");
+
+  private final JobContextConsumer otherJob = ctx -> ctx.log("other work");
+
+  private final JobContextConsumer failingJob =
+      ctx -> {
+        throw new IllegalStateException("GitHub is down");
+      };
+
+  private long runs(JobContextConsumer jobFunction, String status) {
+    return meterRegistry
+        .get("frontiers.jobs.run")
+        .tag("type", jobFunction.getClass().getSimpleName())
+        .tag("status", status)
+        .timer()
+        .count();
+  }
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    doAnswer(invocation -> submitted.add(invocation.getArgument(0)))
+        .when(jobExecutor)
+        .submit(any(Runnable.class));
+  }
+
+  @Test
+  void job_is_queued_and_then_run() {
+    Job queued = jobService.runAsJob(job, 5L);
+
+    assertEquals("queued", queued.getStatus());
+    assertEquals(job.getClass().getSimpleName(), queued.getJobType());
+    assertEquals(5L, queued.getCourseId());
+    verify(jobEventBroadcaster).jobQueued(queued);
+
+    submitted.get(0).run();
+
+    assertEquals("complete", queued.getStatus());
+    verify(jobsRepository, times(3)).save(queued);
+    verify(jobEventBroadcaster).statusChanged(queued);
+    verify(jobEventBroadcaster).jobFinished(queued);
+    assertEquals(1, runs(job, "complete"));
+  }
+
+  @Test
+  void failed_job_is_timed_as_an_error() {
+    Job queued = jobService.runAsJob(failingJob);
+
+    submitted.get(0).run();
+
+    assertEquals("error", queued.getStatus());
+    assertEquals(1, runs(failingJob, "error"));
+  }
+
+  @Test
+  void second_launch_for_the_same_course_returns_the_active_job() {
+    Job first = jobService.runAsJob(job, 5L);
+    Job second = jobService.runAsJob(job, 5L);
+
+    assertSame(first, second);
+    assertEquals(1, submitted.size());
+
+    submitted.get(0).run();
+    Job third = jobService.runAsJob(job, 5L);
+
+    assertNotSame(first, third);
+    assertEquals(2, submitted.size());
+  }
+
+  @Test
+  void new_job_is_refused_while_one_is_active_for_the_course() {
+    Job first = jobService.runAsNewJob(job, 5L);
+
+    JobAlreadyRunningException e =
+        assertThrows(JobAlreadyRunningException.class, () -> jobService.runAsNewJob(job, 5L));
+    assertEquals(
+        "A %s is already queued or running for course 5; please wait for it to finish and try again."
+            .formatted(first.getJobType()),
+        e.getMessage());
+    assertEquals(1, submitted.size());
+    verify(jobsRepository, times(1)).save(any());
+
+    submitted.get(0).run();
+    assertNotSame(first, jobService.runAsNewJob(job, 5L));
+  }
+
+  @Test
+  void new_job_that_loses_the_race_for_the_course_is_refused_and_deleted() {
+    when(jobsRepository.save(any(Job.class))).thenAnswer(invocation -> {
+      jobService.runAsJob(job, 5L);
+      return invocation.getArgument(0);
+    }).thenAnswer(invocation -> invocation.getArgument(0));
+
+    assertThrows(JobAlreadyRunningException.class, () -> jobService.runAsNewJob(job, 5L));
+
+    verify(jobsRepository).delete(any(Job.class));
+    assertEquals(1, submitted.size());
+  }
+
+  @Test
+  void other_courses_and_other_job_types_are_not_deduplicated() {
+    Job first = jobService.runAsJob(job, 5L);
+
+    assertNotSame(first, jobService.runAsJob(job, 6L));
+    assertNotSame(first, jobService.runAsJob(otherJob, 5L));
+    assertEquals(3, submitted.size());
+  }
+
+  @Test
+  void jobs_without_a_course_are_not_deduplicated() {
+    Job first = jobService.runAsJob(job);
+
+    assertNotSame(first, jobService.runAsJob(job));
+    assertEquals(2, submitted.size());
+  }
+
+  @Test
+  void rejected_job_is_marked_as_failed_and_does_not_block_the_course() {
+    doThrow(new RejectedExecutionException()).doAnswer(invocation -> submitted.add(invocation.getArgument(0)))
+        .when(jobExecutor)
+        .submit(any(Runnable.class));
+
+    assertThrows(JobQueueFullException.class, () -> jobService.runAsJob(job, 5L));
+
+    ArgumentCaptor<Job> rejected = ArgumentCaptor.forClass(Job.class);
+    verify(jobEventBroadcaster).jobFinished(rejected.capture());
+    assertEquals("error", rejected.getValue().getStatus());
+
+    jobService.runAsJob(job, 5L);
+    assertEquals(1, submitted.size());
+  }
+
+  @Test
+  void job_that_cannot_be_saved_does_not_block_the_course() {
+    when(jobsRepository.save(any(Job.class))).thenThrow(new IllegalStateException("database is down"))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+
+    assertThrows(IllegalStateException.class, () -> jobService.runAsJob(job, 5L));
+    verify(jobEventBroadcaster, never()).jobQueued(any());
+
+    Job queued = jobService.runAsJob(job, 5L);
+    assertEquals("queued", queued.getStatus());
+    assertEquals(1, submitted.size());
+  }
+
+  @Test
+  void job_that_cannot_be_announced_is_marked_as_failed_and_does_not_block_the_course() {
+    doThrow(new IllegalStateException("broadcaster failed")).doNothing()
+        .when(jobEventBroadcaster)
+        .jobQueued(any());
+
+    assertThrows(IllegalStateException.class, () -> jobService.runAsJob(job, 5L));
+
+    ArgumentCaptor<Job> failed = ArgumentCaptor.forClass(Job.class);
+    verify(jobEventBroadcaster).jobFinished(failed.capture());
+    assertEquals("error", failed.getValue().getStatus());
+    assertEquals(0, submitted.size());
+
+    jobService.runAsJob(job, 5L);
+    assertEquals(1, submitted.size());
+  }
+
+  @Test
+  void launch_that_loses_the_race_for_the_course_deletes_its_job() {
+    List<Job> concurrent = new ArrayList<>();
+    when(jobsRepository.save(any(Job.class))).thenAnswer(invocation -> {
+      // another launch for the same course is saved and queued while this one is being saved
+      concurrent.add(jobService.runAsJob(job, 5L));
+      return invocation.getArgument(0);
+    }).thenAnswer(invocation -> invocation.getArgument(0));
+
+    Job returned = jobService.runAsJob(job, 5L);
+
+    assertSame(concurrent.get(0), returned);
+    verify(jobsRepository).delete(argThat(deleted -> deleted != returned));
+    assertEquals(1, submitted.size());
+  }
+
+  @Test
+  void course_is_released_even_if_the_final_save_fails() {
+    Job queued = jobService.runAsJob(job, 5L);
+    when(jobsRepository.save(queued)).thenReturn(queued).thenThrow(new IllegalStateException("database is down"));
+
+    submitted.get(0).run();
+
+    assertEquals("complete", queued.getStatus());
+    verify(jobEventBroadcaster).jobFinished(queued);
+    assertNotSame(queued, jobService.runAsJob(job, 5L));
+  }
+
+  @Test
+  void course_is_released_even_if_the_log_cannot_be_saved() {
+    Job queued = jobService.runAsJob(job, 5L);
+    when(jobLogLineRepository.saveAll(any())).thenThrow(new IllegalStateException("database is down"));
+
+    submitted.get(0).run();
+
+    assertEquals("complete", queued.getStatus());
+    verify(jobsRepository, times(3)).save(queued);
+    verify(jobEventBroadcaster).jobFinished(queued);
+    assertNotSame(queued, jobService.runAsJob(job, 5L));
+  }
+
+  @Test
+  void job_that_throws_an_error_is_marked_as_failed_and_releases_the_course() {
+    JobContextConsumer crashingJob =
+        ctx -> {
+          throw new StackOverflowError();
+        };
+    Job queued = jobService.runAsJob(crashingJob, 5L);
+
+    assertThrows(StackOverflowError.class, () -> submitted.get(0).run());
+
+    assertEquals("error", queued.getStatus());
+    verify(jobsRepository, times(3)).save(queued);
+    verify(jobEventBroadcaster).jobFinished(queued);
+    assertEquals(1, runs(crashingJob, "error"));
+    assertNotSame(queued, jobService.runAsJob(crashingJob, 5L));
+  }
+}
@@ -1,6 +1,7 @@
 package edu.ucsb.cs156.frontiers.services;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import edu.ucsb.cs156.frontiers.config.GithubClientConfig;
 import edu.ucsb.cs156.frontiers.entities.Course;
 import edu.ucsb.cs156.frontiers.errors.NoLinkedOrganizationException;
 import edu.ucsb.cs156.frontiers.services.wiremock.WiremockService;
@@ -8,6 +9,8 @@ import edu.ucsb.cs156.frontiers.testconfig.DummyClock;
 import edu.ucsb.cs156.frontiers.testconfig.TestConfig;
 import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -24,8 +27,10 @@ import org.springframework.http.MediaType;
 import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.client.ExpectedCount;
 import org.springframework.test.web.client.MockRestServiceServer;
 import org.springframework.test.web.client.match.MockRestRequestMatchers;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import javax.crypto.spec.SecretKeySpec;
 import java.io.UnsupportedEncodingException;
@@ -39,11 +44,19 @@ import java.security.spec.RSAPublicKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.contains;
@@ -55,8 +68,9 @@ import static org.springframework.test.web.client.response.MockRestResponseCreat
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
 
 @TestPropertySource(locations = "/testproperties.properties")
-@RestClientTest(JwtService.class)
+@RestClientTest({JwtService.class, GithubClientConfig.class, GithubRateLimitTracker.class, GithubConditionalRequestCache.class, GithubRequestMetrics.class})
 @AutoConfigureDataJpa
+@Import(SimpleMeterRegistry.class)
 public class JwtServiceTests {
 
 
@@ -65,6 +79,9 @@ public class JwtServiceTests {
     @Autowired
     private JwtService jwtService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @MockitoBean
     private WiremockService wiremockService;
 
@@ -86,6 +103,46 @@ public class JwtServiceTests {
         validateJwt(jwt, setInstant);
     }
 
+    @Test
+    public void app_jwt_is_reused_within_reuse_window() throws Exception {
+        Instant signedAt = setInstant.plus(10, ChronoUnit.DAYS);
+        doReturn(Optional.of(signedAt)).when(dateTimeProvider).getNow();
+        String first = jwtService.getJwt();
+
+        doReturn(Optional.of(signedAt.plus(3, ChronoUnit.MINUTES))).when(dateTimeProvider).getNow();
+        String second = jwtService.getJwt();
+
+        assertEquals(first, second);
+        validateJwt(second, signedAt);
+    }
+
+    @Test
+    public void app_jwt_is_signed_again_after_reuse_window() throws Exception {
+        Instant signedAt = setInstant.plus(20, ChronoUnit.DAYS);
+        doReturn(Optional.of(signedAt)).when(dateTimeProvider).getNow();
+        String first = jwtService.getJwt();
+
+        Instant later = signedAt.plus(JwtService.APP_JWT_REUSE_WINDOW);
+        doReturn(Optional.of(later)).when(dateTimeProvider).getNow();
+        String second = jwtService.getJwt();
+
+        assertNotEquals(first, second);
+        validateJwt(second, later);
+    }
+
+    @Test
+    public void app_jwt_is_signed_again_if_clock_moves_backwards() throws Exception {
+        Instant signedAt = setInstant.plus(30, ChronoUnit.DAYS);
+        doReturn(Optional.of(signedAt)).when(dateTimeProvider).getNow();
+        jwtService.getJwt();
+
+        Instant earlier = signedAt.minus(1, ChronoUnit.MINUTES);
+        doReturn(Optional.of(earlier)).when(dateTimeProvider).getNow();
+        String second = jwtService.getJwt();
+
+        validateJwt(second, earlier);
+    }
+
     @Test
     public void testObtainingInstallationToken() throws JsonProcessingException, NoSuchAlgorithmException, InvalidKeySpecException {
         String expectedResult = String.format("""
@@ -112,6 +169,118 @@ public class JwtServiceTests {
         assertEquals(expectedToken, token);
     }
 
+    private String tokenResponse(String token, Instant expiresAt) {
+        return String.format("""
+                {
+                  "token": "%s",
+                  "expires_at": "%s",
+                  "repository_selection": "all"
+                }
+                """, token, expiresAt.toString());
+    }
+
+    private double tokenCacheCount(String result) {
+        return meterRegistry.get("frontiers.github.installation.token.cache").tag("result", result).counter().count();
+    }
+
+    @Test
+    public void installation_token_is_reused_until_close_to_expiry() throws Exception {
+        Course course = Course.builder().installationId("cache-hit").orgName("cache-hit-org").build();
+        String expectedURL = "https://api.github.com/app/installations/cache-hit-org/access_tokens";
+        mockRestServiceServer.expect(ExpectedCount.once(), requestTo(expectedURL))
+                .andRespond(withSuccess(tokenResponse("ghs_first", setInstant.plus(1, ChronoUnit.HOURS)), MediaType.APPLICATION_JSON));
+        double hitsBefore = tokenCacheCount("hit");
+        double missesBefore = tokenCacheCount("miss");
+
+        doReturn(Optional.of(setInstant)).when(dateTimeProvider).getNow();
+        assertEquals("ghs_first", jwtService.getInstallationToken(course));
+        doReturn(Optional.of(setInstant.plus(50, ChronoUnit.MINUTES))).when(dateTimeProvider).getNow();
+        assertEquals("ghs_first", jwtService.getInstallationToken(course));
+
+        mockRestServiceServer.verify();
+        assertEquals(1, tokenCacheCount("miss") - missesBefore);
+        assertEquals(1, tokenCacheCount("hit") - hitsBefore);
+    }
+
+    @Test
+    public void installation_token_is_refreshed_ahead_of_expiry() throws Exception {
+        Course course = Course.builder().installationId("cache-refresh").orgName("cache-refresh-org").build();
+        String expectedURL = "https://api.github.com/app/installations/cache-refresh-org/access_tokens";
+        mockRestServiceServer.expect(ExpectedCount.once(), requestTo(expectedURL))
+                .andRespond(withSuccess(tokenResponse("ghs_first", setInstant.plus(1, ChronoUnit.HOURS)), MediaType.APPLICATION_JSON));
+        mockRestServiceServer.expect(ExpectedCount.once(), requestTo(expectedURL))
+                .andRespond(withSuccess(tokenResponse("ghs_second", setInstant.plus(2, ChronoUnit.HOURS)), MediaType.APPLICATION_JSON));
+        double refreshesBefore = tokenCacheCount("refresh");
+
+        doReturn(Optional.of(setInstant)).when(dateTimeProvider).getNow();
+        assertEquals("ghs_first", jwtService.getInstallationToken(course));
+        doReturn(Optional.of(setInstant.plus(56, ChronoUnit.MINUTES))).when(dateTimeProvider).getNow();
+        assertEquals("ghs_second", jwtService.getInstallationToken(course));
+
+        mockRestServiceServer.verify();
+        assertEquals(1, tokenCacheCount("refresh") - refreshesBefore);
+    }
+
+    @Test
+    public void concurrent_callers_share_a_single_token_request() throws Exception {
+        Course course = Course.builder().installationId("single-flight").orgName("single-flight-org").build();
+        String expectedURL = "https://api.github.com/app/installations/single-flight-org/access_tokens";
+        mockRestServiceServer.expect(ExpectedCount.once(), requestTo(expectedURL))
+                .andRespond(request -> {
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return withSuccess(tokenResponse("ghs_shared", setInstant.plus(1, ChronoUnit.HOURS)), MediaType.APPLICATION_JSON).createResponse(request);
+                });
+        doReturn(Optional.of(setInstant)).when(dateTimeProvider).getNow();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(executor.submit(() -> jwtService.getInstallationToken(course)));
+        }
+        for (Future<String> result : results) {
+            assertEquals("ghs_shared", result.get());
+        }
+        executor.shutdown();
+
+        mockRestServiceServer.verify();
+    }
+
+    @Test
+    public void installation_token_without_expiry_is_not_reused() throws Exception {
+        Course course = Course.builder().installationId("no-expiry").orgName("no-expiry-org").build();
+        String expectedURL = "https://api.github.com/app/installations/no-expiry-org/access_tokens";
+        mockRestServiceServer.expect(ExpectedCount.twice(), requestTo(expectedURL))
+                .andRespond(withSuccess("{\"token\": \"ghs_no_expiry\"}", MediaType.APPLICATION_JSON));
+
+        doReturn(Optional.of(setInstant)).when(dateTimeProvider).getNow();
+        assertEquals("ghs_no_expiry", jwtService.getInstallationToken(course));
+        assertEquals("ghs_no_expiry", jwtService.getInstallationToken(course));
+
+        mockRestServiceServer.verify();
+    }
+
+    @Test
+    public void invalidated_installation_token_is_fetched_again() throws Exception {
+        Course course = Course.builder().installationId("invalidate").orgName("invalidate-org").build();
+        String expectedURL = "https://api.github.com/app/installations/invalidate-org/access_tokens";
+        mockRestServiceServer.expect(ExpectedCount.once(), requestTo(expectedURL))
+                .andRespond(withSuccess(tokenResponse("ghs_first", setInstant.plus(1, ChronoUnit.HOURS)), MediaType.APPLICATION_JSON));
+        mockRestServiceServer.expect(ExpectedCount.once(), requestTo(expectedURL))
+                .andRespond(withSuccess(tokenResponse("ghs_second", setInstant.plus(1, ChronoUnit.HOURS)), MediaType.APPLICATION_JSON));
+
+        doReturn(Optional.of(setInstant)).when(dateTimeProvider).getNow();
+        assertEquals("ghs_first", jwtService.getInstallationToken(course));
+        jwtService.invalidateInstallationToken("invalidate");
+        assertFalse(((Map<?, ?>) ReflectionTestUtils.getField(jwtService, "installationTokenLocks")).containsKey("invalidate"));
+        assertEquals("ghs_second", jwtService.getInstallationToken(course));
+
+        mockRestServiceServer.verify();
+    }
+
     public void validateJwt(String compacted, Instant setInstant) throws InvalidKeySpecException, NoSuchAlgorithmException {
         String key = publicKey;
         key = key.replace("-----BEGIN PUBLIC KEY-----", "");
@@ -1,21 +1,26 @@
 package edu.ucsb.cs156.frontiers.services;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.frontiers.config.GithubClientConfig;
 import edu.ucsb.cs156.frontiers.entities.Course;
 import edu.ucsb.cs156.frontiers.models.OrgMember;
 import edu.ucsb.cs156.frontiers.services.wiremock.WiremockService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 import org.springframework.boot.test.autoconfigure.web.client.RestClientTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.ResourceAccessException;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,7 +32,8 @@ import static org.mockito.Mockito.when;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
 
-@RestClientTest(OrganizationMemberService.class)
+@RestClientTest({OrganizationMemberService.class, GithubClientConfig.class, GithubRateLimitTracker.class, GithubConditionalRequestCache.class, GithubRequestMetrics.class})
+@Import(SimpleMeterRegistry.class)
 @AutoConfigureDataJpa
 public class OrganizationMemberServiceTests {
 
@@ -60,17 +66,33 @@ public class OrganizationMemberServiceTests {
         when(jwtService.getInstallationToken(any(Course.class))).thenReturn(TEST_TOKEN);
     }
 
+    private static HttpHeaders headers(String name, String value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(name, value);
+        return headers;
+    }
+
+    private void expectAdmins(String jsonResponse) {
+        mockServer.expect(requestTo("https://api.github.com/orgs/" + TEST_ORG + "/members?per_page=100&role=admin"))
+                .andExpect(method(HttpMethod.GET))
+                .andExpect(header("Authorization", "Bearer " + TEST_TOKEN))
+                .andRespond(withStatus(HttpStatus.OK)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(jsonResponse));
+    }
+
     @Test
     void testGetOrganizationMembers_SinglePage() throws Exception {
         // Prepare test data
         List<OrgMember> expectedMembers = List.of(
-            OrgMember.builder().githubId(1).githubLogin("user1").build(),
-            OrgMember.builder().githubId(2).githubLogin("user2").build()
+            OrgMember.builder().githubId(1).githubLogin("user1").role("member").build(),
+            OrgMember.builder().githubId(2).githubLogin("user2").role("member").build()
         );
         String jsonResponse = objectMapper.writeValueAsString(expectedMembers);
 
         // Setup mock server
-        mockServer.expect(requestTo("https://api.github.com/orgs/" + TEST_ORG + "/members"))
+        expectAdmins("[]");
+        mockServer.expect(requestTo("https://api.github.com/orgs/" + TEST_ORG + "/members?per_page=100"))
                 .andExpect(method(HttpMethod.GET))
                 .andExpect(header("Authorization", "Bearer " + TEST_TOKEN))
                 .andExpect(header("Accept", "application/vnd.github+json"))
@@ -90,8 +112,8 @@ public class OrganizationMemberServiceTests {
     @Test
     void testGetOrganizationMembers_MultiplePages() throws Exception {
         // Prepare test data for two pages
-        OrgMember orgMember1 = OrgMember.builder().githubId(1).githubLogin("user1").build();
-        OrgMember orgMember2 = OrgMember.builder().githubId(2).githubLogin("user2").build();
+        OrgMember orgMember1 = OrgMember.builder().githubId(1).githubLogin("user1").role("member").build();
+        OrgMember orgMember2 = OrgMember.builder().githubId(2).githubLogin("user2").role("member").build();
 
         List<OrgMember> firstPageMembers = List.of(
             orgMember1
@@ -107,12 +129,13 @@ public class OrganizationMemberServiceTests {
         // Setup headers for pagination
         HttpHeaders firstPageHeaders = new HttpHeaders();
         firstPageHeaders.add("link", 
-            "<https://api.github.com/orgs/" + TEST_ORG + "/members?page=2>; rel=\"next\"");
+            "<https://api.github.com/orgs/" + TEST_ORG + "/members?per_page=100&page=2>; rel=\"next\"");
 
         HttpHeaders secondPageHeaders = new HttpHeaders();
         secondPageHeaders.add("link", "<https://api.github.com/orgs/" + TEST_ORG + "/members?page=1>; rel=\"previous\"");
         // Setup mock server for first page
-        mockServer.expect(requestTo("https://api.github.com/orgs/" + TEST_ORG + "/members"))
+        expectAdmins("[]");
+        mockServer.expect(requestTo("https://api.github.com/orgs/" + TEST_ORG + "/members?per_page=100"))
                 .andExpect(method(HttpMethod.GET))
                 .andExpect(header("Authorization", "Bearer " + TEST_TOKEN))
                 .andRespond(withStatus(HttpStatus.OK)
@@ -121,7 +144,7 @@ public class OrganizationMemberServiceTests {
                         .body(firstPageJson));
 
         // Setup mock server for second page
-        mockServer.expect(requestTo("https://api.github.com/orgs/" + TEST_ORG + "/members?page=2"))
+        mockServer.expect(requestTo("https://api.github.com/orgs/" + TEST_ORG + "/members?per_page=100&page=2"))
                 .andExpect(method(HttpMethod.GET))
                 .andExpect(header("Authorization", "Bearer " + TEST_TOKEN))
                 .andRespond(withStatus(HttpStatus.OK)
@@ -140,7 +163,8 @@ public class OrganizationMemberServiceTests {
     @Test
     void testGetOrganizationMembers_EmptyResponse() throws Exception {
         // Setup mock server with empty response
-        mockServer.expect(requestTo("https://api.github.com/orgs/" + TEST_ORG + "/members"))
+        expectAdmins("[]");
+        mockServer.expect(requestTo("https://api.github.com/orgs/" + TEST_ORG + "/members?per_page=100"))
                 .andExpect(method(HttpMethod.GET))
                 .andExpect(header("Authorization", "Bearer " + TEST_TOKEN))
                 .andRespond(withStatus(HttpStatus.OK)
@@ -155,4 +179,137 @@ public class OrganizationMemberServiceTests {
         assertEquals(result, List.of());
     }
 
-}
\ No newline at end of file
+    @Test
+    void testForEachOrganizationMemberPage_DeliversPagesInOrder() throws Exception {
+        OrgMember orgMember1 = OrgMember.builder().githubId(1).githubLogin("user1").role("member").build();
+        OrgMember orgMember2 = OrgMember.builder().githubId(2).githubLogin("user2").role("admin").build();
+        OrgMember orgMember3 = OrgMember.builder().githubId(3).githubLogin("user3").role("member").build();
+
+        HttpHeaders firstPageHeaders = new HttpHeaders();
+        firstPageHeaders.add("link",
+            "<https://api.github.com/orgs/" + TEST_ORG + "/members?per_page=100&page=2>; rel=\"next\", "
+            + "<https://api.github.com/orgs/" + TEST_ORG + "/members?per_page=100&page=2>; rel=\"last\"");
+
+        expectAdmins("[{\"id\":2,\"login\":\"user2\"}]");
+        mockServer.expect(requestTo("https://api.github.com/orgs/" + TEST_ORG + "/members?per_page=100"))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withStatus(HttpStatus.OK)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .headers(firstPageHeaders)
+                        .body("[{\"id\":1,\"login\":\"user1\",\"site_admin\":false,\"plan\":{\"name\":\"free\"}},"
+                                + "{\"id\":2,\"login\":\"user2\"}]"));
+        mockServer.expect(requestTo("https://api.github.com/orgs/" + TEST_ORG + "/members?per_page=100&page=2"))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withStatus(HttpStatus.OK)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(objectMapper.writeValueAsString(List.of(orgMember3))));
+
+        List<List<OrgMember>> pages = new ArrayList<>();
+        organizationMemberService.forEachOrganizationMemberPage(testCourse, pages::add);
+
+        mockServer.verify();
+        assertEquals(List.of(List.of(orgMember1, orgMember2), List.of(orgMember3)), pages);
+    }
+
+    @Test
+    void testGetOrganizationMembers_NotAnArray() throws Exception {
+        mockServer.expect(requestTo("https://api.github.com/orgs/" + TEST_ORG + "/members?per_page=100&role=admin"))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withStatus(HttpStatus.OK)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body("{\"message\":\"Not Found\"}"));
+
+        assertThrows(ResourceAccessException.class, () -> organizationMemberService.getOrganizationMembers(testCourse));
+        mockServer.verify();
+    }
+
+    @Test
+    void testForEachOrganizationMemberPage_NotModifiedPagesAreReplayed() throws Exception {
+        // remembered pages outlive the test, so each of these tests lists an organization of its own
+        Course course = Course.builder().orgName("replayed-org").installationId("123").build();
+        String members = "https://api.github.com/orgs/replayed-org/members?per_page=100";
+        String secondPage = "https://api.github.com/organizations/1111111/members?per_page=100&page=2";
+        HttpHeaders firstPageHeaders = headers(HttpHeaders.ETAG, "\"m1\"");
+        firstPageHeaders.add("link", "<" + secondPage + ">; rel=\"next\"");
+
+        mockServer.expect(requestTo(members + "&role=admin"))
+                .andExpect(headerDoesNotExist(HttpHeaders.IF_NONE_MATCH))
+                .andRespond(withStatus(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON)
+                        .headers(headers(HttpHeaders.ETAG, "\"a\"")).body("[{\"id\":1,\"login\":\"user1\"}]"));
+        mockServer.expect(requestTo(members))
+                .andExpect(headerDoesNotExist(HttpHeaders.IF_NONE_MATCH))
+                .andRespond(withStatus(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON)
+                        .headers(firstPageHeaders).body("[{\"id\":1,\"login\":\"user1\"}]"));
+        mockServer.expect(requestTo(secondPage))
+                .andExpect(headerDoesNotExist(HttpHeaders.IF_NONE_MATCH))
+                .andRespond(withStatus(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON)
+                        .headers(headers(HttpHeaders.ETAG, "\"m2\"")).body("[{\"id\":2,\"login\":\"user2\"}]"));
+        mockServer.expect(requestTo(members + "&role=admin"))
+                .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"a\""))
+                .andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+        mockServer.expect(requestTo(members))
+                .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"m1\""))
+                .andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+        mockServer.expect(requestTo(secondPage))
+                .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"m2\""))
+                .andRespond(withStatus(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON)
+                        .headers(headers(HttpHeaders.ETAG, "\"m3\"")).body("[{\"id\":3,\"login\":\"user3\"}]"));
+
+        List<OrgMember> first = (List<OrgMember>) organizationMemberService.getOrganizationMembers(course);
+        List<OrgMember> second = (List<OrgMember>) organizationMemberService.getOrganizationMembers(course);
+
+        mockServer.verify();
+        assertEquals(List.of(new OrgMember(1, "user1", "admin"), new OrgMember(2, "user2", "member")), first);
+        assertEquals(List.of(new OrgMember(1, "user1", "admin"), new OrgMember(3, "user3", "member")), second);
+    }
+
+    @Test
+    void testForEachOrganizationMemberPage_LastModifiedIsSentAsIfModifiedSince() throws Exception {
+        Course course = Course.builder().orgName("last-modified-org").installationId("123").build();
+        String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+        String members = "https://api.github.com/orgs/last-modified-org/members?per_page=100";
+        mockServer.expect(requestTo(members + "&role=admin"))
+                .andRespond(withStatus(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON).body("[]"));
+        mockServer.expect(requestTo(members))
+                .andRespond(withStatus(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON)
+                        .headers(headers(HttpHeaders.LAST_MODIFIED, lastModified)).body("[{\"id\":1,\"login\":\"user1\"}]"));
+        mockServer.expect(requestTo(members + "&role=admin"))
+                .andRespond(withStatus(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON).body("[]"));
+        mockServer.expect(requestTo(members))
+                .andExpect(header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(headerDoesNotExist(HttpHeaders.IF_NONE_MATCH))
+                .andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+
+        organizationMemberService.getOrganizationMembers(course);
+        Iterable<OrgMember> result = organizationMemberService.getOrganizationMembers(course);
+
+        mockServer.verify();
+        assertEquals(List.of(new OrgMember(1, "user1", "member")), result);
+    }
+
+    @Test
+    void testForEachOrganizationMemberPage_RemembersALimitedNumberOfPages() throws Exception {
+        Course course = Course.builder().orgName("many-pages-org").installationId("123").build();
+        String members = "https://api.github.com/organizations/2222222/members?per_page=100&page=";
+        mockServer.expect(requestTo("https://api.github.com/orgs/many-pages-org/members?per_page=100&role=admin"))
+                .andRespond(withStatus(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON).body("[]"));
+        mockServer.expect(requestTo("https://api.github.com/orgs/many-pages-org/members?per_page=100"))
+                .andRespond(withStatus(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON)
+                        .headers(headers("link", "<" + members + 2 + ">; rel=\"next\"")).body("[]"));
+        for (int page = 2; page <= OrganizationMemberService.MAX_REMEMBERED_PAGES + 1; page++) {
+            HttpHeaders pageHeaders = headers(HttpHeaders.ETAG, "\"" + page + "\"");
+            pageHeaders.add("link", "<" + members + (page + 1) + ">; rel=\"next\"");
+            mockServer.expect(requestTo(members + page))
+                    .andRespond(withStatus(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON)
+                            .headers(pageHeaders).body("[]"));
+        }
+        mockServer.expect(requestTo(members + (OrganizationMemberService.MAX_REMEMBERED_PAGES + 2)))
+                .andRespond(withStatus(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON)
+                        .headers(headers(HttpHeaders.ETAG, "\"last\"")).body("[]"));
+
+        organizationMemberService.getOrganizationMembers(course);
+
+        mockServer.verify();
+        assertEquals(OrganizationMemberService.MAX_REMEMBERED_PAGES, organizationMemberService.rememberedPageCount());
+    }
+}
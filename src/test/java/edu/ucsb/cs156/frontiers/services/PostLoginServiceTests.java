@@ -0,0 +1,164 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.frontiers.entities.User;
+import edu.ucsb.cs156.frontiers.repositories.UserRepository;
+
+public class PostLoginServiceTests {
+
+    private static final String SUBJECT = "115856948234298493496";
+
+    private static final String OTHER_SUBJECT = "104766735621183497251";
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    private final UpdateUserService updateUserService = mock(UpdateUserService.class);
+
+    private final CurrentUserCache currentUserCache = mock(CurrentUserCache.class);
+
+    private final PostLoginService postLoginService = new PostLoginService(userRepository, updateUserService,
+            currentUserCache);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        postLoginService.shutdown();
+    }
+
+    private User user(String subject) {
+        return User.builder()
+                .googleSub(subject)
+                .fullName("Chris Gaucho")
+                .email("cgaucho@ucsb.edu")
+                .givenName("Chris")
+                .pictureUrl("https://example.org/old.jpg")
+                .build();
+    }
+
+    /** Keeps the background thread busy with another user until {@link #release} is counted down. */
+    private void blockWorker() {
+        CountDownLatch started = new CountDownLatch(1);
+        when(userRepository.findByGoogleSub(OTHER_SUBJECT)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return Optional.empty();
+        });
+        postLoginService.attachRosterStudents(OTHER_SUBJECT);
+        await().atMost(5, SECONDS).until(() -> started.getCount() == 0);
+    }
+
+    @Test
+    public void profile_is_saved_in_the_background() {
+        when(userRepository.updateProfile(any(), any(), any(), any(), any())).thenReturn(1);
+
+        postLoginService.refreshProfile(SUBJECT, new PostLoginService.ProfileUpdate("Chris G. Gaucho",
+                "chris@ucsb.edu", "Chris G.", "https://example.org/new.jpg", false));
+
+        await().atMost(5, SECONDS).untilAsserted(() -> verify(currentUserCache).evict(SUBJECT));
+        verify(userRepository).updateProfile(SUBJECT, "Chris G. Gaucho", "chris@ucsb.edu", "Chris G.",
+                "https://example.org/new.jpg");
+        verify(userRepository, never()).promoteToAdmin(any());
+        verify(userRepository, never()).findByGoogleSub(any());
+        verify(userRepository, never()).save(any());
+        verify(updateUserService, never()).attachRosterStudents(any());
+    }
+
+    @Test
+    public void admin_flag_is_only_ever_set() {
+        when(userRepository.updateProfile(any(), any(), any(), any(), any())).thenReturn(1);
+
+        postLoginService.refreshProfile(SUBJECT, PostLoginService.ProfileUpdate.of(User.builder()
+                .fullName("Chris Gaucho").email("cgaucho@ucsb.edu").admin(true).build()));
+
+        await().atMost(5, SECONDS).untilAsserted(() -> verify(currentUserCache).evict(SUBJECT));
+        verify(userRepository).promoteToAdmin(SUBJECT);
+    }
+
+    @Test
+    public void roster_students_are_attached_without_saving_the_user() {
+        User user = user(SUBJECT);
+        when(userRepository.findByGoogleSub(SUBJECT)).thenReturn(Optional.of(user));
+
+        postLoginService.attachRosterStudents(SUBJECT);
+
+        await().atMost(5, SECONDS).untilAsserted(() -> verify(currentUserCache).evict(SUBJECT));
+        verify(updateUserService).attachRosterStudents(user);
+        verify(userRepository, never()).updateProfile(any(), any(), any(), any(), any());
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    public void work_requested_before_the_task_starts_is_done_in_one_pass() {
+        User user = user(SUBJECT);
+        when(userRepository.updateProfile(any(), any(), any(), any(), any())).thenReturn(1);
+        when(userRepository.findByGoogleSub(SUBJECT)).thenReturn(Optional.of(user));
+        blockWorker();
+
+        postLoginService.refreshProfile(SUBJECT, new PostLoginService.ProfileUpdate("First", "cgaucho@ucsb.edu",
+                "First", "https://example.org/first.jpg", false));
+        postLoginService.attachRosterStudents(SUBJECT);
+        postLoginService.refreshProfile(SUBJECT, new PostLoginService.ProfileUpdate("Second", "cgaucho@ucsb.edu",
+                "Second", "https://example.org/second.jpg", false));
+        release.countDown();
+
+        await().atMost(5, SECONDS).untilAsserted(() -> verify(currentUserCache).evict(SUBJECT));
+        verify(userRepository, times(1)).updateProfile(any(), any(), any(), any(), any());
+        verify(userRepository).updateProfile(SUBJECT, "Second", "cgaucho@ucsb.edu", "Second",
+                "https://example.org/second.jpg");
+        verify(userRepository, times(1)).findByGoogleSub(SUBJECT);
+        verify(updateUserService, times(1)).attachRosterStudents(user);
+    }
+
+    @Test
+    public void profile_of_a_user_that_no_longer_exists_is_not_promoted() {
+        postLoginService.refreshProfile(SUBJECT, PostLoginService.ProfileUpdate.of(User.builder()
+                .fullName("Chris Gaucho").email("cgaucho@ucsb.edu").admin(true).build()));
+        postLoginService.attachRosterStudents(OTHER_SUBJECT);
+
+        await().atMost(5, SECONDS).untilAsserted(() -> verify(userRepository).findByGoogleSub(OTHER_SUBJECT));
+        verify(userRepository).updateProfile(SUBJECT, "Chris Gaucho", "cgaucho@ucsb.edu", null, null);
+        verify(userRepository, never()).promoteToAdmin(any());
+        verify(currentUserCache, never()).evict(SUBJECT);
+    }
+
+    @Test
+    public void nothing_is_written_for_a_user_that_no_longer_exists() {
+        when(userRepository.findByGoogleSub(SUBJECT)).thenReturn(Optional.empty());
+        blockWorker();
+
+        postLoginService.attachRosterStudents(SUBJECT);
+        release.countDown();
+
+        await().atMost(5, SECONDS).untilAsserted(() -> verify(userRepository).findByGoogleSub(SUBJECT));
+        verify(updateUserService, never()).attachRosterStudents(any());
+        verify(currentUserCache, never()).evict(SUBJECT);
+    }
+
+    @Test
+    public void a_failed_task_does_not_stop_later_ones() {
+        User user = user(SUBJECT);
+        when(userRepository.findByGoogleSub(OTHER_SUBJECT)).thenThrow(new IllegalStateException("database down"));
+        when(userRepository.findByGoogleSub(SUBJECT)).thenReturn(Optional.of(user));
+
+        postLoginService.attachRosterStudents(OTHER_SUBJECT);
+        postLoginService.attachRosterStudents(SUBJECT);
+
+        await().atMost(5, SECONDS).untilAsserted(() -> verify(updateUserService).attachRosterStudents(user));
+    }
+}
@@ -0,0 +1,255 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.StreamSupport;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import edu.ucsb.cs156.frontiers.entities.Course;
+import edu.ucsb.cs156.frontiers.entities.RosterStudent;
+import edu.ucsb.cs156.frontiers.entities.User;
+import edu.ucsb.cs156.frontiers.enums.OrgStatus;
+import edu.ucsb.cs156.frontiers.enums.RosterStatus;
+import edu.ucsb.cs156.frontiers.repositories.CourseRepository;
+import edu.ucsb.cs156.frontiers.repositories.RosterStudentRepository;
+import edu.ucsb.cs156.frontiers.repositories.UserRepository;
+import edu.ucsb.cs156.frontiers.services.wiremock.WiremockService;
+
+@DataJpaTest
+@Import(RosterImportService.class)
+public class RosterImportServiceTests {
+
+    @MockitoBean
+    private WiremockService wiremockService;
+
+    @Autowired
+    private RosterImportService rosterImportService;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private RosterStudentRepository rosterStudentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Course course;
+    private Course otherCourse;
+    private User chris;
+
+    @BeforeEach
+    public void setUp() {
+        User professor = userRepository.save(User.builder().email("phtcon@ucsb.edu").professor(true).build());
+        course = courseRepository.save(Course.builder().courseName("CMPSC 156").creator(professor).build());
+        otherCourse = courseRepository.save(Course.builder().courseName("CMPSC 148").creator(professor).build());
+        chris = userRepository.save(User.builder().email("cgaucho@ucsb.edu").build());
+    }
+
+    private static final String HEADER = "Enrl Cd,Perm #,Grade,Final Units,Student Last,Student First Middle,Quarter,Course ID,Section,Meeting Time(s) / Location(s),Email,ClassLevel,Major1,Major2,Date/Time,Pronoun\n\n";
+
+    private static String row(String studentId, String firstName, String lastName, String email) {
+        return "08235,%s,,4.0,%s,%s,F23,CMPSC156,0100,T R   2:00- 3:15 SH 1431,%s,SR,CMPSC,,9/27/2023 9:39:25 AM,\n"
+                .formatted(studentId, lastName, firstName, email);
+    }
+
+    private static InputStream egrades(String... rows) {
+        return new ByteArrayInputStream((HEADER + String.join("", rows)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static InputStream egrades(List<String> rows) {
+        return egrades(rows.toArray(String[]::new));
+    }
+
+    private List<RosterStudent> studentsOf(Course c) {
+        return StreamSupport.stream(rosterStudentRepository.findByCourseId(c.getId()).spliterator(), false)
+                .sorted(Comparator.comparing(RosterStudent::getStudentId))
+                .toList();
+    }
+
+    private static RosterImportService.ImportResult result(int inserted, int updated) {
+        return new RosterImportService.ImportResult(inserted, updated, 0, List.of());
+    }
+
+    @Test
+    public void new_students_are_inserted_and_linked_to_users() throws Exception {
+        RosterImportService.ImportResult result = rosterImportService.importEgrades(course, egrades(
+                row("A123456", "CHRIS", "GAUCHO", "cgaucho@umail.ucsb.edu"),
+                row("A987654", "LAUREN", "DEL PLAYA", "ldelplaya@umail.ucsb.edu")));
+
+        assertEquals(result(2, 0), result);
+        List<RosterStudent> students = studentsOf(course);
+        assertEquals(2, students.size());
+        RosterStudent chrisStudent = students.get(0);
+        assertEquals("A123456", chrisStudent.getStudentId());
+        assertEquals("CHRIS", chrisStudent.getFirstName());
+        assertEquals("GAUCHO", chrisStudent.getLastName());
+        assertEquals("cgaucho@ucsb.edu", chrisStudent.getEmail());
+        assertEquals(RosterStatus.ROSTER, chrisStudent.getRosterStatus());
+        assertEquals(OrgStatus.NONE, chrisStudent.getOrgStatus());
+        assertEquals(chris.getId(), chrisStudent.getUser().getId());
+        assertEquals("ldelplaya@ucsb.edu", students.get(1).getEmail());
+        assertNull(students.get(1).getUser());
+    }
+
+    @Test
+    public void file_is_read_as_utf8() throws Exception {
+        rosterImportService.importEgrades(course, egrades(row("A123456", "JOSÉ", "NÚÑEZ", "jnunez@ucsb.edu")));
+
+        RosterStudent student = studentsOf(course).get(0);
+        assertEquals("JOSÉ", student.getFirstName());
+        assertEquals("NÚÑEZ", student.getLastName());
+    }
+
+    @Test
+    public void existing_students_are_updated_by_student_id() throws Exception {
+        User lauren = userRepository.save(User.builder().email("ldelplaya@ucsb.edu").build());
+        RosterStudent existing = rosterStudentRepository.save(RosterStudent.builder()
+                .course(course).studentId("A987654").firstName("Lauren").lastName("Del Playa")
+                .email("lauren@example.org").rosterStatus(RosterStatus.MANUAL).orgStatus(OrgStatus.MEMBER).build());
+        RosterStudent untouched = rosterStudentRepository.save(RosterStudent.builder()
+                .course(course).studentId("A000001").firstName("Sabado").lastName("Tarde")
+                .email("sabado@ucsb.edu").rosterStatus(RosterStatus.MANUAL).orgStatus(OrgStatus.NONE).build());
+        rosterStudentRepository.save(RosterStudent.builder()
+                .course(otherCourse).studentId("A123456").firstName("Chris").lastName("Gaucho")
+                .email("cgaucho@ucsb.edu").rosterStatus(RosterStatus.ROSTER).orgStatus(OrgStatus.NONE).build());
+
+        RosterImportService.ImportResult result = rosterImportService.importEgrades(course, egrades(
+                row("A987654", "LAUREN", "DEL PLAYA", "ldelplaya@umail.ucsb.edu"),
+                row("A123456", "CHRIS", "GAUCHO", "cgaucho@ucsb.edu")));
+
+        assertEquals(result(1, 1), result);
+        List<RosterStudent> students = studentsOf(course);
+        assertEquals(3, students.size());
+        assertEquals(untouched.getId(), students.get(0).getId());
+        assertEquals(RosterStatus.MANUAL, students.get(0).getRosterStatus());
+        assertEquals("A123456", students.get(1).getStudentId());
+        RosterStudent updated = students.get(2);
+        assertEquals(existing.getId(), updated.getId());
+        assertEquals("LAUREN", updated.getFirstName());
+        assertEquals("DEL PLAYA", updated.getLastName());
+        assertEquals("ldelplaya@ucsb.edu", updated.getEmail());
+        assertEquals(RosterStatus.ROSTER, updated.getRosterStatus());
+        assertEquals(OrgStatus.MEMBER, updated.getOrgStatus());
+        assertEquals(lauren.getId(), updated.getUser().getId());
+        assertEquals(1, studentsOf(otherCourse).size());
+    }
+
+    @Test
+    public void student_id_repeated_in_the_roster_is_inserted_once_and_counted_as_an_update() throws Exception {
+        RosterImportService.ImportResult result = rosterImportService.importEgrades(course, egrades(
+                row("A123456", "CHRIS", "GAUCHO", "chris@ucsb.edu"),
+                row("A123456", "CHRIS FAKE", "GAUCHO", "cgaucho@ucsb.edu")));
+
+        assertEquals(result(1, 1), result);
+        List<RosterStudent> students = studentsOf(course);
+        assertEquals(1, students.size());
+        assertEquals("CHRIS FAKE", students.get(0).getFirstName());
+        assertEquals("cgaucho@ucsb.edu", students.get(0).getEmail());
+        assertEquals(chris.getId(), students.get(0).getUser().getId());
+    }
+
+    @Test
+    public void rosters_larger_than_one_chunk_are_all_written() throws Exception {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < RosterImportService.CHUNK_SIZE * 2 + 1; i++) {
+            rows.add(row("S%04d".formatted(i), "First" + i, "Last" + i, "student%d@ucsb.edu".formatted(i)));
+        }
+
+        RosterImportService.ImportResult result = rosterImportService.importEgrades(course, egrades(rows));
+
+        assertEquals(result(rows.size(), 0), result);
+        assertEquals(rows.size(), studentsOf(course).size());
+    }
+
+    @Test
+    public void progress_is_reported_after_each_chunk() throws Exception {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < RosterImportService.CHUNK_SIZE + 1; i++) {
+            rows.add(row("S%04d".formatted(i), "First" + i, "Last" + i, "student%d@ucsb.edu".formatted(i)));
+        }
+        rows.add("bad row\n");
+        List<Integer> progress = new ArrayList<>();
+
+        rosterImportService.importEgrades(course, egrades(rows), progress::add);
+
+        assertEquals(List.of(RosterImportService.CHUNK_SIZE, RosterImportService.CHUNK_SIZE + 1), progress);
+    }
+
+    @Test
+    public void student_inserted_by_an_earlier_chunk_is_updated_by_a_later_one() throws Exception {
+        List<String> rows = new ArrayList<>();
+        rows.add(row("A123456", "CHRIS", "GAUCHO", "chris@ucsb.edu"));
+        for (int i = 1; i < RosterImportService.CHUNK_SIZE; i++) {
+            rows.add(row("S%04d".formatted(i), "First" + i, "Last" + i, "student%d@ucsb.edu".formatted(i)));
+        }
+        rows.add(row("A123456", "CHRIS FAKE", "GAUCHO", "cgaucho@umail.ucsb.edu"));
+
+        RosterImportService.ImportResult result = rosterImportService.importEgrades(course, egrades(rows));
+
+        assertEquals(result(RosterImportService.CHUNK_SIZE, 1), result);
+        RosterStudent student = studentsOf(course).get(0);
+        assertEquals("A123456", student.getStudentId());
+        assertEquals("CHRIS FAKE", student.getFirstName());
+        assertEquals("cgaucho@ucsb.edu", student.getEmail());
+        assertEquals(chris.getId(), student.getUser().getId());
+    }
+
+    @Test
+    public void invalid_rows_are_reported_and_skipped() throws Exception {
+        RosterImportService.ImportResult result = rosterImportService.importEgrades(course, egrades(
+                row("A123456", "CHRIS", "GAUCHO", "cgaucho@ucsb.edu"),
+                "08250,A987654,,4.0,DEL PLAYA\n",
+                "\n",
+                row(" ", "NO", "PERM", "noperm@ucsb.edu"),
+                row("A000001", "SABADO", "TARDE", "not an email"),
+                row("A000002", "LAUREN", "DEL PLAYA", "ldelplaya@ucsb.edu")));
+
+        assertEquals(new RosterImportService.ImportResult(2, 0, 3, List.of(
+                "Line 4: expected at least 11 columns but found 5",
+                "Line 6: missing Perm #",
+                "Line 7: invalid email \"not an email\"")), result);
+        assertEquals(2, studentsOf(course).size());
+    }
+
+    @Test
+    public void only_the_first_errors_are_described() throws Exception {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < RosterImportService.MAX_REPORTED_ERRORS + 5; i++) {
+            rows.add("bad row %d\n".formatted(i));
+        }
+
+        RosterImportService.ImportResult result = rosterImportService.importEgrades(course, egrades(rows));
+
+        assertEquals(RosterImportService.MAX_REPORTED_ERRORS + 5, result.rejected());
+        assertEquals(RosterImportService.MAX_REPORTED_ERRORS, result.errors().size());
+        assertEquals("Line 3: expected at least 11 columns but found 1", result.errors().get(0));
+    }
+
+    @Test
+    public void malformed_csv_fails_the_import() {
+        assertThrows(IOException.class, () -> rosterImportService.importEgrades(course, egrades(
+                "08235,\"A123456,,4.0,GAUCHO\n")));
+    }
+
+    @Test
+    public void empty_roster_changes_nothing() throws Exception {
+        assertEquals(result(0, 0), rosterImportService.importEgrades(course, egrades()));
+        assertEquals(0, studentsOf(course).size());
+    }
+}
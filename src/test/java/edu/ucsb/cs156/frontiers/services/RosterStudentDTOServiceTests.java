@@ -2,80 +2,133 @@ package edu.ucsb.cs156.frontiers.services;
 
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.Mockito.when;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.StreamSupport;
+
+import com.opencsv.bean.StatefulBeanToCsv;
+import com.opencsv.exceptions.CsvDataTypeMismatchException;
 import edu.ucsb.cs156.frontiers.entities.Course;
 import edu.ucsb.cs156.frontiers.entities.RosterStudent;
 import edu.ucsb.cs156.frontiers.entities.User;
 import edu.ucsb.cs156.frontiers.enums.OrgStatus;
 import edu.ucsb.cs156.frontiers.enums.RosterStatus;
 import edu.ucsb.cs156.frontiers.models.RosterStudentDTO;
+import edu.ucsb.cs156.frontiers.repositories.CourseRepository;
 import edu.ucsb.cs156.frontiers.repositories.RosterStudentRepository;
+import edu.ucsb.cs156.frontiers.repositories.UserRepository;
+import edu.ucsb.cs156.frontiers.services.wiremock.WiremockService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
-import org.mockito.Mock;
-import org.mockito.MockitoAnnotations;
-
-import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
 
 /**
- * This class contains unit tests for the RosterStudentDTOService class.
+ * This class contains tests for the RosterStudentDTOService class.
  */
-
+@DataJpaTest
+@Import(RosterStudentDTOService.class)
 public class RosterStudentDTOServiceTests {
 
-    @Mock
-    private RosterStudentRepository rosterStudentRepository;
+    @MockitoBean
+    private WiremockService wiremockService;
 
-    @InjectMocks
+    @MockitoSpyBean
     private RosterStudentDTOService rosterStudentDTOService;
 
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private RosterStudentRepository rosterStudentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Course course;
+    private User user;
+
     @BeforeEach
     public void setUp() {
-        MockitoAnnotations.openMocks(this);
+        User professor = userRepository.save(User.builder().email("phtcon@ucsb.edu").professor(true).build());
+        course = courseRepository.save(Course.builder().courseName("CMPSC 156").creator(professor).build());
+        Course otherCourse = courseRepository.save(Course.builder().courseName("CMPSC 148").creator(professor).build());
+        user = userRepository.save(User.builder().email("johndoe@example.com").build());
+
+        rosterStudentRepository.save(RosterStudent.builder()
+                .course(course).studentId("U123456").firstName("John").lastName("Doe")
+                .email("johndoe@example.com").githubId(12345).githubLogin("testuser").user(user)
+                .rosterStatus(RosterStatus.ROSTER).orgStatus(OrgStatus.NONE).build());
+        rosterStudentRepository.save(RosterStudent.builder()
+                .course(course).studentId("U654321").firstName("Jane").lastName("Roe")
+                .email("janeroe@example.com")
+                .rosterStatus(RosterStatus.MANUAL).orgStatus(OrgStatus.INVITED).build());
+        rosterStudentRepository.save(RosterStudent.builder()
+                .course(otherCourse).studentId("U000001").firstName("Other").lastName("Student")
+                .email("other@example.com")
+                .rosterStatus(RosterStatus.ROSTER).orgStatus(OrgStatus.NONE).build());
     }
 
     @Test
-    public void test_getRosterStudentDTOById_success() {
+    public void test_writeRosterStudentsCsv_writes_one_row_per_student_of_the_course() throws Exception {
         // Arrange
-        Course course = new Course();
-        course.setId(1L);
-
-        User user = User.builder().build();
-        user.setId(2L);
-
-        RosterStudent rosterStudent = new RosterStudent();
-        rosterStudent.setId(3L);
-        rosterStudent.setCourse(course);
-        rosterStudent.setStudentId("U123456");
-        rosterStudent.setFirstName("John");
-        rosterStudent.setLastName("Doe");
-        rosterStudent.setEmail("johndoe@example.com");
-        rosterStudent.setGithubId(12345);
-        rosterStudent.setGithubLogin("testuser");
-        rosterStudent.setUser(user);
-        rosterStudent.setRosterStatus(RosterStatus.ROSTER);
-        rosterStudent.setOrgStatus(OrgStatus.NONE);
-
-        when(rosterStudentRepository.findByCourseId(1L)).thenReturn(List.of(rosterStudent));
+        StringWriter writer = new StringWriter();
+        Long firstId = rosterStudentRepository.findByCourseIdAndStudentId(course.getId(), "U123456").get().getId();
+        Long secondId = rosterStudentRepository.findByCourseIdAndStudentId(course.getId(), "U654321").get().getId();
 
         // Act
-        List<RosterStudentDTO> dtos = rosterStudentDTOService.getRosterStudentDTOs(1L);
+        rosterStudentDTOService.writeRosterStudentsCsv(course.getId(), writer);
+
         // Assert
-        assertEquals(1, dtos.size());
-        RosterStudentDTO dto = dtos.get(0);
-        assertEquals(3L, dto.getId());
-        assertEquals(1L, dto.getCourseId());
-        assertEquals("U123456", dto.getStudentId());
-        assertEquals("John", dto.getFirstName());
-        assertEquals("Doe", dto.getLastName());
-        assertEquals("johndoe@example.com", dto.getEmail());
-        assertEquals(2L, dto.getUserId());
-        assertEquals(12345, dto.getUserGithubId());
-        assertEquals("testuser", dto.getUserGithubLogin());
-        assertEquals(RosterStatus.ROSTER, dto.getRosterStatus());
-        assertEquals(OrgStatus.NONE, dto.getOrgStatus());
+        String expected = """
+                "COURSEID","EMAIL","FIRSTNAME","ID","LASTNAME","ORGSTATUS","ROSTERSTATUS","STUDENTID","USERGITHUBID","USERGITHUBLOGIN","USERID"
+                "%1$d","johndoe@example.com","John","%2$d","Doe","NONE","ROSTER","U123456","12345","testuser","%4$d"
+                "%1$d","janeroe@example.com","Jane","%3$d","Roe","INVITED","MANUAL","U654321","","","0"
+                """.formatted(course.getId(), firstId, secondId, user.getId());
+        assertEquals(expected, writer.toString());
     }
 
-  
-}
\ No newline at end of file
+    @Test
+    public void test_writeRosterStudentsCsv_writes_nothing_for_an_empty_roster() throws Exception {
+        StringWriter writer = new StringWriter();
+
+        rosterStudentDTOService.writeRosterStudentsCsv(course.getId() + 1000, writer);
+
+        assertEquals("", writer.toString());
+    }
+
+    @Test
+    public void test_writeRosterStudentsCsv_reports_csv_errors_as_IOException() throws Exception {
+        @SuppressWarnings("unchecked")
+        StatefulBeanToCsv<RosterStudentDTO> csvWriter = mock(StatefulBeanToCsv.class);
+        doThrow(new CsvDataTypeMismatchException("bad field")).when(csvWriter).write(any(RosterStudentDTO.class));
+        doReturn(csvWriter).when(rosterStudentDTOService).getStatefulBeanToCSV(any());
+
+        IOException thrown = assertThrows(IOException.class,
+                () -> rosterStudentDTOService.writeRosterStudentsCsv(course.getId(), new StringWriter()));
+
+        assertEquals("Error writing CSV file: bad field", thrown.getMessage());
+    }
+
+    @Test
+    public void test_findRosterStudentDTOsByCourseId_matches_mapping_the_entities() {
+        List<RosterStudentDTO> expected = StreamSupport
+                .stream(rosterStudentRepository.findByCourseId(course.getId()).spliterator(), false)
+                .sorted(Comparator.comparing(RosterStudent::getId))
+                .map(RosterStudentDTO::from)
+                .toList();
+
+        assertEquals(expected, rosterStudentRepository.findRosterStudentDTOsByCourseId(course.getId()));
+    }
+}
@@ -11,7 +11,6 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +18,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 public class UpdateUserServiceTests {
@@ -29,6 +29,9 @@ public class UpdateUserServiceTests {
     @Mock
     private RosterStudentRepository rosterStudentRepository;
 
+    @Mock
+    private CurrentUserCache currentUserCache;
+
     @InjectMocks
     private UpdateUserService updateUserService;
 
@@ -40,7 +43,7 @@ public class UpdateUserServiceTests {
     @Test
     public void testAttachRosterStudents() {
         // Arrange
-        User user = User.builder().email("test@example.com").build();
+        User user = User.builder().email("test@example.com").googleSub("115856948234298493496").build();
 
         RosterStudent student1 = new RosterStudent();
         RosterStudent student2 = new RosterStudent();
@@ -55,6 +58,7 @@ public class UpdateUserServiceTests {
         // Assert
         verify(rosterStudentRepository, times(1)).findAllByEmail("test@example.com");
         verify(rosterStudentRepository, times(1)).saveAll(matchedStudents);
+        verify(currentUserCache, times(1)).evict("115856948234298493496");
 
         assertEquals(user, student1.getUser());
         assertEquals(user, student2.getUser());
@@ -63,32 +67,32 @@ public class UpdateUserServiceTests {
     @Test
     public void testAttachRosterStudentsAllUsers() {
         // Arrange
-        User user1 =  User.builder().build();
-        user1.setEmail("user1@example.com");
-
-        User user2 = User.builder().build();
-        user2.setEmail("user2@example.com");
+        when(rosterStudentRepository.findMaxId()).thenReturn(25_000L);
+        when(rosterStudentRepository.attachUsersByEmail(0L, 10_000L)).thenReturn(3);
+        when(rosterStudentRepository.attachUsersByEmail(10_000L, 20_000L)).thenReturn(0);
+        when(rosterStudentRepository.attachUsersByEmail(20_000L, 30_000L)).thenReturn(2);
 
-        Iterable<User> allUsers = Arrays.asList(user1, user2);
+        // Act
+        int attached = updateUserService.attachRosterStudentsAllUsers();
 
-        RosterStudent student1 = new RosterStudent();
-        RosterStudent student2 = new RosterStudent();
+        // Assert
+        assertEquals(5, attached);
+        verify(rosterStudentRepository, times(3)).attachUsersByEmail(anyLong(), anyLong());
+        verify(userRepository, never()).findAll();
+        verify(rosterStudentRepository, never()).saveAll(anyList());
+    }
 
-        when(userRepository.findAll()).thenReturn(allUsers);
-        when(rosterStudentRepository.findAllByEmail("user1@example.com")).thenReturn(Collections.singletonList(student1));
-        when(rosterStudentRepository.findAllByEmail("user2@example.com")).thenReturn(Collections.singletonList(student2));
+    @Test
+    public void testAttachRosterStudentsAllUsers_noRosterStudents() {
+        // Arrange
+        when(rosterStudentRepository.findMaxId()).thenReturn(null);
 
         // Act
-        updateUserService.attachRosterStudentsAllUsers();
+        int attached = updateUserService.attachRosterStudentsAllUsers();
 
         // Assert
-        verify(userRepository, times(1)).findAll();
-        verify(rosterStudentRepository, times(1)).findAllByEmail("user1@example.com");
-        verify(rosterStudentRepository, times(1)).findAllByEmail("user2@example.com");
-        verify(rosterStudentRepository, times(2)).saveAll(anyList());
-
-        assertEquals(user1, student1.getUser());
-        assertEquals(user2, student2.getUser());
+        assertEquals(0, attached);
+        verify(rosterStudentRepository, never()).attachUsersByEmail(anyLong(), anyLong());
     }
 
     @Test
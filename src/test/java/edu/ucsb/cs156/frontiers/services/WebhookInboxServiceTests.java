@@ -0,0 +1,390 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.frontiers.entities.Course;
+import edu.ucsb.cs156.frontiers.entities.RosterStudent;
+import edu.ucsb.cs156.frontiers.entities.User;
+import edu.ucsb.cs156.frontiers.entities.WebhookDelivery;
+import edu.ucsb.cs156.frontiers.enums.OrgStatus;
+import edu.ucsb.cs156.frontiers.repositories.CourseRepository;
+import edu.ucsb.cs156.frontiers.repositories.RosterStudentRepository;
+import edu.ucsb.cs156.frontiers.repositories.UserRepository;
+import edu.ucsb.cs156.frontiers.repositories.WebhookDeliveryRepository;
+import edu.ucsb.cs156.frontiers.services.wiremock.WiremockService;
+
+/**
+ * Runs without a test transaction, like the scheduled drain, which makes each repository call in its own
+ * transaction; the scheduled drain itself is pushed out of the way.
+ */
+@DataJpaTest(properties = "app.webhooks.drain-interval=1h")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ WebhookInboxService.class, JacksonAutoConfiguration.class })
+public class WebhookInboxServiceTests {
+
+    @MockitoBean
+    private WiremockService wiremockService;
+
+    @MockitoBean
+    private JwtService jwtService;
+
+    @Autowired
+    private WebhookInboxService webhookInboxService;
+
+    @Autowired
+    private WebhookDeliveryRepository webhookDeliveryRepository;
+
+    @MockitoSpyBean
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private RosterStudentRepository rosterStudentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private Course course;
+    private Course unlinkedCourse;
+    private RosterStudent chris;
+    private RosterStudent alex;
+    private RosterStudent sam;
+
+    @BeforeEach
+    public void setUp() {
+        User professor = userRepository.save(User.builder().email("phtcon@ucsb.edu").professor(true).build());
+        course = courseRepository.save(Course.builder()
+                .courseName("CMPSC 156").installationId("1234").orgName("ucsb-cs156-f24").creator(professor).build());
+        unlinkedCourse = courseRepository.save(Course.builder().courseName("CMPSC 148").creator(professor).build());
+        chris = rosterStudentRepository.save(RosterStudent.builder()
+                .course(course).studentId("A123456").githubLogin("cgaucho").orgStatus(OrgStatus.INVITED).build());
+        alex = rosterStudentRepository.save(RosterStudent.builder()
+                .course(course).studentId("A234567").githubLogin("agaucho").orgStatus(OrgStatus.MEMBER).build());
+        sam = rosterStudentRepository.save(RosterStudent.builder()
+                .course(course).studentId("A345678").githubLogin("sgaucho").orgStatus(OrgStatus.INVITED).build());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        webhookDeliveryRepository.deleteAll();
+        rosterStudentRepository.deleteAll();
+        courseRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    private JsonNode membership(String action, String installationId, String login) throws Exception {
+        return mapper.readTree("""
+                {"action": "%s", "installation": {"id": %s}, "membership": {"user": {"login": "%s"}}}
+                """.formatted(action, installationId, login));
+    }
+
+    private JsonNode event(String json) throws Exception {
+        return mapper.readTree(json);
+    }
+
+    private Course reload(Course c) {
+        return courseRepository.findById(c.getId()).orElseThrow();
+    }
+
+    private OrgStatus orgStatusOf(RosterStudent student) {
+        return rosterStudentRepository.findById(student.getId()).orElseThrow().getOrgStatus();
+    }
+
+    private WebhookDelivery delivery(String deliveryId) {
+        return webhookDeliveryRepository.findAll().stream()
+                .filter(d -> d.getDeliveryId().equals(deliveryId)).findFirst().orElseThrow();
+    }
+
+    private Course otherCourse(String installationId, String orgName) {
+        return courseRepository.save(Course.builder().courseName("CMPSC 156 (section 2)").installationId(installationId)
+                .orgName(orgName).creator(course.getCreator()).build());
+    }
+
+    @Test
+    public void receive_stores_the_delivery() throws Exception {
+        JsonNode payload = membership("member_added", "1234", "cgaucho");
+
+        assertTrue(webhookInboxService.receive("delivery-1", "organization", payload));
+
+        List<WebhookDelivery> deliveries = webhookDeliveryRepository.findAll();
+        assertEquals(1, deliveries.size());
+        WebhookDelivery delivery = deliveries.get(0);
+        assertEquals("delivery-1", delivery.getDeliveryId());
+        assertEquals("organization", delivery.getEvent());
+        assertEquals("member_added", delivery.getAction());
+        assertEquals("1234", delivery.getInstallationId());
+        assertEquals("cgaucho", delivery.getGithubLogin());
+        assertEquals(payload, mapper.readTree(delivery.getPayload()));
+        assertNotNull(delivery.getReceivedAt());
+        assertNull(delivery.getProcessedAt());
+    }
+
+    @Test
+    public void receive_leaves_fields_missing_from_the_payload_empty() throws Exception {
+        assertTrue(webhookInboxService.receive("delivery-1", "ping", mapper.readTree("{\"zen\": \"Keep it logically awesome.\"}")));
+
+        WebhookDelivery delivery = webhookDeliveryRepository.findAll().get(0);
+        assertNull(delivery.getAction());
+        assertNull(delivery.getInstallationId());
+        assertNull(delivery.getGithubLogin());
+    }
+
+    @Test
+    public void receive_takes_the_login_of_an_invitation() throws Exception {
+        webhookInboxService.receive("d1", "organization", event("""
+                {"action": "member_invited", "installation": {"id": 1234}, "invitation": {"login": "sgaucho"}}"""));
+        // invitations sent by email have no login
+        webhookInboxService.receive("d2", "organization", event("""
+                {"action": "member_invited", "installation": {"id": 1234},
+                 "invitation": {"login": null, "email": "sgaucho@ucsb.edu"}}"""));
+
+        List<WebhookDelivery> deliveries = webhookDeliveryRepository.findAll();
+        assertEquals("sgaucho", deliveries.get(0).getGithubLogin());
+        assertNull(deliveries.get(1).getGithubLogin());
+    }
+
+    @Test
+    public void receive_stores_a_redelivery_once() throws Exception {
+        assertTrue(webhookInboxService.receive("delivery-1", "organization", membership("member_added", "1234", "cgaucho")));
+        assertFalse(webhookInboxService.receive("delivery-1", "organization", membership("member_added", "1234", "cgaucho")));
+
+        assertEquals(1, webhookDeliveryRepository.count());
+    }
+
+    @Test
+    public void drain_applies_membership_events_and_marks_every_delivery_processed() throws Exception {
+        webhookInboxService.receive("d1", "organization", membership("member_added", "1234", "cgaucho"));
+        webhookInboxService.receive("d2", "organization", membership("member_added", "1234", "cgaucho"));
+        webhookInboxService.receive("d3", "organization", membership("member_added", "1234", "agaucho"));
+        webhookInboxService.receive("d4", "organization", membership("member_invited", "1234", "sgaucho"));
+        webhookInboxService.receive("d5", "organization", membership("member_added", "9999", "sgaucho"));
+        webhookInboxService.receive("d6", "organization", mapper.readTree("{\"action\": \"member_added\", \"installation\": {\"id\": 1234}}"));
+        webhookInboxService.receive("d7", "organization", mapper.readTree("{\"action\": \"member_added\", \"membership\": {\"user\": {\"login\": \"sgaucho\"}}}"));
+        webhookInboxService.receive("d8", "ping", mapper.readTree("{\"zen\": \"Keep it logically awesome.\"}"));
+
+        webhookInboxService.drain();
+
+        assertEquals(OrgStatus.MEMBER, orgStatusOf(chris));
+        assertEquals(OrgStatus.MEMBER, orgStatusOf(alex));
+        assertEquals(OrgStatus.INVITED, orgStatusOf(sam));
+        assertTrue(webhookDeliveryRepository.findAll().stream().allMatch(d -> d.getProcessedAt() != null));
+    }
+
+    @Test
+    public void drain_handles_more_than_one_batch() throws Exception {
+        for (int i = 0; i < WebhookInboxService.BATCH_SIZE; i++) {
+            webhookInboxService.receive("ping-" + i, "ping", mapper.readTree("{}"));
+        }
+        webhookInboxService.receive("d1", "organization", membership("member_added", "1234", "cgaucho"));
+
+        webhookInboxService.drain();
+
+        assertEquals(OrgStatus.MEMBER, orgStatusOf(chris));
+        assertTrue(webhookDeliveryRepository.findAll().stream().allMatch(d -> d.getProcessedAt() != null));
+    }
+
+    @Test
+    public void drain_keeps_the_last_membership_event_about_each_student() throws Exception {
+        webhookInboxService.receive("d1", "organization", membership("member_invited", "1234", "sgaucho"));
+        webhookInboxService.receive("d2", "organization", membership("member_added", "1234", "sgaucho"));
+        webhookInboxService.receive("d3", "organization", membership("member_added", "1234", "agaucho"));
+        webhookInboxService.receive("d4", "organization", membership("member_removed", "1234", "agaucho"));
+
+        webhookInboxService.drain();
+
+        assertEquals(OrgStatus.MEMBER, orgStatusOf(sam));
+        assertEquals(OrgStatus.NONE, orgStatusOf(alex));
+        assertEquals(OrgStatus.INVITED, orgStatusOf(chris));
+    }
+
+    @Test
+    public void drain_marks_invited_students() throws Exception {
+        webhookInboxService.receive("d1", "organization", membership("member_removed", "1234", "cgaucho"));
+        webhookInboxService.drain();
+        assertEquals(OrgStatus.NONE, orgStatusOf(chris));
+
+        webhookInboxService.receive("d2", "organization", event("""
+                {"action": "member_invited", "installation": {"id": 1234}, "invitation": {"login": "cgaucho"}}"""));
+        webhookInboxService.drain();
+
+        assertEquals(OrgStatus.INVITED, orgStatusOf(chris));
+    }
+
+    @Test
+    public void drain_marks_org_admins_as_owners() throws Exception {
+        webhookInboxService.receive("d1", "organization", event("""
+                {"action": "member_added", "installation": {"id": 1234},
+                 "membership": {"role": "admin", "user": {"login": "cgaucho"}}}"""));
+
+        webhookInboxService.drain();
+
+        assertEquals(OrgStatus.OWNER, orgStatusOf(chris));
+    }
+
+    @Test
+    public void drain_ignores_team_membership_events() throws Exception {
+        webhookInboxService.receive("d1", "membership", event("""
+                {"action": "added", "scope": "team", "installation": {"id": 1234}, "member": {"login": "cgaucho"}}"""));
+
+        webhookInboxService.drain();
+
+        assertEquals(OrgStatus.INVITED, orgStatusOf(chris));
+        assertNotNull(webhookDeliveryRepository.findAll().get(0).getProcessedAt());
+    }
+
+    @Test
+    public void drain_renames_the_org_of_the_linked_course() throws Exception {
+        webhookInboxService.receive("d1", "organization", event("""
+                {"action": "renamed", "installation": {"id": 1234}, "organization": {"login": "ucsb-cs156-w25"},
+                 "changes": {"login": {"from": "ucsb-cs156-f24"}}}"""));
+
+        webhookInboxService.drain();
+
+        assertEquals("ucsb-cs156-w25", reload(course).getOrgName());
+        assertEquals("1234", reload(course).getInstallationId());
+    }
+
+    @Test
+    public void drain_renames_the_org_when_the_installation_target_is_renamed() throws Exception {
+        webhookInboxService.receive("d1", "installation_target", event("""
+                {"action": "renamed", "installation": {"id": 1234}, "account": {"login": "ucsb-cs156-s25"},
+                 "target_type": "Organization", "changes": {"login": {"from": "ucsb-cs156-f24"}}}"""));
+
+        webhookInboxService.drain();
+
+        assertEquals("ucsb-cs156-s25", reload(course).getOrgName());
+    }
+
+    @Test
+    public void drain_unlinks_the_course_when_the_app_is_uninstalled() throws Exception {
+        webhookInboxService.receive("d1", "installation", event("""
+                {"action": "deleted", "installation": {"id": 1234, "account": {"login": "ucsb-cs156-f24"}}}"""));
+
+        webhookInboxService.drain();
+
+        assertNull(reload(course).getInstallationId());
+        assertNull(reload(course).getOrgName());
+        verify(jwtService).invalidateInstallationToken("1234");
+    }
+
+    @Test
+    public void drain_ignores_installation_events_for_other_installations() throws Exception {
+        webhookInboxService.receive("d1", "installation", event("""
+                {"action": "deleted", "installation": {"id": 9999}}"""));
+        webhookInboxService.receive("d2", "installation", event("""
+                {"action": "deleted"}"""));
+
+        webhookInboxService.drain();
+
+        assertEquals("1234", reload(course).getInstallationId());
+        assertEquals("ucsb-cs156-f24", reload(course).getOrgName());
+        assertNull(reload(unlinkedCourse).getInstallationId());
+        assertTrue(webhookDeliveryRepository.findAll().stream().allMatch(d -> d.getProcessedAt() != null));
+        verify(jwtService).invalidateInstallationToken("9999");
+        verify(jwtService, never()).invalidateInstallationToken(null);
+    }
+
+    @Test
+    public void drain_forgets_deliveries_processed_before_the_retention_period() throws Exception {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        webhookDeliveryRepository.save(WebhookDelivery.builder()
+                .deliveryId("old").receivedAt(now.minusDays(8)).processedAt(now.minusDays(8)).build());
+        webhookDeliveryRepository.save(WebhookDelivery.builder()
+                .deliveryId("recent").receivedAt(now.minusDays(1)).processedAt(now.minusDays(1)).build());
+
+        webhookInboxService.drain();
+
+        List<WebhookDelivery> deliveries = webhookDeliveryRepository.findAll();
+        assertEquals(1, deliveries.size());
+        assertEquals("recent", deliveries.get(0).getDeliveryId());
+    }
+
+    @Test
+    public void drain_updates_every_course_linked_to_the_installation() throws Exception {
+        Course section2 = otherCourse("1234", "ucsb-cs156-f24");
+        RosterStudent chrisInSection2 = rosterStudentRepository.save(RosterStudent.builder()
+                .course(section2).studentId("A123456").githubLogin("cgaucho").orgStatus(OrgStatus.INVITED).build());
+        webhookInboxService.receive("d1", "organization", membership("member_added", "1234", "cgaucho"));
+        webhookInboxService.receive("d2", "organization", event("""
+                {"action": "renamed", "installation": {"id": 1234}, "organization": {"login": "ucsb-cs156-w25"}}"""));
+
+        webhookInboxService.drain();
+
+        assertEquals(OrgStatus.MEMBER, orgStatusOf(chris));
+        assertEquals(OrgStatus.MEMBER, orgStatusOf(chrisInSection2));
+        assertEquals("ucsb-cs156-w25", reload(course).getOrgName());
+        assertEquals("ucsb-cs156-w25", reload(section2).getOrgName());
+        assertTrue(webhookDeliveryRepository.findAll().stream().allMatch(d -> d.getProcessedAt() != null));
+    }
+
+    @Test
+    public void drain_retries_a_failing_delivery_without_holding_up_the_others() throws Exception {
+        webhookDeliveryRepository.save(WebhookDelivery.builder()
+                .deliveryId("malformed").event("organization").action("member_added").installationId("1234")
+                .payload("{not json").receivedAt(ZonedDateTime.now(ZoneOffset.UTC)).build());
+        webhookInboxService.receive("d1", "organization", membership("member_added", "1234", "cgaucho"));
+
+        webhookInboxService.drain();
+
+        assertEquals(OrgStatus.MEMBER, orgStatusOf(chris));
+        assertNotNull(delivery("d1").getProcessedAt());
+        WebhookDelivery malformed = delivery("malformed");
+        assertNull(malformed.getProcessedAt());
+        assertEquals(1, malformed.getAttempts());
+        assertTrue(malformed.getLastError().startsWith("com.fasterxml.jackson.core.JsonParseException"));
+
+        for (int i = 1; i < WebhookInboxService.MAX_ATTEMPTS; i++) {
+            webhookInboxService.drain();
+        }
+
+        malformed = delivery("malformed");
+        assertNotNull(malformed.getProcessedAt());
+        assertEquals(WebhookInboxService.MAX_ATTEMPTS, malformed.getAttempts());
+    }
+
+    @Test
+    public void drain_fails_only_the_deliveries_of_an_installation_whose_changes_could_not_be_saved() throws Exception {
+        Course otherOrg = otherCourse("5678", "ucsb-cs148-f24");
+        RosterStudent taylor = rosterStudentRepository.save(RosterStudent.builder()
+                .course(otherOrg).studentId("A456789").githubLogin("tgaucho").orgStatus(OrgStatus.INVITED).build());
+        doThrow(new IllegalStateException("database down")).when(courseRepository).findAllByInstallationId("5678");
+        webhookInboxService.receive("d1", "organization", membership("member_added", "1234", "cgaucho"));
+        webhookInboxService.receive("d2", "organization", membership("member_added", "5678", "tgaucho"));
+
+        webhookInboxService.drain();
+
+        assertEquals(OrgStatus.MEMBER, orgStatusOf(chris));
+        assertEquals(OrgStatus.INVITED, orgStatusOf(taylor));
+        assertNotNull(delivery("d1").getProcessedAt());
+        assertNull(delivery("d2").getProcessedAt());
+        assertEquals(1, delivery("d2").getAttempts());
+        assertEquals("java.lang.IllegalStateException: database down", delivery("d2").getLastError());
+    }
+}
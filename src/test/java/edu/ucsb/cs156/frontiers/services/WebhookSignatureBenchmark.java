@@ -0,0 +1,91 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-delivery cost of the webhook endpoint's signature check and JSON parse, for organization events padded to
+ * {@code payloadBytes}.
+ * <ul>
+ *   <li>{@code verifyAndParse}: what the endpoint does for a genuine delivery.</li>
+ *   <li>{@code verifyWithNewMac}: the same check creating a {@link Mac} on every call instead of one per thread.</li>
+ *   <li>{@code parseOnly}: the parse alone, i.e. what the endpoint did before signatures were checked.</li>
+ *   <li>{@code rejectForged}: a delivery whose signature header is malformed, rejected before any HMAC is computed.</li>
+ * </ul>
+ * Run with the instructions in docs/benchmarks.md.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebhookSignatureBenchmark {
+
+    private static final String SECRET = "benchmark-webhook-secret";
+
+    @Param({"1024", "16384", "262144"})
+    int payloadBytes;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final WebhookSignatureService webhookSignatureService = new WebhookSignatureService(SECRET);
+    private byte[] body;
+    private String signature;
+
+    @Setup
+    public void setup() throws Exception {
+        String event = """
+                {"action": "member_added", "installation": {"id": 1234},
+                 "membership": {"role": "member", "user": {"login": "cgaucho", "id": 12345}}, "padding": "%s"}""";
+        int padding = Math.max(0, payloadBytes - event.length() + 2);
+        body = event.formatted("x".repeat(padding)).getBytes(StandardCharsets.UTF_8);
+
+        signature = WebhookSignatureService.SIGNATURE_PREFIX + HexFormat.of().formatHex(newMac().doFinal(body));
+    }
+
+    private static Mac newMac() throws Exception {
+        Mac mac = Mac.getInstance(WebhookSignatureService.ALGORITHM);
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), WebhookSignatureService.ALGORITHM));
+        return mac;
+    }
+
+    @Benchmark
+    public JsonNode verifyAndParse() throws Exception {
+        if (!webhookSignatureService.isValid(body, signature)) {
+            throw new IllegalStateException("signature should be valid");
+        }
+        return objectMapper.readTree(body);
+    }
+
+    @Benchmark
+    public boolean verifyWithNewMac() throws Exception {
+        return HexFormat.of().formatHex(newMac().doFinal(body)).equals(signature.substring(7));
+    }
+
+    @Benchmark
+    public JsonNode parseOnly() throws Exception {
+        return objectMapper.readTree(body);
+    }
+
+    @Benchmark
+    public boolean rejectForged() throws Exception {
+        return webhookSignatureService.isValid(body, "sha256=forged");
+    }
+}
@@ -0,0 +1,65 @@
+package edu.ucsb.cs156.frontiers.services;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class WebhookSignatureServiceTests {
+
+    // example from GitHub's "Validating webhook deliveries" documentation
+    private static final String SECRET = "It's a Secret to Everybody";
+    private static final byte[] BODY = "Hello, World!".getBytes(StandardCharsets.UTF_8);
+    private static final String SIGNATURE = "sha256=757107ea0eb2509fc211221cce984b8a37570b6d7586c22c46f4379c8b043e17";
+
+    private final WebhookSignatureService webhookSignatureService = new WebhookSignatureService(SECRET);
+
+    @Test
+    public void signature_of_the_body_is_valid() throws Exception {
+        assertTrue(webhookSignatureService.isValid(BODY, SIGNATURE));
+        // second call on this thread reuses its Mac
+        assertTrue(webhookSignatureService.isValid(BODY, SIGNATURE));
+    }
+
+    @Test
+    public void upper_case_hex_is_valid() throws Exception {
+        assertTrue(webhookSignatureService.isValid(BODY, "sha256=" + SIGNATURE.substring(7).toUpperCase()));
+    }
+
+    @Test
+    public void signature_of_another_body_is_not_valid() throws Exception {
+        assertFalse(webhookSignatureService.isValid("Hello, World?".getBytes(StandardCharsets.UTF_8), SIGNATURE));
+    }
+
+    @Test
+    public void signature_with_another_secret_is_not_valid() throws Exception {
+        assertFalse(new WebhookSignatureService("another secret").isValid(BODY, SIGNATURE));
+    }
+
+    @Test
+    public void missing_signature_is_not_valid() throws Exception {
+        assertFalse(webhookSignatureService.isValid(BODY, null));
+    }
+
+    @Test
+    public void truncated_signature_is_not_valid() throws Exception {
+        assertFalse(webhookSignatureService.isValid(BODY, SIGNATURE.substring(0, SIGNATURE.length() - 2)));
+    }
+
+    @Test
+    public void signature_without_the_sha256_prefix_is_not_valid() throws Exception {
+        assertFalse(webhookSignatureService.isValid(BODY, "sha512=" + SIGNATURE.substring(7)));
+    }
+
+    @Test
+    public void signature_that_is_not_hex_is_not_valid() throws Exception {
+        assertFalse(webhookSignatureService.isValid(BODY, "sha256=" + "z".repeat(64)));
+    }
+
+    @Test
+    public void nothing_is_valid_without_a_secret() throws Exception {
+        assertFalse(new WebhookSignatureService("").isValid(BODY, SIGNATURE));
+    }
+}
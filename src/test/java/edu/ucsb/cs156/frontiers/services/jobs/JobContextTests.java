@@ -2,26 +2,92 @@ package edu.ucsb.cs156.frontiers.services.jobs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 import edu.ucsb.cs156.frontiers.entities.Job;
-import edu.ucsb.cs156.frontiers.services.jobs.JobContext;
+import edu.ucsb.cs156.frontiers.entities.JobLogLine;
 
 
 public class JobContextTests {
+
+  private final List<List<JobLogLine>> writes = new ArrayList<>();
+
   @Test
-  public void when_jobs_repository_is_null_does_not_save() throws Exception {
+  public void lines_are_buffered_until_flush() throws Exception {
 
     // arrange
 
-    Job job1 = Job.builder().build();
-    JobContext ctx = new JobContext(null, job1);
+    Job job1 = Job.builder().id(7L).build();
+    JobContext ctx = new JobContext(job1, writes::add);
 
     // act
     ctx.log("This is a log message");
+    ctx.error("Something went wrong");
 
     // assert
-    assertEquals("This is a log message", job1.getLog());
+    assertEquals(0, writes.size());
+
+    ctx.flush();
+    assertEquals(1, writes.size());
+    List<JobLogLine> lines = writes.get(0);
+    assertEquals("This is a log message\nSomething went wrong", JobLogLine.toText(lines));
+    assertEquals(7L, lines.get(0).getJobId());
+    assertEquals(0, lines.get(0).getSeq());
+    assertEquals("INFO", lines.get(0).getLevel());
+    assertEquals(1, lines.get(1).getSeq());
+    assertEquals("ERROR", lines.get(1).getLevel());
+    assertEquals(null, job1.getLog());
+  }
+
+  @Test
+  public void flush_without_pending_lines_writes_nothing() {
+    JobContext ctx = new JobContext(Job.builder().build(), writes::add);
+    ctx.flush();
+    assertEquals(0, writes.size());
+  }
+
+  @Test
+  public void full_batch_is_written_immediately() {
+    JobContext ctx = new JobContext(Job.builder().build(), writes::add);
+
+    for (int i = 0; i < JobContext.FLUSH_SIZE + 1; i++) {
+      ctx.log("line " + i);
+    }
+
+    assertEquals(1, writes.size());
+    assertEquals(JobContext.FLUSH_SIZE, writes.get(0).size());
+
+    ctx.flush();
+    assertEquals(2, writes.size());
+    assertEquals(JobContext.FLUSH_SIZE, writes.get(1).get(0).getSeq());
   }
 
+  @Test
+  public void pending_lines_are_written_once_flush_interval_has_passed() throws Exception {
+    JobContext ctx = new JobContext(Job.builder().build(), writes::add);
+
+    ctx.log("first");
+    assertEquals(0, writes.size());
+
+    Thread.sleep(JobContext.FLUSH_INTERVAL.plusMillis(50));
+    ctx.log("second");
+
+    assertEquals(1, writes.size());
+    assertEquals("first\nsecond", JobLogLine.toText(writes.get(0)));
+  }
+
+  @Test
+  public void every_line_is_handed_to_the_listener_as_it_is_logged() {
+    List<JobLogLine> heard = new ArrayList<>();
+    JobContext ctx = new JobContext(Job.builder().id(3L).build(), writes::add, heard::add);
+
+    ctx.log("first");
+    ctx.error("second");
+
+    assertEquals(0, writes.size());
+    assertEquals("first\nsecond", JobLogLine.toText(heard));
+    assertEquals(1, heard.get(1).getSeq());
+  }
 }
@@ -0,0 +1,346 @@
+package edu.ucsb.cs156.frontiers.services.jobs;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.frontiers.entities.Job;
+import edu.ucsb.cs156.frontiers.entities.JobLogLine;
+import edu.ucsb.cs156.frontiers.repositories.JobLogLineRepository;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public class JobEventBroadcasterTests {
+
+  private final JobLogLineRepository jobLogLineRepository = mock(JobLogLineRepository.class);
+  private final List<RecordingEmitter> emitters = new ArrayList<>();
+  private final JobEventBroadcaster broadcaster =
+      new JobEventBroadcaster() {
+        @Override
+        SseEmitter newEmitter() {
+          RecordingEmitter emitter = new RecordingEmitter();
+          emitter.beforeFirstSend = beforeFirstSend;
+          emitters.add(emitter);
+          return emitter;
+        }
+      };
+
+  private final Job job = Job.builder().id(7L).status("running").build();
+
+  // run by the next new emitter just before its first event, i.e. while it is being caught up
+  private Runnable beforeFirstSend;
+
+  public JobEventBroadcasterTests() {
+    ReflectionTestUtils.setField(broadcaster, "jobLogLineRepository", jobLogLineRepository);
+  }
+
+  /** Records what was sent instead of writing to a response; fails every send after {@code sendsBeforeFailing}. */
+  private static class RecordingEmitter extends SseEmitter {
+    private final List<String> events = new ArrayList<>();
+    private int sendsBeforeFailing = Integer.MAX_VALUE;
+    private int attempts = 0;
+    private Runnable beforeFirstSend;
+    private boolean completed = false;
+    private Runnable completionCallback;
+    private Runnable timeoutCallback;
+    private Consumer<Throwable> errorCallback;
+
+    @Override
+    public void onCompletion(Runnable callback) {
+      completionCallback = callback;
+    }
+
+    @Override
+    public void onTimeout(Runnable callback) {
+      timeoutCallback = callback;
+    }
+
+    @Override
+    public void onError(Consumer<Throwable> callback) {
+      errorCallback = callback;
+    }
+
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+      if (attempts++ == 0 && beforeFirstSend != null) {
+        beforeFirstSend.run();
+      }
+      if (events.size() >= sendsBeforeFailing) {
+        throw new IOException("Broken pipe");
+      }
+      events.add(
+          builder.build().stream().map(part -> part.getData().toString()).collect(Collectors.joining()));
+    }
+
+    @Override
+    public void complete() {
+      completed = true;
+    }
+  }
+
+  private static JobLogLine line(int seq) {
+    return JobLogLine.builder().jobId(7L).seq(seq).message("line " + seq).build();
+  }
+
+  private static String logEvent(int seq) {
+    return "id:" + seq + "\nevent:log\ndata:" + line(seq) + "\n\n";
+  }
+
+  private static String statusEvent(String status) {
+    return "event:status\ndata:" + status + "\n\n";
+  }
+
+  @Test
+  public void live_subscriber_is_caught_up_from_the_buffer_and_then_follows_the_job() {
+    broadcaster.jobQueued(job);
+    broadcaster.lineLogged(line(0));
+    broadcaster.lineLogged(line(1));
+    broadcaster.lineLogged(line(2));
+
+    broadcaster.subscribe(job, 0);
+    RecordingEmitter emitter = emitters.get(0);
+    assertEquals(List.of(logEvent(1), logEvent(2), statusEvent("running")), emitter.events);
+
+    broadcaster.lineLogged(line(3));
+    job.setStatus("complete");
+    broadcaster.jobFinished(job);
+
+    assertEquals(
+        List.of(logEvent(1), logEvent(2), statusEvent("running"), logEvent(3), statusEvent("complete")),
+        emitter.events);
+    assertTrue(emitter.completed);
+    verifyNoInteractions(jobLogLineRepository);
+  }
+
+  @Test
+  public void every_subscriber_receives_each_event_intact() {
+    broadcaster.jobQueued(job);
+    broadcaster.subscribe(job, null);
+    broadcaster.subscribe(job, null);
+    broadcaster.subscribe(job, null);
+
+    broadcaster.lineLogged(line(0));
+    job.setStatus("complete");
+    broadcaster.jobFinished(job);
+
+    for (RecordingEmitter emitter : emitters) {
+      assertEquals(List.of(statusEvent("running"), logEvent(0), statusEvent("complete")), emitter.events);
+    }
+  }
+
+  @Test
+  public void subscribers_are_dropped_when_their_stream_completes_times_out_or_fails() {
+    broadcaster.jobQueued(job);
+    broadcaster.subscribe(job, null);
+    broadcaster.subscribe(job, null);
+    broadcaster.subscribe(job, null);
+    broadcaster.subscribe(job, null);
+
+    emitters.get(0).completionCallback.run();
+    emitters.get(1).timeoutCallback.run();
+    emitters.get(2).errorCallback.accept(new IOException("Broken pipe"));
+    broadcaster.lineLogged(line(0));
+
+    for (RecordingEmitter closed : emitters.subList(0, 3)) {
+      assertEquals(List.of(statusEvent("running")), closed.events);
+    }
+    assertEquals(List.of(statusEvent("running"), logEvent(0)), emitters.get(3).events);
+  }
+
+  @Test
+  public void subscribing_before_the_first_line_sends_only_the_status() {
+    broadcaster.jobQueued(job);
+
+    broadcaster.subscribe(job, null);
+
+    assertEquals(List.of(statusEvent("running")), emitters.get(0).events);
+    assertFalse(emitters.get(0).completed);
+    verifyNoInteractions(jobLogLineRepository);
+  }
+
+  @Test
+  public void lines_older_than_the_buffer_are_replayed_from_the_database() {
+    broadcaster.jobQueued(job);
+    for (int seq = 0; seq < JobEventBroadcaster.BUFFER_SIZE + 2; seq++) {
+      broadcaster.lineLogged(line(seq));
+    }
+    when(jobLogLineRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(7L, 1, Limit.of(1)))
+        .thenReturn(List.of(line(1)));
+
+    broadcaster.subscribe(job, 0);
+
+    List<String> events = emitters.get(0).events;
+    assertEquals(JobEventBroadcaster.BUFFER_SIZE + 2, events.size());
+    assertEquals(logEvent(1), events.get(0));
+    assertEquals(logEvent(2), events.get(1));
+    assertEquals(statusEvent("running"), events.get(events.size() - 1));
+  }
+
+  @Test
+  public void subscriber_whose_send_fails_is_dropped() {
+    broadcaster.jobQueued(job);
+    broadcaster.subscribe(job, null);
+    broadcaster.subscribe(job, null);
+    RecordingEmitter gone = emitters.get(0);
+    RecordingEmitter listening = emitters.get(1);
+    gone.sendsBeforeFailing = 1;
+
+    broadcaster.lineLogged(line(0));
+    broadcaster.lineLogged(line(1));
+    broadcaster.jobFinished(job);
+
+    assertEquals(List.of(statusEvent("running")), gone.events);
+    assertFalse(gone.completed);
+    assertEquals(
+        List.of(statusEvent("running"), logEvent(0), logEvent(1), statusEvent("running")),
+        listening.events);
+    assertTrue(listening.completed);
+  }
+
+  @Test
+  public void subscriber_that_disconnects_before_the_final_status_is_not_completed() {
+    broadcaster.jobQueued(job);
+    broadcaster.subscribe(job, null);
+    RecordingEmitter emitter = emitters.get(0);
+    emitter.sendsBeforeFailing = 1;
+
+    broadcaster.jobFinished(job);
+
+    assertFalse(emitter.completed);
+  }
+
+  @Test
+  public void status_changes_are_sent_to_subscribers() {
+    job.setStatus("queued");
+    broadcaster.jobQueued(job);
+    broadcaster.subscribe(job, null);
+    broadcaster.subscribe(job, null);
+    RecordingEmitter gone = emitters.get(0);
+    RecordingEmitter listening = emitters.get(1);
+    gone.sendsBeforeFailing = 1;
+
+    job.setStatus("running");
+    broadcaster.statusChanged(job);
+    broadcaster.lineLogged(line(0));
+    broadcaster.subscribe(job, null);
+
+    assertEquals(List.of(statusEvent("queued")), gone.events);
+    assertEquals(List.of(statusEvent("queued"), statusEvent("running"), logEvent(0)), listening.events);
+    assertEquals(List.of(logEvent(0), statusEvent("running")), emitters.get(2).events);
+  }
+
+  @Test
+  public void status_change_of_a_job_that_is_not_running_here_is_ignored() {
+    broadcaster.statusChanged(job);
+    assertEquals(List.of(), emitters);
+  }
+
+  @Test
+  public void finished_job_is_replayed_from_the_database_and_completed() {
+    job.setStatus("complete");
+    when(jobLogLineRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(7L, 5, Limit.unlimited()))
+        .thenReturn(List.of(line(5), line(6)));
+
+    broadcaster.subscribe(job, 4);
+
+    RecordingEmitter emitter = emitters.get(0);
+    assertEquals(List.of(logEvent(5), logEvent(6), statusEvent("complete")), emitter.events);
+    assertTrue(emitter.completed);
+  }
+
+  @Test
+  public void events_for_jobs_that_are_not_live_here_are_ignored() {
+    broadcaster.lineLogged(line(0));
+    broadcaster.jobFinished(job);
+
+    when(jobLogLineRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(7L, 0, Limit.unlimited()))
+        .thenReturn(List.of());
+    broadcaster.subscribe(job, null);
+
+    assertEquals(List.of(statusEvent("running")), emitters.get(0).events);
+  }
+
+  @Test
+  public void default_emitter_uses_the_configured_timeout() {
+    SseEmitter emitter = new JobEventBroadcaster().newEmitter();
+    assertEquals(JobEventBroadcaster.EMITTER_TIMEOUT.toMillis(), emitter.getTimeout());
+  }
+
+  @Test
+  public void events_during_the_catch_up_are_sent_after_it_in_order() {
+    broadcaster.jobQueued(job);
+    broadcaster.lineLogged(line(0));
+    beforeFirstSend =
+        () -> {
+          broadcaster.lineLogged(line(1));
+          broadcaster.lineLogged(line(2));
+          job.setStatus("complete");
+          broadcaster.jobFinished(job);
+        };
+
+    broadcaster.subscribe(job, null);
+
+    RecordingEmitter emitter = emitters.get(0);
+    assertEquals(
+        List.of(logEvent(0), statusEvent("running"), logEvent(1), logEvent(2), statusEvent("complete")),
+        emitter.events);
+    assertTrue(emitter.completed);
+  }
+
+  @Test
+  public void subscriber_whose_send_fails_during_the_catch_up_is_dropped() {
+    broadcaster.jobQueued(job);
+    beforeFirstSend =
+        () -> {
+          broadcaster.lineLogged(line(0));
+          emitters.get(0).sendsBeforeFailing = 1;
+        };
+
+    broadcaster.subscribe(job, null);
+    broadcaster.lineLogged(line(1));
+    broadcaster.jobFinished(job);
+
+    RecordingEmitter emitter = emitters.get(0);
+    assertEquals(List.of(statusEvent("running")), emitter.events);
+    // the status, then the held back line, which failed; nothing after that
+    assertEquals(2, emitter.attempts);
+    assertFalse(emitter.completed);
+  }
+
+  @Test
+  public void subscriber_racing_the_end_of_the_job_is_replayed_from_the_database() throws Exception {
+    broadcaster.jobQueued(job);
+    @SuppressWarnings("unchecked")
+    Object live = ((Map<Long, Object>) ReflectionTestUtils.getField(broadcaster, "liveJobs")).get(7L);
+    when(jobLogLineRepository.findByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(7L, 0, Limit.unlimited()))
+        .thenReturn(List.of(line(0)));
+
+    Thread subscribing;
+    synchronized (live) {
+      subscribing = new Thread(() -> broadcaster.subscribe(job, null));
+      subscribing.start();
+      // the subscriber has found the job live and waits for it
+      await().atMost(5, SECONDS).until(() -> subscribing.getState() == Thread.State.BLOCKED);
+      job.setStatus("complete");
+      broadcaster.jobFinished(job);
+    }
+    subscribing.join();
+
+    RecordingEmitter emitter = emitters.get(0);
+    assertEquals(List.of(logEvent(0), statusEvent("complete")), emitter.events);
+    assertTrue(emitter.completed);
+  }
+}
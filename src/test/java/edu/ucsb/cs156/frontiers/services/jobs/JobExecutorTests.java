@@ -0,0 +1,66 @@
+package edu.ucsb.cs156.frontiers.services.jobs;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class JobExecutorTests {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final JobExecutor jobExecutor = new JobExecutor(1, 1, meterRegistry);
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @AfterEach
+  public void tearDown() {
+    release.countDown();
+    jobExecutor.shutdown();
+  }
+
+  private double gauge(String name) {
+    return meterRegistry.get(name).gauge().value();
+  }
+
+  private void blockUntilReleased() {
+    try {
+      release.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  public void jobs_beyond_the_concurrency_limit_wait_in_the_queue() throws Exception {
+    CountDownLatch secondRan = new CountDownLatch(1);
+
+    jobExecutor.submit(this::blockUntilReleased);
+    jobExecutor.submit(secondRan::countDown);
+
+    await().atMost(5, SECONDS).until(() -> gauge("frontiers.jobs.running") == 1.0);
+    assertEquals(1.0, gauge("frontiers.jobs.queued"));
+    assertEquals(1, secondRan.getCount());
+
+    release.countDown();
+
+    assertTrue(secondRan.await(5, SECONDS));
+    await().atMost(5, SECONDS).until(() -> gauge("frontiers.jobs.running") == 0.0);
+    assertEquals(0.0, gauge("frontiers.jobs.queued"));
+    assertEquals(2, meterRegistry.get("frontiers.jobs.queue.wait").timer().count());
+  }
+
+  @Test
+  public void submissions_beyond_the_queue_capacity_are_rejected() {
+    jobExecutor.submit(this::blockUntilReleased);
+    await().atMost(5, SECONDS).until(() -> gauge("frontiers.jobs.running") == 1.0);
+    jobExecutor.submit(() -> {});
+
+    assertThrows(RejectedExecutionException.class, () -> jobExecutor.submit(() -> {}));
+  }
+}
@@ -5,7 +5,9 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import edu.ucsb.cs156.frontiers.entities.User;
+import edu.ucsb.cs156.frontiers.models.FrontiersPrincipal;
 import edu.ucsb.cs156.frontiers.services.CurrentUserServiceImpl;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 
 public class MockCurrentUserServiceImpl extends CurrentUserServiceImpl {
@@ -70,4 +72,17 @@ public class MockCurrentUserServiceImpl extends CurrentUserServiceImpl {
         return null;
     }
 
+    @Override
+    public FrontiersPrincipal getPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return null;
+        }
+        User user = getMockUser(SecurityContextHolder.getContext(), authentication);
+        OidcIdToken idToken = OidcIdToken.withTokenValue("fake")
+                .subject(user.getGoogleSub() == null ? "fakeUser" : user.getGoogleSub())
+                .build();
+        return new FrontiersPrincipal(authentication.getAuthorities(), idToken, null, user);
+    }
+
 }
@@ -1,15 +1,19 @@
 package edu.ucsb.cs156.frontiers.testconfig;
 
+import edu.ucsb.cs156.frontiers.services.CurrentUserCache;
 import edu.ucsb.cs156.frontiers.services.GithubSignInService;
 import edu.ucsb.cs156.frontiers.services.GoogleSignInService;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.auditing.DateTimeProvider;
 
 import edu.ucsb.cs156.frontiers.config.SecurityConfig;
 import edu.ucsb.cs156.frontiers.services.CurrentUserService;
 import edu.ucsb.cs156.frontiers.services.GrantedAuthoritiesService;
 
+import java.time.Duration;
+
 @TestConfiguration
 @Import(SecurityConfig.class)
 public class TestConfig {
@@ -19,6 +23,11 @@ public class TestConfig {
         return new MockCurrentUserServiceImpl();
     }
 
+    @Bean
+    public CurrentUserCache currentUserCache(DateTimeProvider dateTimeProvider) {
+        return new CurrentUserCache(dateTimeProvider, Duration.ZERO);
+    }
+
     @Bean
     public GrantedAuthoritiesService grantedAuthoritiesService() {
         return new GrantedAuthoritiesService();